@@ -0,0 +1,121 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+
+/* The event files the benchmarks run over.  By default this is the sample
+   corpus checked in with the moneyball tests; set moneyball.bench.corpus to
+   a directory of event files to use those instead. */
+public class BenchCorpus {
+	public static final String CORPUS = "moneyball.bench.corpus";
+	static final String[] SAMPLE_FILES = { "sample/2010BOS.EVA", "sample/2010CHN.EVN" };
+
+	private final String[] names;
+	private final byte[][] files;
+
+	private BenchCorpus(String[] names, byte[][] files) {
+		this.names = names;
+		this.files = files;
+	}
+
+	public static BenchCorpus load() throws IOException {
+		String dir = System.getProperty(CORPUS);
+		List<String> names = new ArrayList<String>();
+		List<byte[]> files = new ArrayList<byte[]>();
+		if(dir == null) {
+			for(String name : SAMPLE_FILES) {
+				InputStream in = BenchCorpus.class.getClassLoader().getResourceAsStream(name);
+				if(in == null)
+					throw new FileNotFoundException(name);
+				names.add(name.substring(name.lastIndexOf('/') + 1));
+				files.add(read(in));
+			}
+		} else {
+			File[] list = new File(dir).listFiles();
+			if(list == null)
+				throw new FileNotFoundException(dir);
+			Arrays.sort(list);
+			for(File f : list) {
+				if(!f.isFile() || f.getName().startsWith("."))
+					continue;
+				names.add(f.getName());
+				files.add(read(new FileInputStream(f)));
+			}
+		}
+		return new BenchCorpus(names.toArray(new String[names.size()]), files.toArray(new byte[files.size()][]));
+	}
+
+	private static byte[] read(InputStream in) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buf = new byte[64 * 1024];
+			int read;
+			while((read = in.read(buf)) > 0)
+				out.write(buf, 0, read);
+			return out.toByteArray();
+		} finally {
+			in.close();
+		}
+	}
+
+	public int getFileCount() {
+		return files.length;
+	}
+
+	public byte[] getFile(int i) {
+		return files[i];
+	}
+
+	public long getBytes() {
+		long bytes = 0;
+		for(byte[] f : files)
+			bytes += f.length;
+		return bytes;
+	}
+
+	/* Offsets of the id lines of every game in a file, followed by the file length */
+	public int[] gameBoundaries(int file) {
+		byte[] b = files[file];
+		int[] starts = new int[16];
+		int count = 0;
+		for(int i=0;i + 2 < b.length;i++) {
+			if((i == 0 || b[i-1] == '\n') && b[i] == 'i' && b[i+1] == 'd' && b[i+2] == ',') {
+				if(count + 1 >= starts.length) {
+					int[] bigger = new int[starts.length * 2];
+					System.arraycopy(starts, 0, bigger, 0, count);
+					starts = bigger;
+				}
+				starts[count++] = i;
+			}
+		}
+		int[] boundaries = new int[count + 1];
+		System.arraycopy(starts, 0, boundaries, 0, count);
+		boundaries[count] = b.length;
+		return boundaries;
+	}
+
+	/* Write the corpus to a new temporary directory, for benchmarks that read through a FileSystem */
+	public File writeTo() throws IOException {
+		File dir = File.createTempFile("moneyball-bench", "");
+		if(!dir.delete() || !dir.mkdir())
+			throw new IOException("Can't create " + dir);
+		for(int i=0;i<files.length;i++) {
+			OutputStream out = new FileOutputStream(new File(dir, names[i]));
+			try {
+				out.write(files[i]);
+			} finally {
+				out.close();
+			}
+		}
+		return dir;
+	}
+
+	/* Remove a directory written by writeTo, along with any checksum files */
+	public static void delete(File dir) {
+		File[] list = dir.listFiles();
+		if(list != null)
+			for(File f : list)
+				f.delete();
+		dir.delete();
+	}
+}
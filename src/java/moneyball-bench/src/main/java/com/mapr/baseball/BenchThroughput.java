@@ -0,0 +1,17 @@
+package com.mapr.baseball;
+
+import org.openjdk.jmh.annotations.*;
+
+/* Secondary results of a benchmark, reported by JMH as rates next to ops/s */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class BenchThroughput {
+	public long bytes;
+	public long games;
+	public long plays;
+
+	@Setup(Level.Iteration)
+	public void clear() {
+		bytes = games = plays = 0;
+	}
+}
@@ -0,0 +1,69 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/* RetrosheetEventParser.parse over the event field of every play in the
+   corpus.  One op is one pass over all of them. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class EventParserBenchmark {
+	private final RetrosheetEventParser parser = new RetrosheetEventParser();
+	private final RetrosheetEvent event = new RetrosheetEvent();
+	/* Event fields, as file, offset and length */
+	private byte[][] files;
+	private int[] file, offset, length;
+	private int count;
+	private long bytes;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchCorpus corpus = BenchCorpus.load();
+		files = new byte[corpus.getFileCount()][];
+		file = new int[1024];
+		offset = new int[1024];
+		length = new int[1024];
+		RetrosheetTokenizer tok = new RetrosheetTokenizer();
+		for(int f=0;f<files.length;f++) {
+			files[f] = corpus.getFile(f);
+			tok.reset(files[f], 0, files[f].length);
+			while(tok.nextLine()) {
+				if(tok.lineType() != RetrosheetTokenizer.LINE_PLAY || !tok.hasField(6))
+					continue;
+				if(count == file.length) {
+					file = grow(file);
+					offset = grow(offset);
+					length = grow(length);
+				}
+				file[count] = f;
+				offset[count] = tok.fieldStart(6);
+				length[count] = tok.fieldLength(6);
+				bytes += length[count];
+				count++;
+			}
+		}
+	}
+
+	private static int[] grow(int[] a) {
+		int[] b = new int[a.length * 2];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	@Benchmark
+	public int parse(BenchThroughput t) {
+		int parsed = 0;
+		for(int i=0;i<count;i++) {
+			if(parser.parse(files[file[i]], offset[i], length[i], event))
+				parsed += event.type;
+		}
+		t.plays += count;
+		t.bytes += bytes;
+		return parsed;
+	}
+}
@@ -0,0 +1,64 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.openjdk.jmh.annotations.*;
+
+/* GameStateEngine.run over every game of the corpus, already in memory, with
+   a visitor that reads a little of each play.  This is the cost of
+   replaying the game state, without the reader or any tuples.  One op is one
+   pass over the corpus. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GameStateEngineBenchmark {
+	private final GameStateEngine engine = new GameStateEngine();
+	private final PlayCounter counter = new PlayCounter();
+	private byte[][] files;
+	private int[][] boundaries;
+	private long bytes;
+
+	/* Whether plays are replayed, or only the id and info lines read */
+	@Param({ "true", "false" })
+	public boolean trackPlays;
+
+	static class PlayCounter extends GameVisitor {
+		long plays;
+		long rbis;
+
+		public void play(GameStateEngine engine) {
+			plays++;
+			rbis += engine.getRbisOnPlay();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchCorpus corpus = BenchCorpus.load();
+		files = new byte[corpus.getFileCount()][];
+		boundaries = new int[files.length][];
+		for(int f=0;f<files.length;f++) {
+			files[f] = corpus.getFile(f);
+			boundaries[f] = corpus.gameBoundaries(f);
+		}
+		bytes = corpus.getBytes();
+		engine.setTrackPlays(trackPlays);
+	}
+
+	@Benchmark
+	public long run(BenchThroughput t) throws IOException {
+		counter.plays = counter.rbis = 0;
+		for(int f=0;f<files.length;f++) {
+			int[] b = boundaries[f];
+			for(int g=0;g + 1 < b.length;g++)
+				engine.run(files[f], b[g], b[g+1] - b[g], counter);
+			t.games += b.length - 1;
+		}
+		t.plays += counter.plays;
+		t.bytes += bytes;
+		return counter.rbis;
+	}
+}
@@ -0,0 +1,69 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+import org.apache.pig.data.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.*;
+
+/* RetrosheetLoader.getNext over every game of the corpus, with no projection,
+   in each output mode.  One op is one pass over the corpus. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmark {
+	/* RetrosheetLoader options */
+	@Param({ "", "-flat" })
+	public String options;
+
+	private File dir;
+	private FileSplit[] splits;
+	private long[] lengths;
+	private TaskAttemptContext context;
+	private RetrosheetLoader loader;
+	private final RetrosheetRecordReader reader = new RetrosheetRecordReader();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchCorpus corpus = BenchCorpus.load();
+		dir = corpus.writeTo();
+		File[] files = dir.listFiles();
+		splits = new FileSplit[files.length];
+		lengths = new long[files.length];
+		for(int i=0;i<files.length;i++) {
+			splits[i] = new FileSplit(new Path(files[i].getAbsolutePath()), 0, files[i].length(), new String[0]);
+			lengths[i] = files[i].length();
+		}
+		context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+		loader = new RetrosheetLoader(options);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchCorpus.delete(dir);
+	}
+
+	@Benchmark
+	public long getNext(BenchThroughput t, Blackhole bh) throws IOException, InterruptedException {
+		long records = 0;
+		for(int i=0;i<splits.length;i++) {
+			reader.initialize(splits[i], context);
+			loader.prepareToRead(reader, null);
+			Tuple tuple;
+			while((tuple = loader.getNext()) != null) {
+				bh.consume(tuple);
+				records++;
+			}
+			reader.close();
+			t.bytes += lengths[i];
+		}
+		return records;
+	}
+}
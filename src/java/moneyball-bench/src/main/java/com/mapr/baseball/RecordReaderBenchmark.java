@@ -0,0 +1,85 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.concurrent.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+import org.openjdk.jmh.annotations.*;
+
+/* RetrosheetRecordReader.nextKeyValue over every game of the corpus, read
+   from the local file system one file split at a time.  One op is one pass
+   over the corpus.  The corpus can be stored compressed with a Hadoop codec,
+   to weigh decompression against the bytes it saves reading. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RecordReaderBenchmark {
+	/* none, or a codec class of org.apache.hadoop.io.compress */
+	@Param({"none", "GzipCodec", "BZip2Codec"})
+	public String codec;
+
+	private File dir;
+	private FileSplit[] splits;
+	private TaskAttemptContext context;
+	/* Reused across splits, like RetrosheetCombineRecordReader does */
+	private final RetrosheetRecordReader reader = new RetrosheetRecordReader();
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		BenchCorpus corpus = BenchCorpus.load();
+		dir = corpus.writeTo();
+		Configuration conf = new Configuration();
+		File[] files = dir.listFiles();
+		if(!codec.equals("none"))
+			files = compress(files, conf);
+		splits = new FileSplit[files.length];
+		for(int i=0;i<files.length;i++)
+			splits[i] = new FileSplit(new Path(files[i].getAbsolutePath()), 0, files[i].length(), new String[0]);
+		context = new TaskAttemptContext(conf, new TaskAttemptID());
+	}
+
+	/* Replace each file with a compressed copy named for the codec */
+	private File[] compress(File[] files, Configuration conf) throws IOException {
+		CompressionCodec c;
+		try {
+			c = (CompressionCodec)ReflectionUtils.newInstance(Class.forName("org.apache.hadoop.io.compress." + codec), conf);
+		} catch (ClassNotFoundException e) {
+			throw new IOException("Unknown codec " + codec);
+		}
+		File[] compressed = new File[files.length];
+		for(int i=0;i<files.length;i++) {
+			compressed[i] = new File(dir, files[i].getName() + c.getDefaultExtension());
+			IOUtils.copyBytes(new FileInputStream(files[i]), c.createOutputStream(new FileOutputStream(compressed[i])), 64 * 1024, true);
+			files[i].delete();
+		}
+		return compressed;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchCorpus.delete(dir);
+	}
+
+	@Benchmark
+	public long nextKeyValue(BenchThroughput t) throws IOException, InterruptedException {
+		long games = 0;
+		for(FileSplit split : splits) {
+			reader.initialize(split, context);
+			while(reader.nextKeyValue()) {
+				t.bytes += reader.getGameLength();
+				games++;
+			}
+			reader.close();
+		}
+		t.games += games;
+		return games;
+	}
+}
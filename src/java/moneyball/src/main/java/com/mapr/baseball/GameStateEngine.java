@@ -0,0 +1,448 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.io.*;
+
+/* Replays one game at a time from its event file lines, keeping track of
+   lineups, base runners, outs, score and per player counters, and reports
+   each line to a GameVisitor.
+
+   The engine knows nothing about Pig.  It allocates nothing per game or
+   per play once warmed up: lines are tokenized in place, events parsed
+   into a reused RetrosheetEvent, players interned in a
+   RetrosheetPlayerDictionary, and state kept in a RetrosheetGameState.
+   An engine is not thread safe; use one per thread.
+
+   What was read and what had to be skipped is counted in a
+   RetrosheetCounters.  With setTiming(true), the time spent tokenizing,
+   parsing events and in the visitor is added to it as well.
+*/
+public class GameStateEngine {
+	private final RetrosheetTokenizer tok = new RetrosheetTokenizer();
+	private final RetrosheetEventParser parser = new RetrosheetEventParser();
+	private final RetrosheetEvent event = new RetrosheetEvent();
+	private final RetrosheetGameState state = new RetrosheetGameState();
+	private final RetrosheetPlayerDictionary players;
+	private RetrosheetCounters counters = new RetrosheetCounters();
+	private boolean trackPlays = true;
+	private boolean timing = false;
+	/* Time spent parsing events and in the visitor during a timed game */
+	private long parseNanos, visitNanos;
+
+	/* The play being visited */
+	private int inning;
+	private boolean top;
+	private int batter, pitcher;
+	private int[] defense;
+	private boolean countKnown;
+	private int count;
+	private boolean parsed;
+	private int rbisOnPlay;
+	/* Where the runners on first to third (index 0 unused) and the batter end up:
+	   a base, RetrosheetEvent.HOME, 0 for the batter still batting, or -1 if out */
+	private final int[] runnerTo = new int[4];
+	private int batterTo;
+
+	public GameStateEngine() {
+		this(new RetrosheetPlayerDictionary());
+	}
+
+	public GameStateEngine(RetrosheetPlayerDictionary players) {
+		this.players = players;
+	}
+
+	/* Whether start, sub and play lines are replayed.  Without them only the id
+	   and info lines are reported, which is much cheaper. */
+	public void setTrackPlays(boolean trackPlays) {
+		this.trackPlays = trackPlays;
+	}
+
+	public RetrosheetCounters getCounters() {
+		return counters;
+	}
+
+	public void setCounters(RetrosheetCounters counters) {
+		this.counters = counters;
+	}
+
+	/* Whether the next games are timed.  Timing costs a few calls to
+	   System.nanoTime() per line, so callers usually time a sample of games. */
+	public void setTiming(boolean timing) {
+		this.timing = timing;
+	}
+
+	private long now() {
+		return timing ? System.nanoTime() : 0;
+	}
+
+	public void run(Text game, GameVisitor visitor) throws IOException {
+		run(game.getBytes(), 0, game.getLength(), visitor);
+	}
+
+	/* Replay the game in b[off, off+len) */
+	public void run(byte[] b, int off, int len, GameVisitor visitor) throws IOException {
+		long start = now();
+		parseNanos = visitNanos = 0;
+		tok.reset(b, off, len);
+		state.reset();
+		counters.increment(RetrosheetCounters.Counter.GAMES);
+		counters.add(RetrosheetCounters.Counter.BYTES, len);
+		long t = now();
+		visitor.startGame(this);
+		visitNanos += now() - t;
+		while(tok.nextLine()) {
+			int type = tok.lineType();
+			counters.line(type);
+			try {
+				switch(type) {
+				case RetrosheetTokenizer.LINE_ID:
+					t = now();
+					visitor.gameId(this);
+					visitNanos += now() - t;
+					break;
+				case RetrosheetTokenizer.LINE_INFO:
+					/* Empty values are skipped */
+					if(tok.hasField(2)) {
+						t = now();
+						visitor.info(this, tok.infoKey());
+						visitNanos += now() - t;
+					}
+					break;
+				case RetrosheetTokenizer.LINE_START:
+				case RetrosheetTokenizer.LINE_SUB:
+					if(trackPlays)
+						player(visitor);
+					break;
+				case RetrosheetTokenizer.LINE_PLAY:
+					if(trackPlays)
+						play(visitor);
+					break;
+				}
+			} catch (Exception e) {
+				if(type == RetrosheetTokenizer.LINE_ID)
+					counters.increment(RetrosheetCounters.Counter.MALFORMED_ID_LINES);
+				else if(type == RetrosheetTokenizer.LINE_INFO)
+					counters.increment(RetrosheetCounters.Counter.MALFORMED_INFO_LINES);
+				else
+					counters.increment(RetrosheetCounters.Counter.MALFORMED_LINES);
+				visitor.malformedLine(this, e);
+			}
+		}
+		t = now();
+		visitor.endGame(this);
+		visitNanos += now() - t;
+		if(timing) {
+			long total = now() - start;
+			counters.increment(RetrosheetCounters.Counter.TIMED_GAMES);
+			counters.add(RetrosheetCounters.Counter.EVENT_PARSE_NANOS, parseNanos);
+			counters.add(RetrosheetCounters.Counter.TUPLE_BUILD_NANOS, visitNanos);
+			counters.add(RetrosheetCounters.Counter.TOKENIZE_NANOS, total - parseNanos - visitNanos);
+		}
+	}
+
+	/* Player start or substitution: id, name, team (0 visitor, 1 home), batting order, position */
+	private void player(GameVisitor visitor) throws IOException {
+		int slot;
+		try {
+			boolean home = tok.parseInt(3)==1;
+			int order = tok.parseInt(4);
+			int position = tok.parseInt(5);
+			slot = state.addSlot(players.intern(tok.getBytes(), tok.fieldStart(1), tok.fieldLength(1)), home, order, position);
+		} catch (Exception e) {
+			/* Not entered, like the lineup lines RetrosheetLoader always skipped */
+			counters.increment(RetrosheetCounters.Counter.MALFORMED_LINEUP_LINES);
+			return;
+		}
+		long t = now();
+		visitor.player(this, slot);
+		visitNanos += now() - t;
+	}
+
+	private void play(GameVisitor visitor) throws IOException {
+		try {
+			prepare();
+			if(!parsed)
+				counters.increment(RetrosheetCounters.Counter.UNPARSED_EVENTS);
+			long t = now();
+			visitor.play(this);
+			visitNanos += now() - t;
+			counters.increment(RetrosheetCounters.Counter.PLAYS);
+		} catch (Exception e) {
+			counters.increment(e instanceof PlayException ? ((PlayException)e).counter : RetrosheetCounters.Counter.MALFORMED_PLAYS);
+			visitor.playError(this, e);
+			return;
+		}
+		if(parsed)
+			apply();
+	}
+
+	/* Work out the situation and the outcome of the play, without changing the bases or counters */
+	private void prepare() throws IOException {
+		RetrosheetGameState st = state;
+		st.eventOfGame++;
+
+		/* A new batter starts a new at-bat; stolen bases and the like don't */
+		int code = players.lookup(tok.getBytes(), tok.fieldStart(3), tok.fieldLength(3));
+		batter = code < 0 ? RetrosheetGameState.NONE : st.findSlot(code);
+		if(batter == RetrosheetGameState.NONE)
+			throw new PlayException("Batter not in lineup", RetrosheetCounters.Counter.BATTER_NOT_IN_LINEUP);
+		if(batter != st.lastBatter) {
+			st.atBatOfGame++;
+			st.lastBatter = batter;
+		}
+
+		/* The visitors bat in the top half, and a new half inning starts with the bases empty */
+		inning = tok.parseInt(1);
+		top = tok.fieldLength(2) == 1 && tok.byteAt(2, 0) == '0';
+		int half_inning = inning * 2 + (top ? 0 : 1);
+		if(half_inning != st.halfInning) {
+			st.halfInning = half_inning;
+			st.inningOuts = 0;
+			st.clearBases();
+		}
+		defense = top ? st.homeDefense : st.awayDefense;
+		for(int position=1;position<=9;position++)
+			if(defense[position] == RetrosheetGameState.NONE)
+				throw new PlayException("No fielder at position " + position, RetrosheetCounters.Counter.MISSING_FIELDER);
+		pitcher = defense[1];
+
+		st.atBats[batter]++;
+		try {
+			count = tok.parseInt(4);
+			countKnown = true;
+		} catch (NumberFormatException e) {
+			countKnown = false;
+		}
+
+		long t = now();
+		parsed = parser.parse(tok.getBytes(), tok.fieldStart(6), tok.fieldLength(6), event);
+		parseNanos += now() - t;
+		rbisOnPlay = 0;
+		if(!parsed)
+			return;
+		for(int base=1;base<=3;base++) {
+			if(st.runners[base] == RetrosheetGameState.NONE) {
+				runnerTo[base] = base;
+				continue;
+			}
+			runnerTo[base] = runnerDestination(event, base);
+			if(runnerTo[base] == RetrosheetEvent.HOME) {
+				/* Runs scored on errors or marked NR earn no RBI */
+				int a = event.advanceIndex(base);
+				if(a < 0 || !(event.advanceNoRbi[a] || event.advanceError[a]))
+					rbisOnPlay++;
+			}
+		}
+		batterTo = batterDestination(event);
+	}
+
+	/* A play that can't be replayed, and the counter it is counted in */
+	private static class PlayException extends IOException {
+		final RetrosheetCounters.Counter counter;
+
+		PlayException(String message, RetrosheetCounters.Counter counter) {
+			super(message);
+			this.counter = counter;
+		}
+	}
+
+	/* Move the runners and the batter, and update the score and counters */
+	private void apply() {
+		RetrosheetGameState st = state;
+		boolean home = st.home[batter];
+
+		/* Lead runner first, so nobody is overwritten */
+		for(int base=3;base>0;base--) {
+			int to = runnerTo[base];
+			if(st.runners[base] == RetrosheetGameState.NONE || to == base)
+				continue;
+			int runner = st.runners[base];
+			st.runners[base] = RetrosheetGameState.NONE;
+			if(to < 0) {
+				st.inningOuts++;
+			} else if(to == RetrosheetEvent.HOME) {
+				if(home)
+					st.homeScore++;
+				else
+					st.awayScore++;
+			} else {
+				st.runners[to] = runner;
+			}
+		}
+		if(batterTo == RetrosheetEvent.HOME) {
+			if(home)
+				st.homeScore++;
+			else
+				st.awayScore++;
+		} else if(batterTo > 0) {
+			st.runners[batterTo] = batter;
+		} else if(batterTo < 0) {
+			st.inningOuts++;
+		}
+
+		switch(event.type) {
+		case RetrosheetEvent.SINGLE:
+		case RetrosheetEvent.DOUBLE:
+		case RetrosheetEvent.GROUND_RULE_DOUBLE:
+		case RetrosheetEvent.TRIPLE:
+		case RetrosheetEvent.HOME_RUN:
+			st.hitsAllowed[pitcher]++;
+			st.rbis[batter] += rbisOnPlay;
+			break;
+		case RetrosheetEvent.HIT_BY_PITCH:
+			st.battersHit[pitcher]++;
+			st.hitByPitch[batter]++;
+			break;
+		case RetrosheetEvent.WALK:
+		case RetrosheetEvent.INTENTIONAL_WALK:
+			st.walksAllowed[pitcher]++;
+			break;
+		case RetrosheetEvent.STRIKEOUT:
+			st.pitcherStrikeouts[pitcher]++;
+			st.strikeouts[batter]++;
+			break;
+		case RetrosheetEvent.OUT:
+			st.outs[batter]++;
+			break;
+		}
+		if(event.type == RetrosheetEvent.WILD_PITCH || event.secondaryType == RetrosheetEvent.WILD_PITCH)
+			st.wildPitches[pitcher]++;
+	}
+
+	/* Where a runner starting on base ends up after the play: a base, HOME, or -1 if put out */
+	static int runnerDestination(RetrosheetEvent event, int base) {
+		int a = event.advanceIndex(base);
+		if(a >= 0)
+			return event.advanceOut[a] ? -1 : event.advanceTo[a];
+		if((event.putOuts & (1 << base)) != 0)
+			return -1;
+		int destination = impliedDestination(event.type, event.bases, event.runnerSafeOnError, base);
+		if(destination == base)
+			destination = impliedDestination(event.secondaryType, event.secondaryBases, event.secondaryRunnerSafeOnError, base);
+		return destination;
+	}
+
+	/* Stolen bases, caught stealing and pickoffs move runners without listing an advance */
+	private static int impliedDestination(int type, int bases, boolean safeOnError, int base) {
+		int next = base + 1;
+		switch(type) {
+		case RetrosheetEvent.STOLEN_BASE:
+			if((bases & (1 << next)) != 0)
+				return next;
+			break;
+		case RetrosheetEvent.CAUGHT_STEALING:
+		case RetrosheetEvent.PICKOFF_CAUGHT_STEALING:
+			if((bases & (1 << next)) != 0)
+				return safeOnError ? next : -1;
+			break;
+		case RetrosheetEvent.PICKOFF:
+			if((bases & (1 << base)) != 0)
+				return safeOnError ? base : -1;
+			break;
+		}
+		return base;
+	}
+
+	/* Where the batter ends up: a base, HOME, 0 if still batting, or -1 if out */
+	static int batterDestination(RetrosheetEvent event) {
+		int a = event.advanceIndex(RetrosheetEvent.BATTER);
+		if(a >= 0)
+			return event.advanceOut[a] ? -1 : event.advanceTo[a];
+		switch(event.type) {
+		case RetrosheetEvent.SINGLE:
+		case RetrosheetEvent.WALK:
+		case RetrosheetEvent.INTENTIONAL_WALK:
+		case RetrosheetEvent.HIT_BY_PITCH:
+		case RetrosheetEvent.ERROR:
+		case RetrosheetEvent.FIELDERS_CHOICE:
+		case RetrosheetEvent.INTERFERENCE:
+			return 1;
+		case RetrosheetEvent.DOUBLE:
+		case RetrosheetEvent.GROUND_RULE_DOUBLE:
+			return 2;
+		case RetrosheetEvent.TRIPLE:
+			return 3;
+		case RetrosheetEvent.HOME_RUN:
+			return RetrosheetEvent.HOME;
+		case RetrosheetEvent.OUT:
+			/* A force out such as 54(1) retires the runner, not the batter */
+			if(event.endsWithPutOut && (event.putOuts & (1 << RetrosheetEvent.BATTER)) == 0)
+				return 1;
+			return -1;
+		case RetrosheetEvent.STRIKEOUT:
+			return -1;
+		}
+		return 0;
+	}
+
+	/* The current line */
+	public RetrosheetTokenizer getTokenizer() {
+		return tok;
+	}
+
+	public RetrosheetGameState getState() {
+		return state;
+	}
+
+	public RetrosheetPlayerDictionary getPlayers() {
+		return players;
+	}
+
+	/* Id of the player in a slot, or "" for nobody */
+	public String playerId(int slot) {
+		return slot == RetrosheetGameState.NONE ? "" : players.id(state.player[slot]);
+	}
+
+	public int getInning() {
+		return inning;
+	}
+
+	/* Whether the visitors are batting */
+	public boolean isTop() {
+		return top;
+	}
+
+	public int getBatter() {
+		return batter;
+	}
+
+	public int getPitcher() {
+		return pitcher;
+	}
+
+	/* Slot at each defensive position of the team in the field */
+	public int[] getDefense() {
+		return defense;
+	}
+
+	public boolean isCountKnown() {
+		return countKnown;
+	}
+
+	/* Balls and strikes as a two digit number, 32 for a full count */
+	public int getCount() {
+		return count;
+	}
+
+	/* Whether the event was understood.  If not, the play is reported but not applied. */
+	public boolean isParsed() {
+		return parsed;
+	}
+
+	public RetrosheetEvent getEvent() {
+		return event;
+	}
+
+	public int getRbisOnPlay() {
+		return rbisOnPlay;
+	}
+
+	/* Where the runner on a base ends up; see runnerTo */
+	public int getRunnerDestination(int base) {
+		return runnerTo[base];
+	}
+
+	public int getBatterDestination() {
+		return batterTo;
+	}
+}
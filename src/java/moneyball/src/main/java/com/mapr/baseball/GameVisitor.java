@@ -0,0 +1,39 @@
+package com.mapr.baseball;
+
+import java.io.*;
+
+/* Callbacks from GameStateEngine as it replays a game.
+
+   Each callback gets the engine, whose tokenizer is positioned on the line
+   being handled and whose state and current play can be read from it.
+   Nothing passed to a callback may be kept after it returns; the engine
+   reuses all of it.  Override only the callbacks you need.  An exception
+   from a line's callback is reported to malformedLine, or playError for a
+   play, and the game goes on.
+*/
+public abstract class GameVisitor {
+	/* Before the first line of a game */
+	public void startGame(GameStateEngine engine) throws IOException {}
+
+	/* The id line */
+	public void gameId(GameStateEngine engine) throws IOException {}
+
+	/* An info line with a value, identified by a RetrosheetTokenizer INFO_ key */
+	public void info(GameStateEngine engine, int key) throws IOException {}
+
+	/* A start or sub line, once the player has been entered in the given slot */
+	public void player(GameStateEngine engine, int slot) throws IOException {}
+
+	/* A play, before it is applied: the game state still shows the situation
+	   the play started from, and the engine's play fields describe the play. */
+	public void play(GameStateEngine engine) throws IOException {}
+
+	/* A play that couldn't be replayed, such as one whose batter isn't in the game */
+	public void playError(GameStateEngine engine, Exception e) throws IOException {}
+
+	/* Any other line that couldn't be handled */
+	public void malformedLine(GameStateEngine engine, Exception e) throws IOException {}
+
+	/* After the last line of a game */
+	public void endGame(GameStateEngine engine) throws IOException {}
+}
@@ -0,0 +1,96 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+
+/* Packs the splits of many small event files into fewer, larger splits.
+
+   Splits are first grouped by host, and each host's splits are packed into
+   groups of up to retrosheet.combine.split.size bytes that run on that
+   host.  Whatever does not fill a group on any one host is packed again
+   without regard to locality.
+*/
+public class RetrosheetCombineInputFormat extends RetrosheetInputFormat {
+	public static final String SPLIT_SIZE = "retrosheet.combine.split.size";
+	private static final long DEFAULT_SPLIT_SIZE = 128L * 1024 * 1024;
+
+	public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+		return new RetrosheetCombineRecordReader();
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		long maxSize = job.getConfiguration().getLong(SPLIT_SIZE, DEFAULT_SPLIT_SIZE);
+		List<InputSplit> fileSplits = super.getSplits(job);
+
+		Map<String, List<FileSplit>> byHost = new TreeMap<String, List<FileSplit>>();
+		for(InputSplit s : fileSplits) {
+			FileSplit split = (FileSplit)s;
+			for(String host : split.getLocations()) {
+				List<FileSplit> local = byHost.get(host);
+				if(local == null)
+					byHost.put(host, local = new ArrayList<FileSplit>());
+				local.add(split);
+			}
+		}
+
+		List<InputSplit> combined = new ArrayList<InputSplit>();
+		Set<FileSplit> packed = new HashSet<FileSplit>();
+		for(Map.Entry<String, List<FileSplit>> e : byHost.entrySet()) {
+			List<FileSplit> group = new ArrayList<FileSplit>();
+			long size = 0;
+			for(FileSplit split : e.getValue()) {
+				if(packed.contains(split))
+					continue;
+				group.add(split);
+				size += split.getLength();
+				if(size >= maxSize) {
+					combined.add(new RetrosheetCombineSplit(group, new String[] { e.getKey() }));
+					packed.addAll(group);
+					group = new ArrayList<FileSplit>();
+					size = 0;
+				}
+			}
+		}
+
+		/* Leftovers, and splits with no known location */
+		List<FileSplit> group = new ArrayList<FileSplit>();
+		long size = 0;
+		for(InputSplit s : fileSplits) {
+			FileSplit split = (FileSplit)s;
+			if(packed.contains(split))
+				continue;
+			if(size > 0 && size + split.getLength() > maxSize) {
+				combined.add(new RetrosheetCombineSplit(group, hosts(group)));
+				group = new ArrayList<FileSplit>();
+				size = 0;
+			}
+			group.add(split);
+			size += split.getLength();
+		}
+		if(!group.isEmpty())
+			combined.add(new RetrosheetCombineSplit(group, hosts(group)));
+		return combined;
+	}
+
+	/* The hosts holding the most bytes of a group, best first */
+	private static String[] hosts(List<FileSplit> group) throws IOException {
+		final Map<String, Long> bytes = new HashMap<String, Long>();
+		for(FileSplit split : group) {
+			for(String host : split.getLocations()) {
+				Long b = bytes.get(host);
+				bytes.put(host, (b == null ? 0 : b) + split.getLength());
+			}
+		}
+		List<String> hosts = new ArrayList<String>(bytes.keySet());
+		Collections.sort(hosts, new Comparator<String>() {
+			public int compare(String a, String b) {
+				return bytes.get(b).compareTo(bytes.get(a));
+			}
+		});
+		return hosts.subList(0, Math.min(3, hosts.size())).toArray(new String[0]);
+	}
+}
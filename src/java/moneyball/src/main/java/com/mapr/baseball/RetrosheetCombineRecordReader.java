@@ -0,0 +1,66 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+
+/* Reads each part of a RetrosheetCombineSplit in turn, reusing one RetrosheetRecordReader */
+public class RetrosheetCombineRecordReader extends RecordReader<LongWritable, Text> {
+	private RetrosheetCombineSplit split;
+	private TaskAttemptContext context;
+	private final RetrosheetRecordReader reader = new RetrosheetRecordReader();
+	private RetrosheetRecordReader current;
+	private int part = -1;
+	private long totalLength, doneLength;
+
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException, InterruptedException {
+		this.split = (RetrosheetCombineSplit) genericSplit;
+		this.context = context;
+		this.totalLength = split.getLength();
+	}
+
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		while(current == null || !current.nextKeyValue()) {
+			if(current != null) {
+				doneLength += split.getPart(part).getLength();
+				current.close();
+				current = null;
+			}
+			if(++part >= split.getNumParts())
+				return false;
+			current = reader;
+			current.initialize(split.getPart(part), context);
+		}
+		return true;
+	}
+
+	/* Reader of the part the current game came from */
+	public RetrosheetRecordReader getCurrentReader() {
+		return current;
+	}
+
+	public LongWritable getCurrentKey() {
+		return current.getCurrentKey();
+	}
+
+	public Text getCurrentValue() {
+		return current.getCurrentValue();
+	}
+
+	public float getProgress() {
+		if(totalLength == 0)
+			return 0;
+		float progress = doneLength;
+		if(current != null)
+			progress += current.getProgress() * split.getPart(part).getLength();
+		return Math.min(1.0f, progress / totalLength);
+	}
+
+	public void close() throws IOException {
+		if(current != null) {
+			current.close();
+			current = null;
+		}
+	}
+}
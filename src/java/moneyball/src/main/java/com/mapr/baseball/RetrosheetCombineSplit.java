@@ -0,0 +1,75 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+
+/* A group of file splits, usually whole event files, read by one task.
+   Parts that were planned from a game index stay RetrosheetGameSplits. */
+public class RetrosheetCombineSplit extends InputSplit implements Writable {
+	private FileSplit[] parts;
+	private String[] hosts;
+
+	public RetrosheetCombineSplit() {
+		parts = new FileSplit[0];
+		hosts = new String[0];
+	}
+
+	public RetrosheetCombineSplit(List<FileSplit> parts, String[] hosts) {
+		this.parts = parts.toArray(new FileSplit[parts.size()]);
+		this.hosts = hosts;
+	}
+
+	public int getNumParts() {
+		return parts.length;
+	}
+
+	public FileSplit getPart(int i) {
+		return parts[i];
+	}
+
+	public long getLength() {
+		long length = 0;
+		for(FileSplit part : parts)
+			length += part.getLength();
+		return length;
+	}
+
+	public String[] getLocations() {
+		return hosts;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, parts.length);
+		for(FileSplit part : parts) {
+			/* -1 games marks a plain FileSplit */
+			WritableUtils.writeVInt(out, part instanceof RetrosheetGameSplit ? ((RetrosheetGameSplit)part).getGames() : -1);
+			Text.writeString(out, part.getPath().toString());
+			WritableUtils.writeVLong(out, part.getStart());
+			WritableUtils.writeVLong(out, part.getLength());
+		}
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		parts = new FileSplit[WritableUtils.readVInt(in)];
+		for(int i=0;i<parts.length;i++) {
+			int games = WritableUtils.readVInt(in);
+			Path path = new Path(Text.readString(in));
+			long start = WritableUtils.readVLong(in);
+			long length = WritableUtils.readVLong(in);
+			if(games < 0)
+				parts[i] = new FileSplit(path, start, length, null);
+			else
+				parts[i] = new RetrosheetGameSplit(path, start, length, games, null);
+		}
+		/* Like FileSplit, locations are only needed when scheduling */
+		hosts = new String[0];
+	}
+
+	public String toString() {
+		return parts.length + " parts, " + getLength() + " bytes";
+	}
+}
@@ -0,0 +1,548 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+
+/* Writes made up seasons in Retrosheet event file format, for testing at
+   scale without the real corpus.
+
+   Every team gets one file per season with its home games, named like the
+   real ones (2010BOS.EVA, 2010CHN.EVN).  Games are played out batter by
+   batter, so lineups, substitutions, runners and scores stay consistent and
+   the loader can replay them.  Games go to extra innings when tied, a few
+   dates are doubleheaders, and a given fraction of lines can be garbled.
+   The same seed and options always give the same files.
+
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetCorpusGenerator [options] <dir>
+
+	-seed <n>	random seed (1)
+	-year <y>	first season (2010)
+	-seasons <n>	number of seasons (1)
+	-size <mb>	keep adding seasons until this many megabytes are written
+	-games <n>	home games per team and season (81)
+	-malformed <f>	fraction of lines to garble (0)
+	-index		write a RetrosheetGameIndex next to each file
+	-rosters	write each team's roster file (BOS2010.ROS) for each season
+*/
+public class RetrosheetCorpusGenerator {
+	private static final String[] AL = { "ANA", "BAL", "BOS", "CHA", "CLE", "DET", "KCA", "MIN", "NYA", "OAK", "SEA", "TBA", "TEX", "TOR" };
+	private static final String[] NL = { "ARI", "ATL", "CHN", "CIN", "COL", "FLO", "HOU", "LAN", "MIL", "NYN", "PHI", "PIT", "SDN", "SFN", "SLN", "WAS" };
+	private static final String[] FIRST = { "Adam", "Ben", "Carl", "Dave", "Eric", "Frank", "Greg", "Hank", "Ivan", "Jack",
+		"Kurt", "Luis", "Mike", "Nate", "Omar", "Pete", "Ray", "Sam", "Tom", "Will" };
+	private static final String[] LAST = { "Abbott", "Baker", "Castro", "Diaz", "Ellis", "Fox", "Garcia", "Hill", "Ito", "Jones",
+		"Kim", "Lopez", "Miller", "Nunez", "Ortiz", "Park", "Quinn", "Reyes", "Smith", "Torres",
+		"Ueda", "Vargas", "Walker", "Young", "Zimmer", "Brown", "Cruz", "Davis", "Evans", "Gomez" };
+	private static final String[] SKY = { "sunny", "cloudy", "overcast", "night", "dome" };
+	private static final String[] WIND = { "ltor", "rtol", "tocf", "fromcf", "tolf", "fromlf", "torf", "fromrf", "unknown" };
+	private static final String EOL = "\r\n";
+	private static final int HITTERS = 13, PITCHERS = 12, STARTERS = 5;
+
+	private final Random random;
+	/* Malformed lines come from their own generator, so the games are the same at any rate */
+	private final Random garble;
+	private final double malformed;
+	private final Map<String, Integer> idCounts = new HashMap<String, Integer>();
+	private final Team[] teams = new Team[AL.length + NL.length];
+	private final String[] umpires = new String[40];
+	private int seasons;
+
+	private long bytes, games, lines, garbled;
+
+	private static class Player {
+		final String id, name, first, last;
+		final char bats, throwsHand;
+
+		Player(String id, String first, String last, char bats, char throwsHand) {
+			this.id = id;
+			this.name = last + " " + first.charAt(0);
+			this.first = first;
+			this.last = last;
+			this.bats = bats;
+			this.throwsHand = throwsHand;
+		}
+	}
+
+	private static class Team {
+		final String code;
+		final boolean american;
+		final Player[] hitters = new Player[HITTERS];
+		final Player[] pitchers = new Player[PITCHERS];
+		int nextStarter;
+
+		Team(String code, boolean american) {
+			this.code = code;
+			this.american = american;
+		}
+	}
+
+	/* One team's side of a game in progress */
+	private static class Side {
+		final Team team;
+		final int home;
+		/* Batting order 1-9, and each batter's position */
+		final Player[] order = new Player[10];
+		final int[] positions = new int[10];
+		/* The pitcher's place in the order, or 0 with a designated hitter */
+		int pitcherSlot;
+		Player pitcher;
+		final List<Player> pitchersUsed = new ArrayList<Player>();
+		final List<Integer> runsAllowed = new ArrayList<Integer>();
+		int nextBatter = 1;
+		int runs;
+
+		Side(Team team, int home) {
+			this.team = team;
+			this.home = home;
+		}
+	}
+
+	public RetrosheetCorpusGenerator(long seed, double malformed) {
+		this.random = new Random(seed);
+		this.garble = new Random(~seed);
+		this.malformed = malformed;
+		for(int i=0;i<teams.length;i++) {
+			boolean american = i < AL.length;
+			Team t = new Team(american ? AL[i] : NL[i - AL.length], american);
+			for(int p=0;p<HITTERS;p++)
+				t.hitters[p] = newPlayer();
+			for(int p=0;p<PITCHERS;p++)
+				t.pitchers[p] = newPlayer();
+			teams[i] = t;
+		}
+		for(int i=0;i<umpires.length;i++)
+			umpires[i] = newId(LAST[random.nextInt(LAST.length)], FIRST[random.nextInt(FIRST.length)], 900);
+	}
+
+	/* Bytes, games and lines written so far, and how many of the lines were garbled */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getLines() {
+		return lines;
+	}
+
+	public long getGarbled() {
+		return garbled;
+	}
+
+	private Player newPlayer() {
+		String first = FIRST[random.nextInt(FIRST.length)];
+		String last = LAST[random.nextInt(LAST.length)];
+		String id = newId(last, first, 0);
+		/* Handedness comes from the id, so the games written are the same as without it */
+		int h = id.hashCode() & 0x7fffffff;
+		char throwsHand = h % 4 == 0 ? 'L' : 'R';
+		char bats = h / 4 % 10 == 0 ? 'B' : throwsHand;
+		return new Player(id, first, last, bats, throwsHand);
+	}
+
+	/* Retrosheet style ids: four letters of the last name, the first initial, and a number */
+	private String newId(String last, String first, int base) {
+		StringBuilder id = new StringBuilder();
+		for(int i=0;i<4;i++)
+			id.append(i < last.length() ? Character.toLowerCase(last.charAt(i)) : '-');
+		id.append(Character.toLowerCase(first.charAt(0)));
+		String prefix = id.toString();
+		Integer count = idCounts.get(prefix);
+		int n = count == null ? 1 : count + 1;
+		idCounts.put(prefix, n);
+		id.append(String.format("%03d", (base + n) % 1000));
+		return id.toString();
+	}
+
+	/* Write a season of home games for every team into dir, and return the files written */
+	public List<Path> writeSeason(FileSystem fs, Path dir, int year, int homeGames) throws IOException {
+		/* A few players turn over between seasons */
+		if(seasons++ > 0) {
+			for(Team t : teams) {
+				for(int i=0;i<3;i++) {
+					t.hitters[random.nextInt(HITTERS)] = newPlayer();
+					t.pitchers[random.nextInt(PITCHERS)] = newPlayer();
+				}
+			}
+		}
+		List<Path> files = new ArrayList<Path>();
+		for(Team home : teams) {
+			Path file = new Path(dir, year + home.code + (home.american ? ".EVA" : ".EVN"));
+			Writer out = new BufferedWriter(new OutputStreamWriter(fs.create(file, true), "US-ASCII"));
+			try {
+				Calendar date = new GregorianCalendar(year, Calendar.APRIL, 1 + random.nextInt(7));
+				for(int g=0;g<homeGames;g++) {
+					Team visitor;
+					do {
+						visitor = teams[random.nextInt(teams.length)];
+					} while(visitor == home);
+					if(g + 1 < homeGames && random.nextInt(40) == 0) {
+						/* Doubleheader */
+						writeGame(out, home, visitor, date, 1);
+						writeGame(out, home, visitor, date, 2);
+						g++;
+					} else {
+						writeGame(out, home, visitor, date, 0);
+					}
+					date.add(Calendar.DAY_OF_MONTH, 1 + random.nextInt(3));
+				}
+			} finally {
+				out.close();
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+	/* Write the current roster of every team into dir, as the rosters of the given season */
+	public List<Path> writeRosters(FileSystem fs, Path dir, int year) throws IOException {
+		List<Path> files = new ArrayList<Path>();
+		for(Team t : teams) {
+			Path file = new Path(dir, t.code + year + ".ROS");
+			Writer out = new BufferedWriter(new OutputStreamWriter(fs.create(file, true), "US-ASCII"));
+			try {
+				for(Player p : t.hitters)
+					out.write(p.id + "," + p.last + "," + p.first + "," + p.bats + "," + p.throwsHand + "," + t.code + ",X" + EOL);
+				for(Player p : t.pitchers)
+					out.write(p.id + "," + p.last + "," + p.first + "," + p.bats + "," + p.throwsHand + "," + t.code + ",P" + EOL);
+			} finally {
+				out.close();
+			}
+			files.add(file);
+		}
+		return files;
+	}
+
+	private void writeGame(Writer out, Team homeTeam, Team visitorTeam, Calendar date, int number) throws IOException {
+		boolean dh = homeTeam.american;
+		Side visitor = lineup(visitorTeam, 0, dh);
+		Side home = lineup(homeTeam, 1, dh);
+		Player visitorStarter = visitor.pitcher, homeStarter = home.pitcher;
+		List<String> lines = new ArrayList<String>();
+		for(Side s : new Side[] { visitor, home }) {
+			for(int i=1;i<=9;i++)
+				lines.add("start," + s.order[i].id + ",\"" + s.order[i].name + "\"," + s.home + "," + i + "," + s.positions[i]);
+			if(dh)
+				lines.add("start," + s.pitcher.id + ",\"" + s.pitcher.name + "\"," + s.home + ",0,1");
+		}
+
+		/* Play until someone is ahead after a full inning, or the home team goes ahead late */
+		int inning = 1;
+		while(true) {
+			halfInning(lines, inning, visitor, home);
+			if(inning >= 9 && home.runs > visitor.runs)
+				break;
+			halfInning(lines, inning, home, visitor);
+			if(inning >= 9 && home.runs != visitor.runs || inning == 25)
+				break;
+			inning++;
+		}
+		if(random.nextInt(20) == 0)
+			lines.add(lines.size() - random.nextInt(lines.size() / 2), "com,\"$Delay due to rain\"");
+		for(Side s : new Side[] { visitor, home })
+			for(int i=0;i<s.pitchersUsed.size();i++)
+				lines.add("data,er," + s.pitchersUsed.get(i).id + "," + s.runsAllowed.get(i));
+
+		int month = date.get(Calendar.MONTH) + 1, day = date.get(Calendar.DAY_OF_MONTH);
+		int hour = number == 2 ? 19 : (random.nextBoolean() ? 13 : 19);
+		Player winner = home.runs > visitor.runs ? homeStarter : visitorStarter;
+		Player loser = home.runs > visitor.runs ? visitorStarter : homeStarter;
+		String id = homeTeam.code + String.format("%04d%02d%02d%d", date.get(Calendar.YEAR), month, day, number);
+
+		/* The id line is never garbled, so games stay where they are */
+		write(out, "id," + id, false);
+		String[] info = {
+			"version,2",
+			"info,visteam," + visitorTeam.code,
+			"info,hometeam," + homeTeam.code,
+			"info,site," + homeTeam.code + "01",
+			"info,date," + String.format("%04d/%02d/%02d", date.get(Calendar.YEAR), month, day),
+			"info,number," + number,
+			"info,starttime," + (hour > 12 ? hour - 12 : hour) + ":" + String.format("%02d", 5 + 5 * random.nextInt(2)) + "PM",
+			"info,daynight," + (hour < 17 ? "day" : "night"),
+			"info,usedh," + dh,
+			"info,umphome," + umpires[random.nextInt(umpires.length)],
+			"info,ump1b," + umpires[random.nextInt(umpires.length)],
+			"info,ump2b," + umpires[random.nextInt(umpires.length)],
+			"info,ump3b," + umpires[random.nextInt(umpires.length)],
+			"info,howscored,park",
+			"info,pitches,pitches",
+			"info,temp," + (45 + random.nextInt(50)),
+			"info,winddir," + WIND[random.nextInt(WIND.length)],
+			"info,windspeed," + random.nextInt(20),
+			"info,fieldcond," + (random.nextInt(10) == 0 ? "wet" : "dry"),
+			"info,precip," + (random.nextInt(10) == 0 ? "rain" : "none"),
+			"info,sky," + SKY[random.nextInt(SKY.length)],
+			"info,timeofgame," + (150 + 20 * (inning - 9) + random.nextInt(60)),
+			"info,attendance," + (15000 + random.nextInt(35000)),
+			"info,wp," + winner.id,
+			"info,lp," + loser.id,
+			"info,save,"
+		};
+		for(String line : info)
+			write(out, line, true);
+		for(String line : lines)
+			write(out, line, true);
+		games++;
+	}
+
+	private void write(Writer out, String line, boolean mayGarble) throws IOException {
+		if(mayGarble && malformed > 0 && garble.nextDouble() < malformed) {
+			line = garble(line);
+			garbled++;
+		}
+		out.write(line);
+		out.write(EOL);
+		bytes += line.length() + EOL.length();
+		lines++;
+	}
+
+	/* Truncate a line, mangle one of its fields, or replace it with junk */
+	private String garble(String line) {
+		switch(garble.nextInt(3)) {
+		case 0:
+			return line.substring(0, 1 + garble.nextInt(line.length() - 1));
+		case 1:
+			String[] fields = line.split(",", -1);
+			fields[garble.nextInt(fields.length)] = "??" + garble.nextInt(100);
+			StringBuilder b = new StringBuilder();
+			for(int i=0;i<fields.length;i++) {
+				if(i > 0)
+					b.append(',');
+				b.append(fields[i]);
+			}
+			return b.toString();
+		default:
+			char[] junk = new char[5 + garble.nextInt(30)];
+			for(int i=0;i<junk.length;i++)
+				junk[i] = garble.nextInt(6) == 0 ? ',' : (char)('a' + garble.nextInt(26));
+			return new String(junk);
+		}
+	}
+
+	/* Nine hitters from the bench of thirteen, at positions 2 to 9 and DH, plus the next starting pitcher */
+	private Side lineup(Team team, int home, boolean dh) {
+		Side s = new Side(team, home);
+		List<Player> hitters = new ArrayList<Player>(Arrays.asList(team.hitters));
+		Collections.shuffle(hitters, random);
+		List<Integer> positions = new ArrayList<Integer>();
+		for(int p=2;p<=9;p++)
+			positions.add(p);
+		positions.add(dh ? 10 : 1);
+		Collections.shuffle(positions.subList(0, 8), random);
+		s.pitcher = team.pitchers[team.nextStarter];
+		team.nextStarter = (team.nextStarter + 1) % STARTERS;
+		for(int i=1;i<=9;i++) {
+			s.positions[i] = positions.get(i - 1);
+			s.order[i] = s.positions[i] == 1 ? s.pitcher : hitters.get(i - 1);
+		}
+		s.pitcherSlot = dh ? 0 : 9;
+		s.pitchersUsed.add(s.pitcher);
+		s.runsAllowed.add(0);
+		return s;
+	}
+
+	private void halfInning(List<String> lines, int inning, Side bat, Side field) {
+		/* Late in the game the starter may be relieved */
+		if(inning >= 6 && random.nextInt(10) < 3 && field.pitchersUsed.size() < PITCHERS - STARTERS + 1) {
+			Player reliever;
+			do {
+				reliever = field.team.pitchers[STARTERS + random.nextInt(PITCHERS - STARTERS)];
+			} while(field.pitchersUsed.contains(reliever));
+			field.pitcher = reliever;
+			field.pitchersUsed.add(reliever);
+			field.runsAllowed.add(0);
+			if(field.pitcherSlot > 0)
+				field.order[field.pitcherSlot] = reliever;
+			lines.add("sub," + reliever.id + ",\"" + reliever.name + "\"," + field.home + "," + field.pitcherSlot + ",1");
+		}
+
+		Player[] bases = new Player[4];
+		int outs = 0;
+		boolean walkOff = inning >= 9 && bat.home == 1;
+		while(outs < 3 && !(walkOff && bat.runs > field.runs)) {
+			Player batter = bat.order[bat.nextBatter];
+			int runs = 0;
+			StringBuilder advances = new StringBuilder();
+
+			/* Now and then the runner on first tries to steal second first */
+			if(bases[1] != null && bases[2] == null && random.nextInt(25) == 0) {
+				String event;
+				if(random.nextInt(3) == 0) {
+					event = "CS2(24)";
+					outs++;
+				} else {
+					event = "SB2";
+					bases[2] = bases[1];
+				}
+				bases[1] = null;
+				lines.add(play(inning, bat, batter, random.nextInt(3) * 10 + random.nextInt(3), event));
+				continue;
+			}
+
+			String event;
+			int balls = random.nextInt(4), strikes = random.nextInt(3);
+			int r = random.nextInt(1000);
+			if(r < 200) {
+				event = "K";
+				strikes = 2;
+				outs++;
+			} else if(r < 420) {
+				if(bases[1] != null && outs < 2 && random.nextInt(3) == 0) {
+					event = "64(1)3/GDP";
+					bases[1] = null;
+					outs += 2;
+				} else {
+					String[] fielders = { "63", "43", "53", "31", "13", "6", "4", "3" };
+					event = fielders[random.nextInt(fielders.length)] + "/G";
+					outs++;
+				}
+				if(outs < 3 && bases[3] != null && random.nextInt(3) == 0) {
+					runs += advance(advances, bases, 3, 4);
+				}
+			} else if(r < 620) {
+				event = (7 + random.nextInt(3)) + "/F";
+				outs++;
+				if(outs < 3 && bases[3] != null && random.nextInt(5) < 2) {
+					event = (7 + random.nextInt(3)) + "/SF";
+					runs += advance(advances, bases, 3, 4);
+				}
+			} else if(r < 670) {
+				event = (2 + random.nextInt(5)) + "/P";
+				outs++;
+			} else if(r < 700) {
+				event = (3 + random.nextInt(7)) + "/L";
+				outs++;
+			} else if(r < 850) {
+				event = "S" + (7 + random.nextInt(3)) + "/G";
+				runs += advance(advances, bases, 3, 4);
+				runs += advance(advances, bases, 2, random.nextInt(10) < 6 ? 4 : 3);
+				runs += advance(advances, bases, 1, bases[3] == null && random.nextInt(10) < 3 ? 3 : 2);
+				bases[1] = batter;
+			} else if(r < 900) {
+				event = "D" + (7 + random.nextInt(3)) + "/F";
+				runs += advance(advances, bases, 3, 4);
+				runs += advance(advances, bases, 2, 4);
+				runs += advance(advances, bases, 1, random.nextInt(10) < 4 ? 4 : 3);
+				bases[2] = batter;
+			} else if(r < 905) {
+				event = "T" + (7 + random.nextInt(3)) + "/F";
+				runs += advance(advances, bases, 3, 4);
+				runs += advance(advances, bases, 2, 4);
+				runs += advance(advances, bases, 1, 4);
+				bases[3] = batter;
+			} else if(r < 935) {
+				event = "HR/F" + (7 + random.nextInt(3));
+				runs += advance(advances, bases, 3, 4);
+				runs += advance(advances, bases, 2, 4);
+				runs += advance(advances, bases, 1, 4);
+				runs++;
+			} else {
+				/* Walks, hit batters and errors only force runners along */
+				if(r < 985) {
+					event = r < 980 ? "W" : "IW";
+					balls = 3;
+				} else if(r < 992) {
+					event = "HP";
+				} else {
+					event = "E" + (1 + random.nextInt(9)) + "/G";
+				}
+				if(bases[1] != null) {
+					if(bases[2] != null) {
+						if(bases[3] != null)
+							runs += advance(advances, bases, 3, 4);
+						advance(advances, bases, 2, 3);
+					}
+					advance(advances, bases, 1, 2);
+				}
+				bases[1] = batter;
+			}
+			if(advances.length() > 0)
+				event = event + "." + advances;
+			lines.add(play(inning, bat, batter, balls * 10 + strikes, event));
+			bat.runs += runs;
+			field.runsAllowed.set(field.runsAllowed.size() - 1, field.runsAllowed.get(field.runsAllowed.size() - 1) + runs);
+			bat.nextBatter = bat.nextBatter % 9 + 1;
+		}
+	}
+
+	/* Move the runner on a base, if there is one, adding to the advances; returns the runs scored */
+	private static int advance(StringBuilder advances, Player[] bases, int from, int to) {
+		if(bases[from] == null)
+			return 0;
+		if(advances.length() > 0)
+			advances.append(';');
+		advances.append(from).append('-').append(to == 4 ? "H" : String.valueOf(to));
+		Player runner = bases[from];
+		bases[from] = null;
+		if(to == 4)
+			return 1;
+		bases[to] = runner;
+		return 0;
+	}
+
+	private String play(int inning, Side bat, Player batter, int count, String event) {
+		/* Balls, called and swinging strikes, fouls, and the ball put in play */
+		StringBuilder pitches = new StringBuilder();
+		int n = count / 10 + count % 10 + 1;
+		for(int i=0;i<n;i++)
+			pitches.append("BCSF".charAt(random.nextInt(4)));
+		pitches.append('X');
+		return "play," + inning + "," + bat.home + "," + batter.id + "," + String.format("%02d", count) + "," + pitches + "," + event;
+	}
+
+	public static void main(String[] args) throws IOException {
+		long seed = 1;
+		int year = 2010, seasonCount = 1, homeGames = 81;
+		long size = 0;
+		double malformed = 0;
+		boolean index = false, rosters = false;
+		String output = null;
+		for(int i=0;i<args.length;i++) {
+			if(args[i].equals("-seed"))
+				seed = Long.parseLong(args[++i]);
+			else if(args[i].equals("-year"))
+				year = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-seasons"))
+				seasonCount = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-size"))
+				size = Long.parseLong(args[++i]) * 1024 * 1024;
+			else if(args[i].equals("-games"))
+				homeGames = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-malformed"))
+				malformed = Double.parseDouble(args[++i]);
+			else if(args[i].equals("-index"))
+				index = true;
+			else if(args[i].equals("-rosters"))
+				rosters = true;
+			else if(output == null && !args[i].startsWith("-"))
+				output = args[i];
+			else
+				output = null;
+		}
+		if(output == null) {
+			System.err.println("Usage: RetrosheetCorpusGenerator [-seed n] [-year y] [-seasons n] [-size mb] [-games n] [-malformed f] [-index] [-rosters] <dir>");
+			System.exit(1);
+		}
+
+		Configuration conf = new Configuration();
+		Path dir = new Path(output);
+		FileSystem fs = dir.getFileSystem(conf);
+		fs.mkdirs(dir);
+		RetrosheetCorpusGenerator generator = new RetrosheetCorpusGenerator(seed, malformed);
+		for(int s=0;size > 0 ? generator.getBytes() < size : s < seasonCount;s++) {
+			for(Path file : generator.writeSeason(fs, dir, year + s, homeGames)) {
+				if(index)
+					RetrosheetGameIndex.build(fs, fs.getFileStatus(file)).write(fs, file);
+			}
+			if(rosters)
+				generator.writeRosters(fs, dir, year + s);
+			System.out.println((year + s) + ": " + generator.getGames() + " games, " + generator.getBytes() + " bytes");
+		}
+		if(malformed > 0)
+			System.out.println(generator.getGarbled() + " of " + generator.getLines() + " lines garbled");
+	}
+}
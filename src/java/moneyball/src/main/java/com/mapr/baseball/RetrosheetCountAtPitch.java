@@ -0,0 +1,24 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.pig.data.*;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+/* The balls-strikes count, such as "1-2", when the n-th pitch of a play
+   (counting from 1) was thrown, or null if there weren't that many:
+
+	RetrosheetCountAtPitch(pitches, n)
+*/
+public class RetrosheetCountAtPitch extends RetrosheetPitchFunc<String> {
+	public String exec(Tuple input) throws IOException {
+		byte[] pitches = pitches(input);
+		if(pitches == null || input.size() < 2 || input.get(1) == null)
+			return null;
+		int count = RetrosheetPitches.countBefore(pitches, ((Number)input.get(1)).intValue() - 1);
+		return count < 0 ? null : count / 10 + "-" + count % 10;
+	}
+
+	public Schema outputSchema(Schema input) {
+		return new Schema(new Schema.FieldSchema("count", DataType.CHARARRAY));
+	}
+}
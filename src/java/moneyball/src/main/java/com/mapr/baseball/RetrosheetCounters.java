@@ -0,0 +1,57 @@
+package com.mapr.baseball;
+
+/* Counts of what was read, what couldn't be read, and sampled timings, kept
+   in a plain array so they cost next to nothing to update.  Users pass the
+   increments on to Hadoop counters from time to time with get() and clear().
+*/
+public class RetrosheetCounters {
+	public enum Counter {
+		/* Lines of each RetrosheetTokenizer LINE_ type, in the same order */
+		UNKNOWN_LINES, ID_LINES, VERSION_LINES, INFO_LINES, START_LINES, SUB_LINES, PLAY_LINES,
+		DATA_LINES, COM_LINES, BADJ_LINES, PADJ_LINES, LADJ_LINES,
+		GAMES, PLAYS, BYTES,
+		/* Plays reported with no result, because their event wasn't understood */
+		UNPARSED_EVENTS,
+		/* Plays skipped */
+		BATTER_NOT_IN_LINEUP, MISSING_FIELDER, MALFORMED_PLAYS,
+		/* Other lines skipped */
+		MALFORMED_LINEUP_LINES, MALFORMED_ID_LINES, MALFORMED_INFO_LINES, MALFORMED_LINES,
+		/* Partial counts returned by RetrosheetLoader('-count ...') */
+		PARTIAL_COUNTS,
+		/* Games whose reading failed the task */
+		FAILED_GAMES,
+		/* Time spent in each stage of the timed games only */
+		TIMED_GAMES, READ_NANOS, TOKENIZE_NANOS, EVENT_PARSE_NANOS, TUPLE_BUILD_NANOS
+	}
+
+	private static final Counter[] COUNTERS = Counter.values();
+	private static final int LINE_TYPES = Counter.LADJ_LINES.ordinal() + 1;
+
+	private final long[] values = new long[COUNTERS.length];
+
+	public static Counter[] counters() {
+		return COUNTERS.clone();
+	}
+
+	public void increment(Counter counter) {
+		values[counter.ordinal()]++;
+	}
+
+	public void add(Counter counter, long n) {
+		values[counter.ordinal()] += n;
+	}
+
+	/* Count a line of a RetrosheetTokenizer LINE_ type */
+	public void line(int type) {
+		values[type >= 0 && type < LINE_TYPES ? type : 0]++;
+	}
+
+	public long get(Counter counter) {
+		return values[counter.ordinal()];
+	}
+
+	public void clear() {
+		for(int i=0;i<values.length;i++)
+			values[i] = 0;
+	}
+}
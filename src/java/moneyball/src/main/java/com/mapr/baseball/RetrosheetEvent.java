@@ -0,0 +1,175 @@
+package com.mapr.baseball;
+
+import org.apache.hadoop.io.*;
+
+/* Mutable result of parsing one Retrosheet event string, such as
+   "64(1)3/GDP/G6.3-H;2-3".
+
+   RetrosheetEventParser fills an instance in place, so one instance can be
+   reused for every play in a task.  Spans (fielders, modifiers, location)
+   are offsets into the event bytes the instance was parsed from, which are
+   only valid until the next parse.
+*/
+public class RetrosheetEvent {
+
+	/* Basic play types */
+	public static final int UNKNOWN = 0;
+	public static final int OUT = 1;
+	public static final int SINGLE = 2;
+	public static final int DOUBLE = 3;
+	public static final int TRIPLE = 4;
+	public static final int HOME_RUN = 5;
+	public static final int GROUND_RULE_DOUBLE = 6;
+	public static final int STRIKEOUT = 7;
+	public static final int WALK = 8;
+	public static final int INTENTIONAL_WALK = 9;
+	public static final int HIT_BY_PITCH = 10;
+	public static final int ERROR = 11;
+	public static final int FIELDERS_CHOICE = 12;
+	public static final int FOUL_ERROR = 13;
+	public static final int INTERFERENCE = 14;
+	public static final int NO_PLAY = 15;
+	public static final int STOLEN_BASE = 16;
+	public static final int CAUGHT_STEALING = 17;
+	public static final int PICKOFF = 18;
+	public static final int PICKOFF_CAUGHT_STEALING = 19;
+	public static final int WILD_PITCH = 20;
+	public static final int PASSED_BALL = 21;
+	public static final int BALK = 22;
+	public static final int DEFENSIVE_INDIFFERENCE = 23;
+	public static final int OTHER_ADVANCE = 24;
+
+	private static final String[] TYPE_NAMES = {
+		"Unknown", "Out", "Single", "Double", "Triple", "Home run", "Double", "Strikeout", "Walk",
+		"Walk", "Hit by pitch", "Error", "Fielder's choice", "Foul error", "Interference",
+		"No Play", "Stolen base", "Caught stealing", "Pickoff", "Pickoff caught stealing",
+		"Wild pitch", "Passed ball", "Balk", "Defensive indifference", "Other advance"
+	};
+
+	/* Bases used by runner advances.  The batter starts at BATTER, and HOME means the runner scored. */
+	public static final int BATTER = 0;
+	public static final int HOME = 4;
+
+	public static final int MAX_FIELDERS = 16;
+	public static final int MAX_MODIFIERS = 8;
+	public static final int MAX_ADVANCES = 8;
+
+	byte[] source;
+	int offset, length;
+
+	/* The basic play, and the play after '+' on K+ and W+ events (UNKNOWN if there is none) */
+	public int type;
+	public int secondaryType;
+
+	/* Bit mask of bases for base running plays: the bases stolen for SB, the base
+	   being stolen for CS and POCS, the base picked off from for PO. */
+	public int bases;
+	public int secondaryBases;
+
+	/* Set when the parenthesized fielders of a CS, PO or POCS include an error, meaning the runner was safe */
+	public boolean runnerSafeOnError;
+	public boolean secondaryRunnerSafeOnError;
+
+	/* Fielders credited on the basic play, e.g. 6,4,3 for 64(1)3, and the raw text span */
+	public final byte[] fielders = new byte[MAX_FIELDERS];
+	public int fielderCount;
+	public int fielderStart, fielderEnd;
+
+	/* Bit mask of runners put out in the fielder sequence, (B) being the BATTER bit, and whether
+	   the sequence ended on such a put out (54(1) rather than 64(1)3), which leaves the batter safe */
+	public int putOuts;
+	public boolean endsWithPutOut;
+
+	/* Modifier spans, e.g. GDP and G6 for 64(1)3/GDP/G6 */
+	public final int[] modifierStart = new int[MAX_MODIFIERS];
+	public final int[] modifierEnd = new int[MAX_MODIFIERS];
+	public int modifierCount;
+
+	/* Hit trajectory from the first hit description modifier: 'G', 'L', 'F', 'P', 'B' (bunt), or 0 */
+	public byte trajectory;
+	public int locationStart, locationEnd;
+
+	/* Explicit runner advances after the '.' */
+	public final byte[] advanceFrom = new byte[MAX_ADVANCES];
+	public final byte[] advanceTo = new byte[MAX_ADVANCES];
+	public final boolean[] advanceOut = new boolean[MAX_ADVANCES];
+	public final boolean[] advanceError = new boolean[MAX_ADVANCES];
+	public final boolean[] advanceNoRbi = new boolean[MAX_ADVANCES];
+	public int advanceCount;
+
+	public void clear() {
+		type = UNKNOWN;
+		secondaryType = UNKNOWN;
+		bases = 0;
+		secondaryBases = 0;
+		runnerSafeOnError = false;
+		secondaryRunnerSafeOnError = false;
+		fielderCount = 0;
+		fielderStart = fielderEnd = 0;
+		putOuts = 0;
+		endsWithPutOut = false;
+		modifierCount = 0;
+		trajectory = 0;
+		locationStart = locationEnd = 0;
+		advanceCount = 0;
+	}
+
+	public static String typeName(int type) {
+		if(type < 0 || type >= TYPE_NAMES.length)
+			return TYPE_NAMES[UNKNOWN];
+		return TYPE_NAMES[type];
+	}
+
+	public boolean isHit() {
+		return type == SINGLE || type == DOUBLE || type == TRIPLE || type == HOME_RUN || type == GROUND_RULE_DOUBLE;
+	}
+
+	/* Index of the explicit advance for the runner starting on the given base, or -1 */
+	public int advanceIndex(int from) {
+		for(int i=0;i<advanceCount;i++)
+			if(advanceFrom[i] == from)
+				return i;
+		return -1;
+	}
+
+	public boolean hasModifier(byte[] code) {
+		for(int m=0;m<modifierCount;m++) {
+			int len = modifierEnd[m] - modifierStart[m];
+			if(len != code.length)
+				continue;
+			int i = 0;
+			while(i < len && source[offset + modifierStart[m] + i] == code[i])
+				i++;
+			if(i == len)
+				return true;
+		}
+		return false;
+	}
+
+	/* The raw fielder text of the basic play, e.g. "64(1)3", or "" if there is none */
+	public String fielderString() {
+		return span(fielderStart, fielderEnd);
+	}
+
+	public String modifierString(int m) {
+		return span(modifierStart[m], modifierEnd[m]);
+	}
+
+	public String locationString() {
+		return span(locationStart, locationEnd);
+	}
+
+	public String toString() {
+		return span(0, length);
+	}
+
+	private String span(int start, int end) {
+		if(end <= start)
+			return "";
+		try {
+			return Text.decode(source, offset + start, end - start);
+		} catch (java.nio.charset.CharacterCodingException e) {
+			throw new IllegalArgumentException("Malformed event bytes", e);
+		}
+	}
+}
@@ -0,0 +1,433 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.pig.data.*;
+
+/* The game_events bag of RetrosheetLoader, holding the plays of one game as
+   columns instead of a tuple per play.
+
+   Each play field is a column of ints, kept in a byte[], short[] or int[],
+   whichever is the narrowest its values fit, so most take a byte or two a
+   play.  Players are RetrosheetPlayerDictionary codes, the fielders and
+   pitches spans of the game's bytes, and the names codes into a table of
+   the bag's own.  Tuples are made as the bag is iterated.
+
+   Every bag is registered with Pig's own SpillableMemoryManager, through
+   the registerBag of a BagFactory, so it is spilled along with the bags
+   BagFactory makes when the heap runs short.  A bag also spills itself
+   once it holds more than its limit, as InternalCachedBag does.  A spill
+   writes the columns one after another as VInts to a file in the task's
+   temporary directory, which is deleted when the bag is cleared, and
+   otherwise goes with the directory when the task ends.  Written as a Writable,
+   the bag is a plain bag of tuples in Pig's usual binary form.  Bags are
+   compared as DefaultAbstractBag compares them, as sorted bags, so they
+   compare the same before and after a shuffle.
+
+   Any other tuple added is kept as it is, and comes after the plays.
+*/
+public class RetrosheetEventBag implements DataBag {
+	private static final long serialVersionUID = 1L;
+	private static final InterSedes SEDES = InterSedesFactory.getInterSedesInstance();
+	/* The default factory first, so its memory manager is the one registered with */
+	private static final BagFactory BAGS = BagFactory.getInstance();
+	private static final Registrar REGISTRAR = new Registrar();
+
+	/* Columns after the play fields */
+	private static final int PARSED = RetrosheetPlayTuple.PLAY_FIELDS;
+	private static final int FIELDER_START = PARSED + 1;
+	private static final int FIELDER_LENGTH = PARSED + 2;
+	private static final int PITCHES_START = PARSED + 3;
+	private static final int PITCHES_LENGTH = PARSED + 4;
+	private static final int BATTER_NAME = PARSED + 5;
+	private static final int PITCHER_NAME = PARSED + 6;
+	private static final int COLUMNS = PARSED + 7;
+	private static final int INITIAL_ROWS = 128;
+	/* The memory held is checked every so many plays */
+	private static final int MEMORY_CHECK = 64;
+
+	private final RetrosheetPlayerDictionary players;
+	/* The game's bytes, which the spans are of.  They belong to the game tuple. */
+	private final byte[] bytes;
+	private final boolean names;
+	private final boolean pitches;
+	/* Bytes held before the bag spills, or 0 to only spill when asked */
+	private final long maxMemory;
+
+	private Block current = new Block(INITIAL_ROWS);
+	private final List<File> spills = new ArrayList<File>();
+	private long spilled = 0;
+	private int added = 0;
+	/* Names, by code */
+	private final List<String> strings = new ArrayList<String>();
+	private final Map<String, Integer> stringCodes = new HashMap<String, Integer>();
+	/* Tuples that aren't plays of this game */
+	private List<Tuple> others;
+
+	public RetrosheetEventBag(RetrosheetPlayerDictionary players, byte[] bytes, boolean names, boolean pitches, long maxMemory) {
+		this.players = players;
+		this.bytes = bytes;
+		this.names = names;
+		this.pitches = pitches;
+		this.maxMemory = maxMemory;
+		REGISTRAR.registerBag(this);
+	}
+
+	/* BagFactory only lets its memory manager be reached through registerBag.  The
+	   manager is shared by every factory, so this one only registers. */
+	private static final class Registrar extends BagFactory {
+		protected void registerBag(DataBag b) {
+			super.registerBag(b);
+		}
+
+		public DataBag newDefaultBag() {
+			return BAGS.newDefaultBag();
+		}
+
+		public DataBag newDefaultBag(List<Tuple> tuples) {
+			return BAGS.newDefaultBag(tuples);
+		}
+
+		public DataBag newSortedBag(Comparator<Tuple> comp) {
+			return BAGS.newSortedBag(comp);
+		}
+
+		public DataBag newDistinctBag() {
+			return BAGS.newDistinctBag();
+		}
+	}
+
+	/* A column of ints, in the narrowest array that holds its values */
+	private static final class Column {
+		private byte[] b;
+		private short[] s;
+		private int[] i;
+
+		Column(int capacity) {
+			b = new byte[capacity];
+		}
+
+		int get(int row) {
+			if(b != null)
+				return b[row];
+			if(s != null)
+				return s[row];
+			return i[row];
+		}
+
+		void set(int row, int v) {
+			if(b != null) {
+				if(v == (byte)v) {
+					b[row] = (byte)v;
+					return;
+				}
+				s = new short[b.length];
+				for(int r=0;r<b.length;r++)
+					s[r] = b[r];
+				b = null;
+			}
+			if(s != null) {
+				if(v == (short)v) {
+					s[row] = (short)v;
+					return;
+				}
+				i = new int[s.length];
+				for(int r=0;r<s.length;r++)
+					i[r] = s[r];
+				s = null;
+			}
+			i[row] = v;
+		}
+
+		void grow(int capacity) {
+			if(b != null)
+				b = Arrays.copyOf(b, capacity);
+			else if(s != null)
+				s = Arrays.copyOf(s, capacity);
+			else
+				i = Arrays.copyOf(i, capacity);
+		}
+
+		long memorySize() {
+			if(b != null)
+				return 32 + b.length;
+			if(s != null)
+				return 32 + 2 * s.length;
+			return 32 + 4 * i.length;
+		}
+	}
+
+	/* Rows of plays, a column per field */
+	private static final class Block {
+		final Column[] columns = new Column[COLUMNS];
+		int capacity;
+		int size = 0;
+
+		Block(int capacity) {
+			this.capacity = Math.max(capacity, 1);
+			for(int c=0;c<COLUMNS;c++)
+				columns[c] = new Column(this.capacity);
+		}
+
+		int newRow() {
+			if(size == capacity) {
+				capacity *= 2;
+				for(Column c : columns)
+					c.grow(capacity);
+			}
+			return size++;
+		}
+
+		long memorySize() {
+			long size = 32 + 8 * COLUMNS;
+			for(Column c : columns)
+				size += c.memorySize();
+			return size;
+		}
+	}
+
+	public synchronized void add(Tuple t) {
+		if(t instanceof RetrosheetPlayTuple && ((RetrosheetPlayTuple)t).isPlayOf(bytes)) {
+			RetrosheetPlayTuple play = (RetrosheetPlayTuple)t;
+			int row = current.newRow();
+			Column[] c = current.columns;
+			for(int f=0;f<RetrosheetPlayTuple.PLAY_FIELDS;f++)
+				c[f].set(row, play.values[f]);
+			c[PARSED].set(row, play.parsed ? 1 : 0);
+			c[FIELDER_START].set(row, play.fielderStart);
+			c[FIELDER_LENGTH].set(row, play.fielderLength);
+			c[PITCHES_START].set(row, play.pitchesStart);
+			c[PITCHES_LENGTH].set(row, play.pitchesLength);
+			c[BATTER_NAME].set(row, code(play.batterName));
+			c[PITCHER_NAME].set(row, code(play.pitcherName));
+		} else {
+			if(others == null)
+				others = new ArrayList<Tuple>();
+			others.add(t);
+		}
+		if(maxMemory > 0 && ++added % MEMORY_CHECK == 0 && getMemorySize() > maxMemory)
+			spill();
+	}
+
+	public void addAll(DataBag b) {
+		for(Tuple t : b)
+			add(t);
+	}
+
+	/* Code of a name in the bag's table, or -1 for none */
+	private int code(String s) {
+		if(s == null)
+			return -1;
+		Integer code = stringCodes.get(s);
+		if(code == null) {
+			code = strings.size();
+			strings.add(s);
+			stringCodes.put(s, code);
+		}
+		return code;
+	}
+
+	private RetrosheetPlayTuple play(Block block, int row) {
+		RetrosheetPlayTuple play = new RetrosheetPlayTuple(players, bytes, null, names, pitches);
+		Column[] c = block.columns;
+		for(int f=0;f<RetrosheetPlayTuple.PLAY_FIELDS;f++)
+			play.values[f] = c[f].get(row);
+		play.parsed = c[PARSED].get(row) != 0;
+		play.fielderStart = c[FIELDER_START].get(row);
+		play.fielderLength = c[FIELDER_LENGTH].get(row);
+		play.pitchesStart = c[PITCHES_START].get(row);
+		play.pitchesLength = c[PITCHES_LENGTH].get(row);
+		int batter = c[BATTER_NAME].get(row), pitcher = c[PITCHER_NAME].get(row);
+		play.batterName = batter < 0 ? null : strings.get(batter);
+		play.pitcherName = pitcher < 0 ? null : strings.get(pitcher);
+		return play;
+	}
+
+	public synchronized long size() {
+		return spilled + current.size + (others == null ? 0 : others.size());
+	}
+
+	public boolean isSorted() {
+		return false;
+	}
+
+	public boolean isDistinct() {
+		return false;
+	}
+
+	public void markStale(boolean stale) {
+	}
+
+	public synchronized void clear() {
+		for(File f : spills)
+			f.delete();
+		spills.clear();
+		spilled = 0;
+		current = new Block(INITIAL_ROWS);
+		others = null;
+	}
+
+	public synchronized long getMemorySize() {
+		long size = 64 + current.memorySize();
+		for(String s : strings)
+			size += 8 + RetrosheetLazyTuple.memorySize(s);
+		if(others != null) {
+			for(Tuple t : others)
+				size += 8 + t.getMemorySize();
+		}
+		return size;
+	}
+
+	/* Write the plays held in memory to a file, and drop them.  Returns how many there were. */
+	public synchronized long spill() {
+		int rows = current.size;
+		if(rows == 0)
+			return 0;
+		try {
+			File f = File.createTempFile("retrosheet-events", null, tmpDir());
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f)));
+			try {
+				WritableUtils.writeVInt(out, rows);
+				for(Column c : current.columns) {
+					for(int row=0;row<rows;row++)
+						WritableUtils.writeVInt(out, c.get(row));
+				}
+			} finally {
+				out.close();
+			}
+			spills.add(f);
+		} catch (IOException e) {
+			throw new RuntimeException("Can't spill game events", e);
+		}
+		spilled += rows;
+		/* An iterator may still be reading the old block */
+		current = new Block(INITIAL_ROWS);
+		return rows;
+	}
+
+	/* Where Pig's bags spill, which is the task's own temporary directory under Hadoop */
+	private static File tmpDir() {
+		File dir = new File(System.getProperty("java.io.tmpdir"));
+		if(!dir.exists() && !dir.mkdirs() && !dir.exists())
+			throw new RuntimeException("Can't create temporary directory " + dir);
+		return dir;
+	}
+
+	private static Block readSpill(File f) {
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)));
+			try {
+				int rows = WritableUtils.readVInt(in);
+				Block block = new Block(rows);
+				block.size = rows;
+				for(Column c : block.columns) {
+					for(int row=0;row<rows;row++)
+						c.set(row, WritableUtils.readVInt(in));
+				}
+				return block;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Can't read spilled game events from " + f, e);
+		}
+	}
+
+	/* The spilled plays, then those in memory, then any other tuples */
+	public Iterator<Tuple> iterator() {
+		return new Iterator<Tuple>() {
+			private int source = 0;
+			private Block block;
+			private int row = 0;
+			private Iterator<Tuple> rest;
+
+			public boolean hasNext() {
+				while(block == null || row >= block.size) {
+					synchronized(RetrosheetEventBag.this) {
+						if(source > spills.size()) {
+							if(rest == null)
+								rest = others == null ? Collections.<Tuple>emptyList().iterator() : others.iterator();
+							return rest.hasNext();
+						}
+						block = source < spills.size() ? readSpill(spills.get(source)) : current;
+					}
+					source++;
+					row = 0;
+				}
+				return true;
+			}
+
+			public Tuple next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				if(row < block.size)
+					return play(block, row++);
+				return rest.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public void write(DataOutput out) throws IOException {
+		SEDES.writeDatum(out, this);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		DataBag read = (DataBag)SEDES.readDatum(in);
+		clear();
+		for(Tuple t : read)
+			add(t);
+	}
+
+	/* By size, then tuple by tuple in sorted order, as DefaultAbstractBag does */
+	public int compareTo(Object other) {
+		if(this == other)
+			return 0;
+		if(!(other instanceof DataBag))
+			return DataType.compare(this, other);
+		DataBag b = (DataBag)other;
+		if(size() != b.size())
+			return size() < b.size() ? -1 : 1;
+		Iterator<Tuple> i = sorted(this).iterator(), j = sorted(b).iterator();
+		while(i.hasNext() && j.hasNext()) {
+			int c = i.next().compareTo(j.next());
+			if(c != 0)
+				return c;
+		}
+		return 0;
+	}
+
+	private static DataBag sorted(DataBag b) {
+		if(b.isSorted() || b.isDistinct())
+			return b;
+		DataBag sorted = BAGS.newSortedBag(null);
+		for(Tuple t : b)
+			sorted.add(t);
+		return sorted;
+	}
+
+	public boolean equals(Object other) {
+		return other instanceof DataBag && compareTo(other) == 0;
+	}
+
+	public int hashCode() {
+		int hash = 1;
+		for(Tuple t : this)
+			hash = 37 * hash + t.hashCode();
+		return hash;
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder("{");
+		for(Tuple t : this) {
+			if(b.length() > 1)
+				b.append(',');
+			b.append(t.toString());
+		}
+		return b.append('}').toString();
+	}
+}
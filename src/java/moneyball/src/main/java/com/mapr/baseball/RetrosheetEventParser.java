@@ -0,0 +1,388 @@
+package com.mapr.baseball;
+
+/* Single pass parser for the event field of Retrosheet play lines.
+
+   The event grammar is basic play, optional '+' play (K+ and W+ only),
+   any number of '/' modifiers, then optional '.' runner advances:
+
+       64(1)3/GDP/G6.3-H;2-3
+       K+SB2;SB3
+       FC5/G.3XH(52);B-1
+
+   The parser walks the bytes once, never backtracks and never allocates.
+   It fills a RetrosheetEvent passed in by the caller, which is expected to
+   be reused from play to play.
+*/
+public class RetrosheetEventParser {
+
+	private byte[] b;
+	private int offset, end;
+	private RetrosheetEvent e;
+
+	public boolean parse(byte[] bytes, int off, int len, RetrosheetEvent event) {
+		event.clear();
+		event.source = bytes;
+		event.offset = off;
+		event.length = len;
+		b = bytes;
+		offset = off;
+		end = off + len;
+		e = event;
+
+		int i = basic(off, true);
+		if(i < 0)
+			return false;
+		if(i < end && b[i] == '+') {
+			if(e.type != RetrosheetEvent.STRIKEOUT && e.type != RetrosheetEvent.WALK && e.type != RetrosheetEvent.INTENTIONAL_WALK)
+				return false;
+			i = basic(i + 1, false);
+			if(i < 0)
+				return false;
+		}
+		while(i < end && b[i] == '/') {
+			i = modifier(i + 1);
+			if(i < 0)
+				return false;
+		}
+		if(i < end && b[i] == '.') {
+			i = advances(i + 1);
+			if(i < 0)
+				return false;
+		}
+		return skipMarks(i) == end;
+	}
+
+	/* Parse a basic play starting at i.  Returns the index after it, or -1. */
+	private int basic(int i, boolean primary) {
+		if(i >= end)
+			return -1;
+		byte c = b[i];
+		if(c >= '0' && c <= '9') {
+			if(!primary)
+				return -1;
+			e.type = RetrosheetEvent.OUT;
+			return skipMarks(fielders(i, true));
+		}
+		switch(c) {
+		case 'S':
+			if(at(i + 1, 'B'))
+				return running(i + 2, RetrosheetEvent.STOLEN_BASE, primary);
+			return hit(i + 1, RetrosheetEvent.SINGLE, primary);
+		case 'D':
+			if(at(i + 1, 'I'))
+				return simple(i + 2, RetrosheetEvent.DEFENSIVE_INDIFFERENCE, primary);
+			if(at(i + 1, 'G') && at(i + 2, 'R'))
+				return hit(i + 3, RetrosheetEvent.GROUND_RULE_DOUBLE, primary);
+			return hit(i + 1, RetrosheetEvent.DOUBLE, primary);
+		case 'T':
+			return hit(i + 1, RetrosheetEvent.TRIPLE, primary);
+		case 'H':
+			if(at(i + 1, 'P'))
+				return simple(i + 2, RetrosheetEvent.HIT_BY_PITCH, primary);
+			if(at(i + 1, 'R'))
+				return hit(i + 2, RetrosheetEvent.HOME_RUN, primary);
+			return hit(i + 1, RetrosheetEvent.HOME_RUN, primary);
+		case 'K':
+			return hit(i + 1, RetrosheetEvent.STRIKEOUT, primary);
+		case 'W':
+			if(at(i + 1, 'P'))
+				return simple(i + 2, RetrosheetEvent.WILD_PITCH, primary);
+			return simple(i + 1, RetrosheetEvent.WALK, primary);
+		case 'I':
+			if(at(i + 1, 'W'))
+				return simple(i + 2, RetrosheetEvent.INTENTIONAL_WALK, primary);
+			return simple(i + 1, RetrosheetEvent.INTENTIONAL_WALK, primary);
+		case 'E':
+			if(!digit(i + 1))
+				return -1;
+			return hit(i + 1, RetrosheetEvent.ERROR, primary);
+		case 'F':
+			if(at(i + 1, 'C'))
+				return hit(i + 2, RetrosheetEvent.FIELDERS_CHOICE, primary);
+			if(at(i + 1, 'L') && at(i + 2, 'E'))
+				return hit(i + 3, RetrosheetEvent.FOUL_ERROR, primary);
+			return -1;
+		case 'C':
+			if(at(i + 1, 'S'))
+				return running(i + 2, RetrosheetEvent.CAUGHT_STEALING, primary);
+			return simple(i + 1, RetrosheetEvent.INTERFERENCE, primary);
+		case 'N':
+			if(at(i + 1, 'P'))
+				return simple(i + 2, RetrosheetEvent.NO_PLAY, primary);
+			return -1;
+		case 'P':
+			if(at(i + 1, 'O') && at(i + 2, 'C') && at(i + 3, 'S'))
+				return running(i + 4, RetrosheetEvent.PICKOFF_CAUGHT_STEALING, primary);
+			if(at(i + 1, 'O'))
+				return running(i + 2, RetrosheetEvent.PICKOFF, primary);
+			if(at(i + 1, 'B'))
+				return simple(i + 2, RetrosheetEvent.PASSED_BALL, primary);
+			return -1;
+		case 'B':
+			if(at(i + 1, 'K'))
+				return simple(i + 2, RetrosheetEvent.BALK, primary);
+			return -1;
+		case 'O':
+			if(at(i + 1, 'A'))
+				return simple(i + 2, RetrosheetEvent.OTHER_ADVANCE, primary);
+			return -1;
+		}
+		return -1;
+	}
+
+	private int simple(int i, int type, boolean primary) {
+		setType(type, primary);
+		return skipMarks(i);
+	}
+
+	/* A play code followed by the fielders who handled the ball, e.g. S8, K23, E6 */
+	private int hit(int i, int type, boolean primary) {
+		setType(type, primary);
+		return skipMarks(fielders(i, primary));
+	}
+
+	/* SB, CS, PO and POCS: a base, optional parenthesized fielders, and for
+	   stolen bases possibly more of the same separated by ';' (SB2;SB3) */
+	private int running(int i, int type, boolean primary) {
+		setType(type, primary);
+		while(true) {
+			if(i >= end)
+				return -1;
+			int base;
+			if(b[i] >= '1' && b[i] <= '3')
+				base = b[i] - '0';
+			else if(b[i] == 'H')
+				base = RetrosheetEvent.HOME;
+			else
+				return -1;
+			if(primary)
+				e.bases |= 1 << base;
+			else
+				e.secondaryBases |= 1 << base;
+			i++;
+			while(i < end && b[i] == '(') {
+				int close = close(i);
+				if(close < 0)
+					return -1;
+				if(hasError(i + 1, close)) {
+					if(primary)
+						e.runnerSafeOnError = true;
+					else
+						e.secondaryRunnerSafeOnError = true;
+				}
+				i = close + 1;
+			}
+			i = skipMarks(i);
+			/* Another running play of the same kind */
+			if(i + 2 < end && b[i] == ';' && sameRunningPlay(i + 1, type))
+				i += type == RetrosheetEvent.PICKOFF_CAUGHT_STEALING ? 5 : 3;
+			else
+				return i;
+		}
+	}
+
+	private boolean sameRunningPlay(int i, int type) {
+		switch(type) {
+		case RetrosheetEvent.STOLEN_BASE:
+			return at(i, 'S') && at(i + 1, 'B');
+		case RetrosheetEvent.CAUGHT_STEALING:
+			return at(i, 'C') && at(i + 1, 'S');
+		case RetrosheetEvent.PICKOFF:
+			return at(i, 'P') && at(i + 1, 'O') && !at(i + 2, 'C');
+		case RetrosheetEvent.PICKOFF_CAUGHT_STEALING:
+			return at(i, 'P') && at(i + 1, 'O') && at(i + 2, 'C') && at(i + 3, 'S');
+		}
+		return false;
+	}
+
+	private void setType(int type, boolean primary) {
+		if(primary)
+			e.type = type;
+		else
+			e.secondaryType = type;
+	}
+
+	/* Fielder digits, with parenthesized put-out bases as in 64(1)3 */
+	private int fielders(int i, boolean record) {
+		int start = i;
+		boolean lastPutOut = false;
+		while(i < end) {
+			byte c = b[i];
+			if(c >= '0' && c <= '9') {
+				if(record && e.fielderCount < RetrosheetEvent.MAX_FIELDERS)
+					e.fielders[e.fielderCount++] = (byte)(c - '0');
+				i++;
+				lastPutOut = false;
+			} else if(c == '(') {
+				int close = close(i);
+				if(close < 0)
+					return i;
+				/* (B), (1), (2), (3) name a runner put out on the play */
+				if(record && close == i + 2) {
+					byte r = b[i + 1];
+					if(r == 'B')
+						e.putOuts |= 1 << RetrosheetEvent.BATTER;
+					else if(r >= '1' && r <= '3')
+						e.putOuts |= 1 << (r - '0');
+				}
+				lastPutOut = true;
+				i = close + 1;
+			} else {
+				break;
+			}
+		}
+		if(record) {
+			e.fielderStart = start - offset;
+			e.fielderEnd = i - offset;
+			e.endsWithPutOut = lastPutOut;
+		}
+		return i;
+	}
+
+	private int modifier(int i) {
+		int start = i;
+		while(i < end && b[i] != '/' && b[i] != '.') {
+			if(b[i] == '(') {
+				int close = close(i);
+				if(close < 0)
+					return -1;
+				i = close;
+			}
+			i++;
+		}
+		if(i == start)
+			return -1;
+		if(e.modifierCount < RetrosheetEvent.MAX_MODIFIERS) {
+			e.modifierStart[e.modifierCount] = start - offset;
+			e.modifierEnd[e.modifierCount] = i - offset;
+			e.modifierCount++;
+		}
+		if(e.trajectory == 0)
+			trajectory(start, i);
+		return i;
+	}
+
+	/* Hit description modifiers are B? [GLPF]+ [+-]? followed by a location such as 78XD */
+	private void trajectory(int start, int stop) {
+		int i = start;
+		boolean bunt = false;
+		if(b[i] == 'B') {
+			bunt = true;
+			i++;
+		}
+		int letters = i;
+		while(i < stop && (b[i] == 'G' || b[i] == 'L' || b[i] == 'P' || b[i] == 'F'))
+			i++;
+		if(i == letters)
+			return;
+		while(i < stop && (b[i] == '+' || b[i] == '-'))
+			i++;
+		int location = i;
+		for(;i<stop;i++) {
+			byte c = b[i];
+			if(!((c >= '0' && c <= '9') || c == 'L' || c == 'M' || c == 'R' || c == 'X' || c == 'D'
+					|| c == 'S' || c == 'F' || c == 'W' || c == '+' || c == '-'))
+				return;
+		}
+		e.trajectory = bunt ? (byte)'B' : b[start];
+		e.locationStart = location - offset;
+		e.locationEnd = stop - offset;
+	}
+
+	/* Runner advances such as B-1;1X3(65);2-H(E5)(NR) */
+	private int advances(int i) {
+		while(true) {
+			if(i + 3 > end)
+				return -1;
+			int from, to;
+			byte c = b[i];
+			if(c == 'B')
+				from = RetrosheetEvent.BATTER;
+			else if(c >= '1' && c <= '3')
+				from = c - '0';
+			else
+				return -1;
+			boolean out;
+			if(b[i + 1] == '-')
+				out = false;
+			else if(b[i + 1] == 'X')
+				out = true;
+			else
+				return -1;
+			c = b[i + 2];
+			if(c >= '1' && c <= '3')
+				to = c - '0';
+			else if(c == 'H')
+				to = RetrosheetEvent.HOME;
+			else
+				return -1;
+			i += 3;
+			boolean error = false, noRbi = false;
+			while(i < end && b[i] == '(') {
+				int close = close(i);
+				if(close < 0)
+					return -1;
+				if(hasError(i + 1, close))
+					error = true;
+				if(isNoRbi(i + 1, close))
+					noRbi = true;
+				i = close + 1;
+			}
+			i = skipMarks(i);
+			int n = e.advanceCount;
+			if(n < RetrosheetEvent.MAX_ADVANCES) {
+				e.advanceFrom[n] = (byte)from;
+				e.advanceTo[n] = (byte)to;
+				/* An out on the bases that was muffed by an error leaves the runner safe */
+				e.advanceOut[n] = out && !error;
+				e.advanceError[n] = error;
+				e.advanceNoRbi[n] = noRbi;
+				e.advanceCount++;
+			}
+			if(i < end && b[i] == ';')
+				i++;
+			else
+				return i;
+		}
+	}
+
+	/* Index of the ')' matching the '(' at i, or -1 */
+	private int close(int i) {
+		for(int j=i+1;j<end;j++)
+			if(b[j] == ')')
+				return j;
+		return -1;
+	}
+
+	/* E followed by a fielder, as in (E5) or (2E4) */
+	private boolean hasError(int start, int stop) {
+		for(int i=start;i+1<stop;i++)
+			if(b[i] == 'E' && b[i + 1] >= '1' && b[i + 1] <= '9')
+				return true;
+		return false;
+	}
+
+	private boolean isNoRbi(int start, int stop) {
+		int len = stop - start;
+		if(len == 2)
+			return b[start] == 'N' && b[start + 1] == 'R';
+		if(len == 5)
+			return b[start] == 'N' && b[start + 1] == 'O' && b[start + 2] == 'R' && b[start + 3] == 'B' && b[start + 4] == 'I';
+		return false;
+	}
+
+	/* Uncertainty and exceptional play markers carry no meaning for the game state */
+	private int skipMarks(int i) {
+		while(i < end && (b[i] == '#' || b[i] == '!' || b[i] == '?'))
+			i++;
+		return i;
+	}
+
+	private boolean at(int i, char c) {
+		return i < end && b[i] == c;
+	}
+
+	private boolean digit(int i) {
+		return i < end && b[i] >= '0' && b[i] <= '9';
+	}
+}
@@ -0,0 +1,24 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.pig.data.*;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+/* What became of the first pitch of a play, such as "Called strike" or
+   "In play", or null if no pitch was thrown:
+
+	RetrosheetFirstPitch(pitches)
+*/
+public class RetrosheetFirstPitch extends RetrosheetPitchFunc<String> {
+	public String exec(Tuple input) throws IOException {
+		byte[] pitches = pitches(input);
+		if(pitches == null)
+			return null;
+		int first = RetrosheetPitches.pitchIndex(pitches, 0);
+		return first < 0 ? null : RetrosheetPitches.typeName(RetrosheetPitches.type(pitches[first]));
+	}
+
+	public Schema outputSchema(Schema input) {
+		return new Schema(new Schema.FieldSchema("first_pitch", DataType.CHARARRAY));
+	}
+}
@@ -0,0 +1,165 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+
+/* Byte offsets of every game ("id," line) in an event file.
+
+   The index is kept in a hidden sidecar next to the event file, so
+   2010BOS.EVA is indexed by .2010BOS.EVA.idx.  Hidden files are skipped by
+   FileInputFormat, so the sidecars never show up as input.  The sidecar
+   records the length of the file it was built from, and is ignored once
+   that no longer matches.
+
+   Sidecars can be built ahead of time with
+
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetGameIndex <path> ...
+
+   or on first read by setting retrosheet.index.create in the job.
+   Compressed event files can't be read from an offset, and are not indexed.
+*/
+public class RetrosheetGameIndex {
+	public static final String CREATE = "retrosheet.index.create";
+	public static final String SUFFIX = ".idx";
+	private static final int VERSION = 1;
+
+	private final long fileLength;
+	private final long[] offsets;
+
+	public RetrosheetGameIndex(long fileLength, long[] offsets) {
+		this.fileLength = fileLength;
+		this.offsets = offsets;
+	}
+
+	public long getFileLength() {
+		return fileLength;
+	}
+
+	public int getGameCount() {
+		return offsets.length;
+	}
+
+	/* Offset of the id line of the given game */
+	public long getOffset(int game) {
+		return offsets[game];
+	}
+
+	public static Path indexPath(Path file) {
+		return new Path(file.getParent(), "." + file.getName() + SUFFIX);
+	}
+
+	/* The index for the given file, or null if it has none or it is stale */
+	public static RetrosheetGameIndex read(FileSystem fs, FileStatus file) throws IOException {
+		Path idx = indexPath(file.getPath());
+		if(!fs.exists(idx))
+			return null;
+		FSDataInputStream in = fs.open(idx);
+		try {
+			if(WritableUtils.readVInt(in) != VERSION)
+				return null;
+			long length = WritableUtils.readVLong(in);
+			if(length != file.getLen())
+				return null;
+			int count = WritableUtils.readVInt(in);
+			long[] offsets = new long[count];
+			long last = 0;
+			for(int i=0;i<count;i++) {
+				last += WritableUtils.readVLong(in);
+				offsets[i] = last;
+			}
+			return new RetrosheetGameIndex(length, offsets);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void write(FileSystem fs, Path file) throws IOException {
+		FSDataOutputStream out = fs.create(indexPath(file), true);
+		try {
+			WritableUtils.writeVInt(out, VERSION);
+			WritableUtils.writeVLong(out, fileLength);
+			WritableUtils.writeVInt(out, offsets.length);
+			/* Offsets are stored as deltas, which are about one game long */
+			long last = 0;
+			for(int i=0;i<offsets.length;i++) {
+				WritableUtils.writeVLong(out, offsets[i] - last);
+				last = offsets[i];
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/* Scan an event file for the start of every line beginning with "id," */
+	public static RetrosheetGameIndex build(FileSystem fs, FileStatus file) throws IOException {
+		long[] offsets = new long[64];
+		int count = 0;
+		byte[] buf = new byte[64 * 1024];
+		long pos = 0;
+		/* Number of bytes of "id," matched at the start of the current line, or -1 past it */
+		int matched = 0;
+
+		InputStream in = fs.open(file.getPath());
+		try {
+			int read;
+			while((read = in.read(buf, 0, buf.length)) > 0) {
+				for(int i=0;i<read;i++) {
+					byte b = buf[i];
+					if(b == '\n') {
+						matched = 0;
+					} else if(matched == 0 && b == 'i' || matched == 1 && b == 'd') {
+						matched++;
+					} else if(matched == 2 && b == ',') {
+						if(count == offsets.length)
+							offsets = resize(offsets, count * 2);
+						offsets[count++] = pos + i - 2;
+						matched = -1;
+					} else {
+						matched = -1;
+					}
+				}
+				pos += read;
+			}
+		} finally {
+			in.close();
+		}
+		return new RetrosheetGameIndex(pos, resize(offsets, count));
+	}
+
+	private static long[] resize(long[] a, int length) {
+		long[] b = new long[length];
+		System.arraycopy(a, 0, b, 0, Math.min(a.length, length));
+		return b;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length == 0) {
+			System.err.println("Usage: RetrosheetGameIndex <path> ...");
+			System.exit(1);
+		}
+		Configuration conf = new Configuration();
+		CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+		for(String arg : args) {
+			Path p = new Path(arg);
+			FileSystem fs = p.getFileSystem(conf);
+			FileStatus[] matches = fs.globStatus(p);
+			if(matches == null)
+				continue;
+			for(FileStatus m : matches) {
+				FileStatus[] files = m.isDir() ? fs.listStatus(m.getPath()) : new FileStatus[] { m };
+				for(FileStatus f : files) {
+					String name = f.getPath().getName();
+					if(f.isDir() || name.startsWith(".") || name.startsWith("_") || codecs.getCodec(f.getPath()) != null)
+						continue;
+					RetrosheetGameIndex index = build(fs, f);
+					index.write(fs, f.getPath());
+					System.out.println(f.getPath() + ": " + index.getGameCount() + " games");
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,42 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+
+/* A file split that starts on a game's id line and ends exactly where a
+   later game (or the file) starts, planned from a RetrosheetGameIndex.
+   RetrosheetRecordReader seeks straight to the start of these and never
+   reads past the end. */
+public class RetrosheetGameSplit extends FileSplit {
+	private int games;
+
+	public RetrosheetGameSplit() {
+		super(null, 0, 0, null);
+	}
+
+	public RetrosheetGameSplit(Path file, long start, long length, int games, String[] hosts) {
+		super(file, start, length, hosts);
+		this.games = games;
+	}
+
+	/* Number of games in the split */
+	public int getGames() {
+		return games;
+	}
+
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		WritableUtils.writeVInt(out, games);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		games = WritableUtils.readVInt(in);
+	}
+
+	public String toString() {
+		return super.toString() + " (" + games + " games)";
+	}
+}
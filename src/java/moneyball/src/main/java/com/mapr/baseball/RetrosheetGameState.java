@@ -0,0 +1,139 @@
+package com.mapr.baseball;
+
+/* State of one game in progress: who is in the game and where, who is on
+   base, the score, and per player batting and pitching counters.
+
+   Everything is held in primitive arrays that are reset, not reallocated,
+   between games.  Players are entered as slots, one per start or sub
+   line, identified by their RetrosheetPlayerDictionary code.  A player
+   who comes back in at another position gets a new slot, with new
+   counters.
+*/
+public class RetrosheetGameState {
+	public static final int NONE = -1;
+	/* Defensive positions 1-9, and 10 for the designated hitter */
+	public static final int POSITIONS = 11;
+
+	/* Slots */
+	public int slots;
+	public int[] player = new int[64];
+	public boolean[] home = new boolean[64];
+	public int[] position = new int[64];
+	public int[] battingOrder = new int[64];
+
+	/* Batter counters, by slot */
+	public int[] rbis = new int[64];
+	public int[] hits = new int[64];
+	public int[] walks = new int[64];
+	public int[] outs = new int[64];
+	public int[] atBats = new int[64];
+	public int[] hitByPitch = new int[64];
+	public int[] strikeouts = new int[64];
+
+	/* Pitcher counters, by slot */
+	public int[] battersPitchedTo = new int[64];
+	public int[] hitsAllowed = new int[64];
+	public int[] walksAllowed = new int[64];
+	public int[] wildPitches = new int[64];
+	public int[] battersHit = new int[64];
+	public int[] pitcherStrikeouts = new int[64];
+
+	/* Slot at each position of each team's defense, NONE when nobody is there */
+	public final int[] homeDefense = new int[POSITIONS];
+	public final int[] awayDefense = new int[POSITIONS];
+
+	/* Slot of the runner on first, second and third; index 0 is unused */
+	public final int[] runners = new int[4];
+
+	public int halfInning;
+	public int inningOuts;
+	public int homeScore, awayScore;
+	public int atBatOfGame, eventOfGame;
+	public int lastBatter;
+
+	public RetrosheetGameState() {
+		reset();
+	}
+
+	public void reset() {
+		slots = 0;
+		java.util.Arrays.fill(homeDefense, NONE);
+		java.util.Arrays.fill(awayDefense, NONE);
+		java.util.Arrays.fill(runners, NONE);
+		halfInning = NONE;
+		inningOuts = 0;
+		homeScore = awayScore = 0;
+		atBatOfGame = eventOfGame = 0;
+		lastBatter = NONE;
+	}
+
+	/* Enter a player from a start or sub line.  Pinch hitters and runners
+	   (positions 11 and 12) can bat and run but take no defensive position. */
+	public int addSlot(int code, boolean homeTeam, int order, int pos) {
+		if(slots == player.length)
+			grow();
+		int s = slots++;
+		player[s] = code;
+		home[s] = homeTeam;
+		battingOrder[s] = order;
+		position[s] = pos;
+		rbis[s] = hits[s] = walks[s] = outs[s] = atBats[s] = hitByPitch[s] = strikeouts[s] = 0;
+		battersPitchedTo[s] = hitsAllowed[s] = walksAllowed[s] = wildPitches[s] = battersHit[s] = pitcherStrikeouts[s] = 0;
+		if(pos >= 0 && pos < POSITIONS)
+			(homeTeam ? homeDefense : awayDefense)[pos] = s;
+		return s;
+	}
+
+	/* The most recent slot for a player, or NONE */
+	public int findSlot(int code) {
+		for(int s=slots-1;s>=0;s--)
+			if(player[s] == code)
+				return s;
+		return NONE;
+	}
+
+	public void clearBases() {
+		runners[1] = runners[2] = runners[3] = NONE;
+	}
+
+	public int runnersOnBase() {
+		int n = 0;
+		for(int base=1;base<=3;base++)
+			if(runners[base] != NONE)
+				n++;
+		return n;
+	}
+
+	private void grow() {
+		int n = player.length * 2;
+		player = grow(player, n);
+		home = grow(home, n);
+		position = grow(position, n);
+		battingOrder = grow(battingOrder, n);
+		rbis = grow(rbis, n);
+		hits = grow(hits, n);
+		walks = grow(walks, n);
+		outs = grow(outs, n);
+		atBats = grow(atBats, n);
+		hitByPitch = grow(hitByPitch, n);
+		strikeouts = grow(strikeouts, n);
+		battersPitchedTo = grow(battersPitchedTo, n);
+		hitsAllowed = grow(hitsAllowed, n);
+		walksAllowed = grow(walksAllowed, n);
+		wildPitches = grow(wildPitches, n);
+		battersHit = grow(battersHit, n);
+		pitcherStrikeouts = grow(pitcherStrikeouts, n);
+	}
+
+	private static int[] grow(int[] a, int n) {
+		int[] b = new int[n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+
+	private static boolean[] grow(boolean[] a, int n) {
+		boolean[] b = new boolean[n];
+		System.arraycopy(a, 0, b, 0, a.length);
+		return b;
+	}
+}
@@ -0,0 +1,98 @@
+package com.mapr.baseball;
+
+import org.apache.hadoop.io.Text;
+import org.apache.pig.backend.executionengine.ExecException;
+
+/* The game record of RetrosheetLoader, fields GAME_ID to GAME_PARTITION_LEAGUE.
+
+   Text fields are kept as spans of the game's bytes and numbers as ints.
+   A span is decoded the first time it is read, and the String kept, so the
+   flat rows of a game, which all read their game fields from here, share
+   one String for each.
+*/
+class RetrosheetGameTuple extends RetrosheetLazyTuple {
+	private static final long serialVersionUID = 1L;
+	static final int FIELDS = 44;
+
+	private static final byte NONE = 0;
+	private static final byte VALUE = 1;
+	private static final byte INT = 2;
+	private static final byte SPAN = 3;
+
+	/* The game's bytes, which no one else writes to */
+	private final byte[] bytes;
+	private final byte[] kinds = new byte[FIELDS];
+	/* The int of an INT field, or the start and length of a SPAN */
+	private final int[] ints = new int[FIELDS];
+	private final int[] lengths = new int[FIELDS];
+	/* VALUE fields, and SPAN fields once decoded */
+	private final Object[] values = new Object[FIELDS];
+
+	RetrosheetGameTuple(byte[] bytes) {
+		this.bytes = bytes;
+	}
+
+	byte[] getBytes() {
+		return bytes;
+	}
+
+	void setSpan(int field, int start, int length) {
+		kinds[field] = SPAN;
+		ints[field] = start;
+		lengths[field] = length;
+		values[field] = null;
+	}
+
+	void setInt(int field, int value) {
+		kinds[field] = INT;
+		ints[field] = value;
+	}
+
+	void setValue(int field, Object value) {
+		kinds[field] = value == null ? NONE : VALUE;
+		values[field] = value;
+	}
+
+	/* Make a field the same as another, such as the winner from one of the teams */
+	void copyField(int field, int from) {
+		kinds[field] = kinds[from];
+		ints[field] = ints[from];
+		lengths[field] = lengths[from];
+		values[field] = values[from];
+	}
+
+	protected int fieldCount() {
+		return FIELDS;
+	}
+
+	protected Object decode(int field) throws ExecException {
+		switch(kinds[field]) {
+		case INT:
+			return Integer.valueOf(ints[field]);
+		case SPAN:
+			if(values[field] == null)
+				values[field] = string(bytes, ints[field], lengths[field]);
+			return values[field];
+		case VALUE:
+			return values[field];
+		default:
+			return null;
+		}
+	}
+
+	protected long recordSize() {
+		long size = bytes.length + 16 * FIELDS;
+		for(Object o : values)
+			size += memorySize(o);
+		return size;
+	}
+
+	/* Malformed bytes are replaced rather than failing the record */
+	static String string(byte[] b, int start, int length) throws ExecException {
+		try {
+			return Text.decode(b, start, length, true);
+		} catch (java.nio.charset.CharacterCodingException e) {
+			throw new ExecException("Malformed event bytes", e);
+		}
+	}
+}
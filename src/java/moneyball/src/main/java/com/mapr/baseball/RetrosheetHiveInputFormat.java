@@ -0,0 +1,134 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.pig.LoadPushDown;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.data.*;
+
+/* Lets Hive read event files directly, one row per play, the same rows
+   RetrosheetLoader('-flat') gives Pig.  Use with RetrosheetSerDe:
+
+	CREATE EXTERNAL TABLE plays
+	ROW FORMAT SERDE 'com.mapr.baseball.RetrosheetSerDe'
+	STORED AS INPUTFORMAT 'com.mapr.baseball.RetrosheetHiveInputFormat'
+	OUTPUTFORMAT 'org.apache.hadoop.hive.ql.io.HiveIgnoreKeyTextOutputFormat'
+	LOCATION '/projects/baseball/';
+
+   Splits are planned by RetrosheetInputFormat, so game indexes are used.
+   Only the columns Hive asks for are parsed; the others are left null. */
+public class RetrosheetHiveInputFormat implements InputFormat<LongWritable, RetrosheetHiveInputFormat.Row> {
+
+	/* One play.  Rows are only handed from the reader to RetrosheetSerDe in the
+	   same task, but Hive wants a Writable. */
+	public static class Row implements Writable {
+		private Tuple tuple;
+
+		public Tuple getTuple() {
+			return tuple;
+		}
+
+		public void write(DataOutput out) throws IOException {
+			tuple.write(out);
+		}
+
+		public void readFields(DataInput in) throws IOException {
+			tuple = TupleFactory.getInstance().newTuple();
+			tuple.readFields(in);
+		}
+	}
+
+	public InputSplit[] getSplits(JobConf job, int numSplits) throws IOException {
+		List<org.apache.hadoop.mapreduce.InputSplit> splits = new RetrosheetInputFormat().getSplits(new org.apache.hadoop.mapreduce.JobContext(job, null));
+		InputSplit[] result = new InputSplit[splits.size()];
+		for(int i=0;i<result.length;i++)
+			result[i] = new RetrosheetHiveSplit((org.apache.hadoop.mapreduce.lib.input.FileSplit)splits.get(i));
+		return result;
+	}
+
+	public RecordReader<LongWritable, Row> getRecordReader(InputSplit split, JobConf job, Reporter reporter) throws IOException {
+		return new PlayReader((RetrosheetHiveSplit)split, job);
+	}
+
+	/* Columns Hive reads, or null for all of them.  Hive leaves the list empty
+	   when it wants every column. */
+	private static int[] readColumns(JobConf job) {
+		List<Integer> ids = ColumnProjectionUtils.getReadColumnIDs(job);
+		if(ids == null || ids.isEmpty())
+			return null;
+		/* In order, and without repeats */
+		TreeSet<Integer> sorted = new TreeSet<Integer>(ids);
+		int[] columns = new int[sorted.size()];
+		int i = 0;
+		for(Integer id : sorted)
+			columns[i++] = id;
+		return columns;
+	}
+
+	private static class PlayReader implements RecordReader<LongWritable, Row> {
+		private final RetrosheetRecordReader reader = new RetrosheetRecordReader();
+		private final RetrosheetLoader loader = new RetrosheetLoader("-flat");
+		private final int[] columns;
+		/* With pruning, plays are spread back out to their column positions in here */
+		private final Tuple full;
+
+		PlayReader(RetrosheetHiveSplit split, JobConf job) throws IOException {
+			columns = readColumns(job);
+			full = columns == null ? null : TupleFactory.getInstance().newTuple(RetrosheetLoader.FLAT_FIELDS);
+			try {
+				reader.initialize(split.getSplit(), new TaskAttemptContext(job, new org.apache.hadoop.mapreduce.TaskAttemptID()));
+			} catch (InterruptedException e) {
+				throw new IOException("Interrupted opening " + split, e);
+			}
+			if(columns != null) {
+				/* Push the columns down as Pig would, so only they are parsed */
+				ResourceSchema.ResourceFieldSchema[] fields = loader.getSchema(null, null).getFields();
+				List<LoadPushDown.RequiredField> required = new ArrayList<LoadPushDown.RequiredField>();
+				for(int column : columns)
+					required.add(new LoadPushDown.RequiredField(fields[column].getName(), column, null, fields[column].getType()));
+				loader.setUDFContextSignature("hive:" + split.getPath() + ":" + split.getStart());
+				loader.pushProjection(new LoadPushDown.RequiredFieldList(required));
+			}
+			loader.prepareToRead(reader, null);
+		}
+
+		public boolean next(LongWritable key, Row value) throws IOException {
+			Tuple t = loader.getNext();
+			if(t == null)
+				return false;
+			key.set(reader.getCurrentKey().get());
+			if(columns == null) {
+				value.tuple = t;
+			} else {
+				for(int i=0;i<columns.length;i++)
+					full.set(columns[i], t.get(i));
+				value.tuple = full;
+			}
+			return true;
+		}
+
+		public LongWritable createKey() {
+			return new LongWritable();
+		}
+
+		public Row createValue() {
+			return new Row();
+		}
+
+		public long getPos() throws IOException {
+			return reader.getPos();
+		}
+
+		public float getProgress() throws IOException {
+			return reader.getProgress();
+		}
+
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.mapred.FileSplit;
+
+/* A RetrosheetInputFormat split in the old mapred API, for Hive.  Hive
+   finds the table partition of a split from its path, so this has to be a
+   mapred FileSplit. */
+public class RetrosheetHiveSplit extends FileSplit {
+	/* Games in the split when it is a RetrosheetGameSplit, otherwise 0 */
+	private int games;
+
+	public RetrosheetHiveSplit() {
+		super(null, 0, 0, (String[])null);
+	}
+
+	public RetrosheetHiveSplit(org.apache.hadoop.mapreduce.lib.input.FileSplit split) throws IOException {
+		super(split.getPath(), split.getStart(), split.getLength(), split.getLocations());
+		if(split instanceof RetrosheetGameSplit)
+			games = ((RetrosheetGameSplit)split).getGames();
+	}
+
+	/* The split to give RetrosheetRecordReader */
+	public org.apache.hadoop.mapreduce.lib.input.FileSplit getSplit() throws IOException {
+		if(games > 0)
+			return new RetrosheetGameSplit(getPath(), getStart(), getLength(), games, getLocations());
+		return new org.apache.hadoop.mapreduce.lib.input.FileSplit(getPath(), getStart(), getLength(), getLocations());
+	}
+
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		WritableUtils.writeVInt(out, games);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		games = WritableUtils.readVInt(in);
+	}
+}
@@ -1,8 +1,12 @@
 package com.mapr.baseball;
 import java.lang.*;
+import java.io.*;
+import java.util.*;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.util.*;
+import org.apache.hadoop.fs.*;
 import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
 
 public class RetrosheetInputFormat extends TextInputFormat {
@@ -11,4 +15,75 @@ public class RetrosheetInputFormat extends TextInputFormat {
 		return new RetrosheetRecordReader();
 	}
 
+	/* Files with a current RetrosheetGameIndex are split on game boundaries.
+	   Files without one get the usual block splits, and the reader finds the
+	   games itself, unless retrosheet.index.create is set, in which case the
+	   index is built and saved here first.  When retrosheet.player.index.player
+	   is set, only that player's games are read, as RetrosheetPlayerIndex has them. */
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		String player = job.getConfiguration().get(RetrosheetPlayerIndex.PLAYER, "");
+		if(player.length() > 0)
+			return RetrosheetPlayerIndex.getSplits(job.getConfiguration(), listStatus(job), player);
+		long minSize = Math.max(getFormatMinSplitSize(), getMinSplitSize(job));
+		long maxSize = getMaxSplitSize(job);
+		boolean create = job.getConfiguration().getBoolean(RetrosheetGameIndex.CREATE, false);
+
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		List<FileStatus> unindexed = new ArrayList<FileStatus>();
+		for(FileStatus file : listStatus(job)) {
+			Path path = file.getPath();
+			FileSystem fs = path.getFileSystem(job.getConfiguration());
+			RetrosheetGameIndex index = RetrosheetGameIndex.read(fs, file);
+			if(index == null && create && isSplitable(job, path)) {
+				index = RetrosheetGameIndex.build(fs, file);
+				index.write(fs, path);
+			}
+			if(index == null || !isSplitable(job, path)) {
+				unindexed.add(file);
+				continue;
+			}
+			BlockLocation[] blocks = fs.getFileBlockLocations(file, 0, file.getLen());
+			long splitSize = computeSplitSize(file.getBlockSize(), minSize, maxSize);
+			addGameSplits(splits, path, index, splitSize, blocks);
+		}
+
+		if(!unindexed.isEmpty())
+			splits.addAll(super.getSplits(new FilesContext(job, unindexed)));
+		return splits;
+	}
+
+	@Override
+	protected List<FileStatus> listStatus(JobContext job) throws IOException {
+		if(job instanceof FilesContext)
+			return ((FilesContext)job).files;
+		return super.listStatus(job);
+	}
+
+	/* Cut the file into runs of whole games of about splitSize bytes */
+	private void addGameSplits(List<InputSplit> splits, Path path, RetrosheetGameIndex index, long splitSize, BlockLocation[] blocks) throws IOException {
+		int games = index.getGameCount();
+		int first = 0;
+		while(first < games) {
+			long start = index.getOffset(first);
+			int next = first + 1;
+			while(next < games && index.getOffset(next) - start < splitSize)
+				next++;
+			long end = next < games ? index.getOffset(next) : index.getFileLength();
+			String[] hosts = blocks[getBlockIndex(blocks, start)].getHosts();
+			splits.add(new RetrosheetGameSplit(path, start, end - start, next - first, hosts));
+			first = next;
+		}
+	}
+
+	/* Lists only the given files, so the unindexed ones can be handed to FileInputFormat */
+	private static class FilesContext extends JobContext {
+		private final List<FileStatus> files;
+
+		FilesContext(JobContext job, List<FileStatus> files) {
+			super(job.getConfiguration(), job.getJobID());
+			this.files = files;
+		}
+	}
+
 }
@@ -0,0 +1,192 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+
+/* Size of a job's event file input, measured cheaply.
+
+   Bytes and partition values come from listing the input.  Game counts
+   come from the game index where a file has one, and are otherwise
+   estimated from the games per byte in a sample read from the start of
+   the first few files, which also gives the plays per game.  Compressed
+   files are sampled decompressed, and their bytes per game are counted in
+   compressed bytes, so that they apply to the file's length.
+*/
+public class RetrosheetInputStatistics {
+	private static final int SAMPLE_FILES = 3;
+	private static final int SAMPLE_BYTES = 1024 * 1024;
+	/* Used when the sample holds no whole game */
+	private static final double DEFAULT_BYTES_PER_GAME = 10 * 1024;
+	private static final double DEFAULT_PLAYS_PER_GAME = 85;
+
+	private long bytes, games, files;
+	private double plays;
+	private final Set<Integer> years = new HashSet<Integer>();
+	private final Set<String> teams = new HashSet<String>();
+	private final Set<String> leagues = new HashSet<String>();
+
+	public static RetrosheetInputStatistics measure(JobContext job) throws IOException {
+		RetrosheetInputStatistics stats = new RetrosheetInputStatistics();
+		List<FileStatus> files = listFiles(job);
+		CompressionCodecFactory codecs = new CompressionCodecFactory(job.getConfiguration());
+
+		long sampleBytes = 0, sampleGames = 0, samplePlays = 0;
+		for(int i=0;i<files.size() && i<SAMPLE_FILES;i++) {
+			FileStatus file = files.get(i);
+			long[] counts = sample(file.getPath().getFileSystem(job.getConfiguration()), file, codecs.getCodec(file.getPath()));
+			sampleBytes += counts[0];
+			sampleGames += counts[1];
+			samplePlays += counts[2];
+		}
+		double bytesPerGame = sampleGames > 0 ? (double)sampleBytes / sampleGames : DEFAULT_BYTES_PER_GAME;
+		double playsPerGame = sampleGames > 0 ? (double)samplePlays / sampleGames : DEFAULT_PLAYS_PER_GAME;
+
+		for(FileStatus file : files) {
+			FileSystem fs = file.getPath().getFileSystem(job.getConfiguration());
+			RetrosheetGameIndex index = RetrosheetGameIndex.read(fs, file);
+			long fileGames = index != null ? index.getGameCount() : Math.round(file.getLen() / bytesPerGame);
+			stats.files++;
+			stats.bytes += file.getLen();
+			stats.games += fileGames;
+			stats.plays += fileGames * playsPerGame;
+			RetrosheetPartition partition = RetrosheetPartition.parse(file.getPath());
+			if(partition != null) {
+				stats.years.add(partition.getYear());
+				stats.teams.add(partition.getTeam());
+				if(partition.getLeague() != null)
+					stats.leagues.add(partition.getLeague());
+			}
+		}
+		return stats;
+	}
+
+	/* Input files the way FileInputFormat lists them: globs expanded, directories
+	   listed one level deep, hidden files and the job's path filter applied */
+	private static List<FileStatus> listFiles(JobContext job) throws IOException {
+		final PathFilter jobFilter = FileInputFormat.getInputPathFilter(job);
+		PathFilter filter = new PathFilter() {
+			public boolean accept(Path p) {
+				String name = p.getName();
+				if(name.startsWith("_") || name.startsWith("."))
+					return false;
+				return jobFilter == null || jobFilter.accept(p);
+			}
+		};
+		List<FileStatus> files = new ArrayList<FileStatus>();
+		for(Path p : FileInputFormat.getInputPaths(job)) {
+			FileSystem fs = p.getFileSystem(job.getConfiguration());
+			FileStatus[] matches = fs.globStatus(p, filter);
+			if(matches == null)
+				continue;
+			for(FileStatus m : matches) {
+				if(!m.isDir()) {
+					files.add(m);
+					continue;
+				}
+				for(FileStatus f : fs.listStatus(m.getPath(), filter))
+					if(!f.isDir())
+						files.add(f);
+			}
+		}
+		return files;
+	}
+
+	/* Bytes read, whole games and plays in them, from the start of a file */
+	private static long[] sample(FileSystem fs, FileStatus file, CompressionCodec codec) throws IOException {
+		if(codec != null)
+			return sampleCompressed(fs, file, codec);
+		byte[] buf = new byte[(int)Math.min(SAMPLE_BYTES, file.getLen())];
+		FSDataInputStream in = fs.open(file.getPath());
+		try {
+			in.readFully(0, buf);
+		} finally {
+			in.close();
+		}
+		return count(buf, buf.length, buf.length == file.getLen());
+	}
+
+	/* The same for a compressed file, with the bytes given as the share of
+	   the compressed file the games take up */
+	private static long[] sampleCompressed(FileSystem fs, FileStatus file, CompressionCodec codec) throws IOException {
+		byte[] buf = new byte[SAMPLE_BYTES];
+		int length = 0;
+		long compressedRead;
+		FSDataInputStream raw = fs.open(file.getPath());
+		Decompressor decompressor = CodecPool.getDecompressor(codec);
+		try {
+			InputStream in = codec.createInputStream(raw, decompressor);
+			int read;
+			while(length < buf.length && (read = in.read(buf, length, buf.length - length)) > 0)
+				length += read;
+			compressedRead = raw.getPos();
+		} finally {
+			raw.close();
+			CodecPool.returnDecompressor(decompressor);
+		}
+		boolean whole = compressedRead >= file.getLen() && length < buf.length;
+		long[] counts = count(buf, length, whole);
+		if(length > 0)
+			counts[0] = Math.round((double)counts[0] * compressedRead / length);
+		return counts;
+	}
+
+	/* Whole games and the plays in them in the first length bytes of buf, and
+	   the bytes they take up.  whole says buf holds all of the file. */
+	private static long[] count(byte[] buf, int length, boolean whole) {
+		long games = 0, plays = 0, playsInGame = 0, lastGame = -1;
+		boolean lineStart = true;
+		for(int i=0;i<length;i++) {
+			if(lineStart && i + 3 < length && buf[i] == 'i' && buf[i+1] == 'd' && buf[i+2] == ',') {
+				/* Count a game once the next one starts, so a game cut off by the sample is left out */
+				if(lastGame >= 0) {
+					games++;
+					plays += playsInGame;
+				}
+				lastGame = i;
+				playsInGame = 0;
+			} else if(lineStart && i + 5 < length && buf[i] == 'p' && buf[i+1] == 'l' && buf[i+2] == 'a' && buf[i+3] == 'y' && buf[i+4] == ',') {
+				playsInGame++;
+			}
+			lineStart = buf[i] == '\n';
+		}
+		if(whole && lastGame >= 0) {
+			/* The whole file was read, so the last game is complete */
+			games++;
+			plays += playsInGame;
+			return new long[] { length, games, plays };
+		}
+		return new long[] { lastGame < 0 ? 0 : lastGame, games, plays };
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getFiles() {
+		return files;
+	}
+
+	public long getGames() {
+		return games;
+	}
+
+	public long getPlays() {
+		return Math.round(plays);
+	}
+
+	public int getYears() {
+		return years.size();
+	}
+
+	public int getTeams() {
+		return teams.size();
+	}
+
+	public int getLeagues() {
+		return leagues.size();
+	}
+}
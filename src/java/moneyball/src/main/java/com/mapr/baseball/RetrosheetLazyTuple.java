@@ -0,0 +1,208 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.*;
+
+/* A Tuple whose fields are only turned into Pig objects when they are read.
+
+   Subclasses keep a record as the primitive state and the raw game bytes it
+   was replayed from, and decode() a field when get() asks for it.  A filter
+   that reads one field of a record and drops it never pays for the others.
+   A projection can be laid over the fields, so projecting copies nothing.
+
+   As soon as a field is set or appended, or the tuple is read in, every
+   field is decoded into a plain array, and the tuple behaves like a
+   DefaultTuple from then on.  Tuples are written in Pig's usual binary
+   form, with its small encodings for small numbers, so whatever reads them
+   back after a spill or a shuffle gets an ordinary tuple with the same
+   fields.
+*/
+public abstract class RetrosheetLazyTuple implements Tuple {
+	private static final long serialVersionUID = 1L;
+	private static final InterSedes SEDES = InterSedesFactory.getInterSedesInstance();
+
+	/* Field of the record returned as each field of the tuple, or null for all of them */
+	private int[] projection;
+	/* Every field, once the tuple has been materialized */
+	private Object[] fields;
+
+	/* Fields of the record, before any projection */
+	protected abstract int fieldCount();
+
+	/* A field of the record as a Pig object */
+	protected abstract Object decode(int field) throws ExecException;
+
+	/* Bytes held by the record beyond what it shares with other records */
+	protected abstract long recordSize();
+
+	void setProjection(int[] projection) {
+		this.projection = projection;
+	}
+
+	/* Whether the tuple is still just its record, unprojected and unchanged */
+	boolean isPristine() {
+		return fields == null && projection == null;
+	}
+
+	public int size() {
+		if(fields != null)
+			return fields.length;
+		return projection == null ? fieldCount() : projection.length;
+	}
+
+	public Object get(int fieldNum) throws ExecException {
+		if(fieldNum < 0 || fieldNum >= size())
+			throw new ExecException("Field " + fieldNum + " out of range for a tuple of " + size() + " fields");
+		if(fields != null)
+			return fields[fieldNum];
+		return decode(projection == null ? fieldNum : projection[fieldNum]);
+	}
+
+	public List<Object> getAll() {
+		materialize();
+		return new ArrayList<Object>(Arrays.asList(fields));
+	}
+
+	public boolean isNull(int fieldNum) throws ExecException {
+		return get(fieldNum) == null;
+	}
+
+	public byte getType(int fieldNum) throws ExecException {
+		return DataType.findType(get(fieldNum));
+	}
+
+	public void set(int fieldNum, Object val) throws ExecException {
+		materialize();
+		if(fieldNum < 0 || fieldNum >= fields.length)
+			throw new ExecException("Field " + fieldNum + " out of range for a tuple of " + fields.length + " fields");
+		fields[fieldNum] = val;
+	}
+
+	public void append(Object val) {
+		materialize();
+		Object[] more = new Object[fields.length + 1];
+		System.arraycopy(fields, 0, more, 0, fields.length);
+		more[fields.length] = val;
+		fields = more;
+	}
+
+	public void reference(Tuple t) {
+		fields = t.getAll().toArray();
+	}
+
+	/* Decode every field into fields[] */
+	private void materialize() {
+		if(fields != null)
+			return;
+		Object[] all = new Object[size()];
+		try {
+			for(int i=0;i<all.length;i++)
+				all[i] = get(i);
+		} catch (ExecException e) {
+			throw new RuntimeException("Can't decode record", e);
+		}
+		fields = all;
+	}
+
+	public long getMemorySize() {
+		/* Object header, the two references, and the record or the fields */
+		long size = 32;
+		if(fields == null)
+			return size + recordSize();
+		size += 16 + 8 * fields.length;
+		for(Object o : fields)
+			size += memorySize(o);
+		return size;
+	}
+
+	static long memorySize(Object o) {
+		if(o == null)
+			return 0;
+		if(o instanceof String)
+			return 40 + 2 * ((String)o).length();
+		if(o instanceof DataByteArray)
+			return 32 + ((DataByteArray)o).size();
+		if(o instanceof Tuple)
+			return ((Tuple)o).getMemorySize();
+		if(o instanceof DataBag)
+			return ((DataBag)o).getMemorySize();
+		return 16;
+	}
+
+	public String toDelimitedString(String delim) throws ExecException {
+		StringBuilder b = new StringBuilder();
+		for(int i=0;i<size();i++) {
+			if(i > 0)
+				b.append(delim);
+			Object o = get(i);
+			b.append(o == null ? "" : o.toString());
+		}
+		return b.toString();
+	}
+
+	public String toString() {
+		try {
+			return "(" + toDelimitedString(",") + ")";
+		} catch (ExecException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Deprecated
+	public boolean isNull() {
+		return false;
+	}
+
+	@Deprecated
+	public void setNull(boolean isNull) {
+	}
+
+	public void write(DataOutput out) throws IOException {
+		SEDES.writeDatum(out, this);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		fields = ((Tuple)SEDES.readDatum(in)).getAll().toArray();
+		projection = null;
+	}
+
+	/* Field by field, the same as DefaultTuple */
+	public int compareTo(Object other) {
+		if(!(other instanceof Tuple))
+			return DataType.compare(this, other);
+		Tuple t = (Tuple)other;
+		int n = size();
+		if(n != t.size())
+			return n < t.size() ? -1 : 1;
+		try {
+			for(int i=0;i<n;i++) {
+				int c = DataType.compare(get(i), t.get(i));
+				if(c != 0)
+					return c;
+			}
+		} catch (ExecException e) {
+			throw new RuntimeException("Unable to compare tuples", e);
+		}
+		return 0;
+	}
+
+	public boolean equals(Object other) {
+		return other instanceof Tuple && compareTo(other) == 0;
+	}
+
+	public int hashCode() {
+		int hash = 17;
+		try {
+			for(int i=0;i<size();i++) {
+				Object o = get(i);
+				if(o != null)
+					hash = 31 * hash + o.hashCode();
+			}
+		} catch (ExecException e) {
+			throw new RuntimeException(e);
+		}
+		return hash;
+	}
+}
@@ -1,10 +1,10 @@
 package com.mapr.baseball;
 
 import java.util.*;
-import java.util.regex.*;
 import java.io.*;
 
 import org.apache.pig.ResourceSchema;
+import org.apache.hadoop.filecache.DistributedCache;
 import org.apache.hadoop.io.*;
 import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.mapreduce.lib.input.*;
@@ -13,6 +13,11 @@ import org.apache.pig.data.*;
 import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.*;
 import org.apache.pig.impl.logicalLayer.schema.Schema;
 import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+import org.apache.pig.impl.logicalLayer.FrontendException;
+import org.apache.pig.impl.util.UDFContext;
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.tools.pigstats.PigStatusReporter;
+import org.apache.commons.logging.*;
 
 /* Structure of records output by this loader:
 
@@ -104,13 +109,18 @@ import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
 		runs batted in previously
 		runs batted in this play
 		fielders handling ball []
-		pitches[]
-
+		batter name, pitcher name (with -names)
+		pitches, packed one byte per pitch by RetrosheetPitches (with -pitches)
 	]
+
+	year, team and league of the event file (partition keys)
 }
+
+In flat mode the batter and pitcher names and the pitches come last, after
+the partition keys.
 */
 
-public class RetrosheetLoader extends LoadFunc implements LoadMetadata {
+public class RetrosheetLoader extends LoadFunc implements LoadMetadata, LoadPushDown {
 
 	public static int PLAY_INNING = 0;
 	public static int PLAY_INNING_HALF = 1;
@@ -151,6 +161,9 @@ public class RetrosheetLoader extends LoadFunc implements LoadMetadata {
 	public static int PLAY_RBIS_ON_PLAY = 36;
 	public static int PLAY_FIELDER = 37;
 	public static int PLAY_TRAJECTORY = 38;
+	/* Only with -names */
+	public static int PLAY_BATTER_NAME = 39;
+	public static int PLAY_PITCHER_NAME = 40;
 
 	
 
@@ -195,69 +208,249 @@ public class RetrosheetLoader extends LoadFunc implements LoadMetadata {
 	public static int GAME_DURATION= 38;
 	public static int GAME_COUNTED_AS_SAVE = 39;
 	public static int GAME_EVENTS = 40;
+	/* Partition keys, from the event file name */
+	public static int GAME_PARTITION_YEAR = 41;
+	public static int GAME_PARTITION_TEAM = 42;
+	public static int GAME_PARTITION_LEAGUE = 43;
 
-	Pattern event_pattern;
-	class RetrosheetPlayer {
-
-		/* General info */
-		public String player_id;
-		public String player_name;
-		public boolean home_team;
-		public int position;
-		public int batting_order;
-
-		/* Batter stats */
-		public int rbis;
-		public int hits_so_far;
-		public int walks_so_far;
-		public int outs_so_far;
-		public int at_bat_number;
-		public int hbp_so_far;
-		public int strikeouts_so_far;
-
-		/* Pitcher stats */
-		public int batters_pitched_to;
-		public int pitcher_walks_allowed;
-		public int pitcher_hits_allowed;
-		public int pitcher_wild_pitches;
-		public int pitcher_beans; 
-		public int pitcher_strikeouts;
-
-		public RetrosheetPlayer(String[] record) {
-			player_id = record[1].trim();	
-			player_name = record[2].trim();
-			home_team = Integer.parseInt(record[3])==0?true:false;
-			batting_order = Integer.parseInt(record[4]);
-			position = Integer.parseInt(record[5]);
-		}
+	/* In flat mode each record is one play: game fields 0-39, then the play
+	   fields, then the partition keys */
+	public static int FLAT_PLAY_OFFSET = 40;
+	public static int FLAT_PARTITION_OFFSET = 79;
+	public static int FLAT_FIELDS = 82;
+	/* With -names, the batter and pitcher names follow the partition keys */
+	public static int FLAT_BATTER_NAME = 82;
+	public static int FLAT_PITCHER_NAME = 83;
 
+	private static final Log LOG = LogFactory.getLog(RetrosheetLoader.class);
+	/* One game in this many is timed, counters are reported every so many games,
+	   and only the first few problems are logged; after that they are only counted */
+	private static final int TIMING_SAMPLE = 64;
+	private static final int REPORT_GAMES = 100;
+	private static final int MAX_WARNINGS = 10;
+	private int gamesRead = 0;
+	private int warnings = 0;
 
-	}
+	/* Replays the games, and turns them into tuples */
+	private final GameStateEngine engine = new GameStateEngine();
+	private final GameBuilder builder = new GameBuilder();
+	/* Partition of the file the current game came from */
+	private org.apache.hadoop.fs.Path partitionPath;
+	private RetrosheetPartition partition;
 
 	private RecordReader<LongWritable, Text> reader;
-	private BagFactory bagFactory;
 	private TupleFactory tupleFactory;
 
+	/* Options, given in the LOAD statement as RetrosheetLoader('-combine -flat') */
+	private boolean combine = false;
+	private boolean flat = false;
+	/* Player dimension file the names are looked up in, or null for no names */
+	private String namesFile;
+	private RetrosheetPlayerDimension dimension;
+	/* Names by RetrosheetPlayerDictionary code, looked up once per player */
+	private String[] playerNames = new String[512];
+	private boolean[] playerNamed = new boolean[512];
+	/* Whether the packed pitches are returned */
+	private boolean pitches = false;
+	/* Player whose games alone are read, through the RetrosheetPlayerIndex in playerIndex, or null */
+	private String player;
+	private String playerIndex;
+	/* Flat mode rows of the last game read, and the next one to return */
+	private final ArrayList<Tuple> rows = new ArrayList<Tuple>();
+	private int nextRow = 0;
+
+	/* Count mode: the flat fields counted by and their names, and the plays counted */
+	private String[] countFields;
+	private int[] countKeys;
+	private int[] whereFields;
+	private String[] whereValues;
+	/* Plays counted so far for each key, up to maxCounts keys */
+	private final HashMap<Tuple, long[]> counts = new HashMap<Tuple, long[]>();
+	private Tuple probe;
+	private int maxCounts = DEFAULT_COUNT_ENTRIES;
+	private boolean inputDone = false;
+
+	/* Most keys held in a task before the partial counts are returned, from the job configuration */
+	public static final String COUNT_ENTRIES = "retrosheet.count.entries";
+	public static final int DEFAULT_COUNT_ENTRIES = 100000;
+	/* Most bytes a game_events bag holds before it spills, from the job configuration */
+	public static final String EVENTS_MEMORY = "retrosheet.events.memory";
+	public static final long DEFAULT_EVENTS_MEMORY = 64L * 1024 * 1024;
+	private long maxEventsMemory = DEFAULT_EVENTS_MEMORY;
+	/* Partial counts are also returned when less than 1/MEMORY_RESERVE of the heap
+	   is left, checked every MEMORY_CHECK new keys */
+	private static final int MEMORY_RESERVE = 8;
+	private static final int MEMORY_CHECK = 1024;
+
+	/* Projection pushed down by Pig, as a comma separated list of game field indexes in UDFContext */
+	private static final String REQUIRED_FIELDS = "retrosheet.required.fields";
+	/* Partition filter pushed down by Pig, a serialized RetrosheetPartitionFilter in UDFContext */
+	private static final String PARTITION_FILTER = "retrosheet.partition.filter";
+	private String signature;
+	/* Game fields to return, in order, or null for all of them */
+	private int[] requiredFields;
+	/* Game fields that have to be parsed to produce them */
+	private boolean[] parseFields;
+	/* Whether the plays have to be replayed, and whether the game_events bag is built */
+	private boolean trackPlays = true;
+	private boolean buildEvents = true;
+
 	public RetrosheetLoader(){
-		bagFactory = BagFactory.getInstance();
 		tupleFactory = TupleFactory.getInstance();	
 	}
 
+	/* -combine	read many event files per task with RetrosheetCombineInputFormat
+	   -flat	return one record per play, with the game fields repeated, instead of
+			one record per game with a bag of plays
+	   -count f,...	count the plays of each value of the given flat fields inside the
+			task, and return (f, ..., plays) partial counts to be summed after
+			a GROUP, instead of the plays themselves
+	   -where f=v	only count plays whose flat field f is v.  May be repeated, and
+			values with spaces are double quoted: -where play_result="Home run"
+	   -names p	add the batter and pitcher names to each play, looked up in the
+			RetrosheetPlayerDimension file p, which is shipped to the tasks
+			through the distributed cache
+	   -pitches	add the pitch sequence to each play, packed one byte per pitch
+			into a bytearray; see RetrosheetPitchCount, RetrosheetFirstPitch
+			and RetrosheetCountAtPitch
+	   -player id -index d
+			only read the games the player appears in, as the
+			RetrosheetPlayerIndex in d lists them, instead of every event file.
+			Implies -combine */
+	public RetrosheetLoader(String options){
+		this();
+		List<String> args = splitOptions(options);
+		List<String> where = new ArrayList<String>();
+		for(int i=0;i<args.size();i++) {
+			String option = args.get(i);
+			if(option.equals("-combine"))
+				combine = true;
+			else if(option.equals("-flat"))
+				flat = true;
+			else if(option.equals("-count") && i + 1 < args.size())
+				countFields = args.get(++i).split(",");
+			else if(option.equals("-where") && i + 1 < args.size() && args.get(i + 1).indexOf('=') > 0)
+				where.add(args.get(++i));
+			else if(option.equals("-names") && i + 1 < args.size())
+				namesFile = args.get(++i);
+			else if(option.equals("-pitches"))
+				pitches = true;
+			else if(option.equals("-player") && i + 1 < args.size())
+				player = args.get(++i);
+			else if(option.equals("-index") && i + 1 < args.size())
+				playerIndex = args.get(++i);
+			else
+				throw new IllegalArgumentException("Unknown RetrosheetLoader option " + option);
+		}
+		if((player == null) != (playerIndex == null))
+			throw new IllegalArgumentException("RetrosheetLoader -player and -index go together");
+		if(player != null)
+			combine = true;
+		if(countFields == null && !where.isEmpty())
+			throw new IllegalArgumentException("RetrosheetLoader -where needs -count");
+		if(countFields != null && namesFile != null)
+			throw new IllegalArgumentException("RetrosheetLoader -names can't be used with -count");
+		if(countFields != null && pitches)
+			throw new IllegalArgumentException("RetrosheetLoader -pitches can't be used with -count");
+		if(countFields != null) {
+			/* Counts are taken over the flat rows */
+			flat = true;
+			countKeys = new int[countFields.length];
+			for(int i=0;i<countFields.length;i++)
+				countKeys[i] = flatFieldIndex(countFields[i]);
+			whereFields = new int[where.size()];
+			whereValues = new String[where.size()];
+			for(int i=0;i<where.size();i++) {
+				String w = where.get(i);
+				whereFields[i] = flatFieldIndex(w.substring(0, w.indexOf('=')));
+				whereValues[i] = w.substring(w.indexOf('=') + 1);
+			}
+		}
+	}
+
+	/* Split on white space, except inside double quotes */
+	private static List<String> splitOptions(String options) {
+		List<String> args = new ArrayList<String>();
+		StringBuilder arg = new StringBuilder();
+		boolean quoted = false, any = false;
+		for(int i=0;i<options.length();i++) {
+			char c = options.charAt(i);
+			if(c == '"') {
+				quoted = !quoted;
+				any = true;
+			} else if(!quoted && Character.isWhitespace(c)) {
+				if(any)
+					args.add(arg.toString());
+				arg.setLength(0);
+				any = false;
+			} else {
+				arg.append(c);
+				any = true;
+			}
+		}
+		if(quoted)
+			throw new IllegalArgumentException("Unbalanced quotes in RetrosheetLoader options " + options);
+		if(any)
+			args.add(arg.toString());
+		return args;
+	}
+
+	/* Index of a field of the flat schema, by name */
+	private static int flatFieldIndex(String name) {
+		ResourceSchema.ResourceFieldSchema[] fields = new RetrosheetLoader("-flat").getSchema(null, null).getFields();
+		for(int i=0;i<fields.length;i++) {
+			if(fields[i].getName().equals(name))
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown RetrosheetLoader field " + name);
+	}
+
 	public ResourceStatistics getStatistics(String location,
                                  org.apache.hadoop.mapreduce.Job job)
                                  throws IOException
 	{
-		return null;
+		setLocation(location, job);
+		RetrosheetInputStatistics input = RetrosheetInputStatistics.measure(job);
+
+		ResourceStatistics stats = new ResourceStatistics();
+		stats.setmBytes((input.getBytes() + 1024 * 1024 - 1) / (1024 * 1024));
+		/* How many partial counts there will be isn't known */
+		if(countKeys != null)
+			return stats;
+		long records = flat ? input.getPlays() : input.getGames();
+		stats.setNumRecords(records);
+		if(records > 0)
+			stats.setAvgRecordSize(input.getBytes() / records);
+
+		/* Distinct values known without reading the games */
+		ResourceStatistics.ResourceFieldStatistics[] fields = new ResourceStatistics.ResourceFieldStatistics[getSchema(location, job).getFields().length];
+		for(int i=0;i<fields.length;i++)
+			fields[i] = new ResourceStatistics.ResourceFieldStatistics();
+		fields[outputField(GAME_ID)].setNumDistinctValues(input.getGames());
+		fields[outputField(GAME_HOME_TEAM)].setNumDistinctValues((long)input.getTeams());
+		/* game_date_day holds the year */
+		fields[outputField(GAME_DATE_DAY)].setNumDistinctValues((long)input.getYears());
+		fields[outputField(GAME_PARTITION_YEAR)].setNumDistinctValues((long)input.getYears());
+		fields[outputField(GAME_PARTITION_TEAM)].setNumDistinctValues((long)input.getTeams());
+		fields[outputField(GAME_PARTITION_LEAGUE)].setNumDistinctValues((long)input.getLeagues());
+		stats.setFields(fields);
+		return stats;
 	}
 
-	public void setPartitionFilter(Expression partitionFilter)
-	{}
+	public void setPartitionFilter(Expression partitionFilter) throws IOException
+	{
+		getUDFProperties().setProperty(PARTITION_FILTER, RetrosheetPartitionFilter.fromExpression(partitionFilter).serialize());
+	}
 
+	/* year, team and league, taken from file names such as 2010BOS.EVA */
 	public String[] getPartitionKeys(String location,
                           org.apache.hadoop.mapreduce.Job job)
                           throws IOException
 	{ 
-		return null;
+		/* Partial counts don't have the partition fields */
+		if(countKeys != null)
+			return null;
+		return RetrosheetPartition.KEYS;
 	}
 
 	public ResourceSchema getSchema(java.lang.String str, org.apache.hadoop.mapreduce.Job job) {
@@ -303,7 +496,7 @@ public class RetrosheetLoader extends LoadFunc implements LoadMetadata {
 		playFields[RetrosheetLoader.PLAY_FIELDER] = new FieldSchema("fielder", org.apache.pig.data.DataType.INTEGER);
 		playFields[RetrosheetLoader.PLAY_TRAJECTORY] = new FieldSchema("trajectory", org.apache.pig.data.DataType.CHARARRAY);
 
-		FieldSchema[] gameFields = new FieldSchema[41];
+		FieldSchema[] gameFields = new FieldSchema[44];
 		
 		gameFields[RetrosheetLoader.GAME_ID] = new FieldSchema("game_id", org.apache.pig.data.DataType.CHARARRAY);
 		gameFields[RetrosheetLoader.GAME_SITE] = new FieldSchema("game_site_code", org.apache.pig.data.DataType.CHARARRAY);
@@ -345,477 +538,716 @@ public class RetrosheetLoader extends LoadFunc implements LoadMetadata {
 		gameFields[RetrosheetLoader.GAME_BATTERS_IN_GAME] = new FieldSchema("game_total_batters_in_game", org.apache.pig.data.DataType.INTEGER);
 		gameFields[RetrosheetLoader.GAME_DURATION] = new FieldSchema("game_duration", org.apache.pig.data.DataType.INTEGER);
 		gameFields[RetrosheetLoader.GAME_COUNTED_AS_SAVE] = new FieldSchema("game_counted_as_save", org.apache.pig.data.DataType.CHARARRAY);
+		List<FieldSchema> extras = new ArrayList<FieldSchema>();
+		if(namesFile != null) {
+			extras.add(new FieldSchema("batter_name", org.apache.pig.data.DataType.CHARARRAY));
+			extras.add(new FieldSchema("pitcher_name", org.apache.pig.data.DataType.CHARARRAY));
+		}
+		if(pitches)
+			extras.add(new FieldSchema("pitches", org.apache.pig.data.DataType.BYTEARRAY));
 		FieldSchema eventsField =  new FieldSchema("game_events", org.apache.pig.data.DataType.BAG);
 		FieldSchema eventsTuple = new FieldSchema("", org.apache.pig.data.DataType.TUPLE);
 		eventsField.schema = new Schema(eventsTuple);
-		eventsTuple.schema = new Schema(Arrays.asList(playFields));
+		List<FieldSchema> eventFields = new ArrayList<FieldSchema>(Arrays.asList(playFields));
+		eventFields.addAll(extras);
+		eventsTuple.schema = new Schema(eventFields);
 		gameFields[RetrosheetLoader.GAME_EVENTS] = eventsField;
+		gameFields[RetrosheetLoader.GAME_PARTITION_YEAR] = new FieldSchema(RetrosheetPartition.YEAR, org.apache.pig.data.DataType.INTEGER);
+		gameFields[RetrosheetLoader.GAME_PARTITION_TEAM] = new FieldSchema(RetrosheetPartition.TEAM, org.apache.pig.data.DataType.CHARARRAY);
+		gameFields[RetrosheetLoader.GAME_PARTITION_LEAGUE] = new FieldSchema(RetrosheetPartition.LEAGUE, org.apache.pig.data.DataType.CHARARRAY);
 		
 
+		if(flat) {
+			List<FieldSchema> flatFields = new ArrayList<FieldSchema>();
+			flatFields.addAll(Arrays.asList(gameFields).subList(0, GAME_EVENTS));
+			flatFields.addAll(Arrays.asList(playFields));
+			flatFields.addAll(Arrays.asList(gameFields).subList(GAME_PARTITION_YEAR, GAME_PARTITION_LEAGUE + 1));
+			flatFields.addAll(extras);
+			if(countKeys == null)
+				return new ResourceSchema( new Schema(flatFields) );
+			List<FieldSchema> countSchema = new ArrayList<FieldSchema>();
+			for(int key : countKeys)
+				countSchema.add(flatFields.get(key));
+			countSchema.add(new FieldSchema("plays", org.apache.pig.data.DataType.LONG));
+			return new ResourceSchema( new Schema(countSchema) );
+		}
+
 		return new ResourceSchema( new Schema(Arrays.asList(gameFields)) );
 	}
 
+	public List<LoadPushDown.OperatorSet> getFeatures() {
+		return Arrays.asList(LoadPushDown.OperatorSet.PROJECTION);
+	}
+
+	public LoadPushDown.RequiredFieldResponse pushProjection(LoadPushDown.RequiredFieldList requiredFieldList) throws FrontendException {
+		/* Partial counts are always returned whole, the fields they need are known up front */
+		if(requiredFieldList == null || requiredFieldList.getFields() == null || countKeys != null)
+			return new LoadPushDown.RequiredFieldResponse(false);
+		StringBuilder fields = new StringBuilder();
+		for(LoadPushDown.RequiredField f : requiredFieldList.getFields()) {
+			if(fields.length() > 0)
+				fields.append(',');
+			fields.append(f.getIndex());
+		}
+		getUDFProperties().setProperty(REQUIRED_FIELDS, fields.toString());
+		return new LoadPushDown.RequiredFieldResponse(true);
+	}
+
+	@Override
+	public void setUDFContextSignature(String signature) {
+		this.signature = signature;
+	}
+
+	private Properties getUDFProperties() {
+		return UDFContext.getUDFContext().getUDFProperties(this.getClass(), new String[] { signature });
+	}
+
+	/* Work out what has to be parsed for the projection Pig asked for */
+	private void setRequiredFields(String fields) {
+		if(fields == null) {
+			requiredFields = null;
+			parseFields = null;
+			trackPlays = buildEvents = true;
+			return;
+		}
+		String[] indexes = fields.length() == 0 ? new String[0] : fields.split(",");
+		requiredFields = new int[indexes.length];
+		parseFields = new boolean[GAME_PARTITION_LEAGUE + 1];
+		for(int i=0;i<indexes.length;i++) {
+			requiredFields[i] = Integer.parseInt(indexes[i]);
+			int field = flat ? gameField(requiredFields[i]) : requiredFields[i];
+			if(field >= 0)
+				parseFields[field] = true;
+		}
+		/* Start hour and minutes come from one info line, and the winner is one of the teams */
+		if(parseFields[GAME_START_HOUR] || parseFields[GAME_START_MINUTES])
+			parseFields[GAME_START_HOUR] = parseFields[GAME_START_MINUTES] = true;
+		if(parseFields[GAME_WINNER])
+			parseFields[GAME_HOME_TEAM] = parseFields[GAME_AWAY_TEAM] = true;
+		buildEvents = parseFields[GAME_EVENTS];
+		trackPlays = flat || buildEvents || parseFields[GAME_FINAL_HOME_SCORE] || parseFields[GAME_FINAL_AWAY_SCORE]
+			|| parseFields[GAME_WINNER] || parseFields[GAME_EVENTS_IN_GAME] || parseFields[GAME_BATTERS_IN_GAME];
+	}
+
+	/* Game field of a flat record field, or -1 for a play field */
+	private static int gameField(int flatField) {
+		if(flatField < FLAT_PLAY_OFFSET)
+			return flatField;
+		if(flatField >= FLAT_FIELDS)
+			return -1;
+		if(flatField >= FLAT_PARTITION_OFFSET)
+			return GAME_PARTITION_YEAR + flatField - FLAT_PARTITION_OFFSET;
+		return -1;
+	}
+
+	/* Record field a game field is returned in */
+	private int outputField(int gameField) {
+		if(!flat || gameField < GAME_EVENTS)
+			return gameField;
+		return FLAT_PARTITION_OFFSET + gameField - GAME_PARTITION_YEAR;
+	}
+
+	/* The projection is laid over the record, nothing is copied */
+	private Tuple project(RetrosheetLazyTuple t) {
+		t.setProjection(requiredFields);
+		return t;
+	}
+
 	@Override
 	public InputFormat getInputFormat() throws IOException {
+		if(combine)
+			return new RetrosheetCombineInputFormat();
 		return new RetrosheetInputFormat();
 	}
 
 	@Override
 	public void prepareToRead(RecordReader reader, PigSplit split) throws IOException
 	{
-		event_pattern = Pattern.compile("([KSDTW]|IW|HR|WP|HP|DGR|NP)?([1-9]?[1-9]?[(1)]*)?(?:/[1-9]*[C]?)?(?:/((?:SH)?B?[GLPF]+\\+?(/IPHR)?)?([1-9]*[LM]?[M]?[RL]?[XL]?[DS]?F?W?))?(/R[1-9])?(?:\\.(.*))?");
 		this.reader = reader;
+		org.apache.hadoop.conf.Configuration conf = UDFContext.getUDFContext().getJobConf();
+		maxEventsMemory = conf == null ? DEFAULT_EVENTS_MEMORY : conf.getLong(EVENTS_MEMORY, DEFAULT_EVENTS_MEMORY);
+		if(namesFile != null && dimension == null)
+			dimension = loadDimension();
+		rows.clear();
+		nextRow = 0;
+		if(countKeys == null) {
+			setRequiredFields(getUDFProperties().getProperty(REQUIRED_FIELDS));
+			return;
+		}
+		/* Only parse what is counted by or filtered on */
+		StringBuilder fields = new StringBuilder();
+		for(int key : countKeys)
+			fields.append(fields.length() > 0 ? "," : "").append(key);
+		for(int field : whereFields)
+			fields.append(fields.length() > 0 ? "," : "").append(field);
+		setRequiredFields(fields.toString());
+		counts.clear();
+		probe = tupleFactory.newTuple(countKeys.length);
+		inputDone = false;
+		maxCounts = conf == null ? DEFAULT_COUNT_ENTRIES : conf.getInt(COUNT_ENTRIES, DEFAULT_COUNT_ENTRIES);
 	}
 
 	@Override
 	public void setLocation(String location, Job job) throws IOException
 	{
 		FileInputFormat.setInputPaths(job, location);
+		if(namesFile != null)
+			shipDimension(job.getConfiguration());
+		String filter = getUDFProperties().getProperty(PARTITION_FILTER);
+		if(filter != null) {
+			/* Event files outside the filter are dropped when the input is listed */
+			job.getConfiguration().set(RetrosheetPartitionFilter.FILTER, filter);
+			FileInputFormat.setInputPathFilter(job, RetrosheetPartitionFilter.Paths.class);
+		}
+		/* Set either way, so it doesn't carry over from another load in the same job */
+		job.getConfiguration().set(RetrosheetPlayerIndex.PLAYER, player == null ? "" : player);
+		if(player != null)
+			job.getConfiguration().set(RetrosheetPlayerIndex.INDEX, playerIndex);
+	}
+
+	/* Add the player dimension file to the job's distributed cache, once */
+	private void shipDimension(org.apache.hadoop.conf.Configuration conf) throws IOException {
+		org.apache.hadoop.fs.Path p = new org.apache.hadoop.fs.Path(namesFile);
+		java.net.URI uri = p.getFileSystem(conf).makeQualified(p).toUri();
+		java.net.URI[] shipped = DistributedCache.getCacheFiles(conf);
+		if(shipped != null && Arrays.asList(shipped).contains(uri))
+			return;
+		DistributedCache.addCacheFile(uri, conf);
+	}
+
+	/* In a task the dimension is the local copy from the distributed cache.
+	   Where there is none, as in local mode, it is read from where it is. */
+	private RetrosheetPlayerDimension loadDimension() throws IOException {
+		org.apache.hadoop.conf.Configuration conf = UDFContext.getUDFContext().getJobConf();
+		if(conf == null)
+			conf = new org.apache.hadoop.conf.Configuration();
+		org.apache.hadoop.fs.Path p = new org.apache.hadoop.fs.Path(namesFile);
+		org.apache.hadoop.fs.Path[] local = DistributedCache.getLocalCacheFiles(conf);
+		if(local != null) {
+			for(org.apache.hadoop.fs.Path l : local) {
+				if(l.getName().equals(p.getName()))
+					return RetrosheetPlayerDimension.read(org.apache.hadoop.fs.FileSystem.getLocal(conf), l);
+			}
+		}
+		return RetrosheetPlayerDimension.read(p.getFileSystem(conf), p);
+	}
+
+	/* Name of the player in a slot, or null for nobody or a player in no roster */
+	private String playerName(GameStateEngine engine, int slot) {
+		if(slot == RetrosheetGameState.NONE)
+			return null;
+		int code = engine.getState().player[slot];
+		if(code >= playerNames.length) {
+			int n = Math.max(playerNames.length * 2, code + 1);
+			String[] names = new String[n];
+			System.arraycopy(playerNames, 0, names, 0, playerNames.length);
+			playerNames = names;
+			boolean[] named = new boolean[n];
+			System.arraycopy(playerNamed, 0, named, 0, playerNamed.length);
+			playerNamed = named;
+		}
+		if(!playerNamed[code]) {
+			playerNames[code] = dimension.name(engine.getPlayers().id(code));
+			playerNamed[code] = true;
+		}
+		return playerNames[code];
 	}
 
 	@Override
 	public Tuple getNext() throws IOException {
-		RetrosheetPlayer[] home_players = new RetrosheetPlayer[11];
-		RetrosheetPlayer[] away_players = new RetrosheetPlayer[11];
-		RetrosheetPlayer[] defense = null;
-		Hashtable players = new Hashtable();
-		int current_outs = 0;
-		int home_score = 0;
-		int away_score = 0;
-		int atbat_of_game = 0;
-		int event_of_game = 0;
-		String last_batter = "";
-		String current_batter = "";
-		String runner_on_first = "";
-		String runner_on_second = "";
-		String runner_on_third = "";
-
-		System.out.println("getNext()");
-
-		Tuple game = tupleFactory.newTuple(41);		
-		DataBag events = bagFactory.newDefaultBag();
+		if(countKeys != null)
+			return nextCount();
+		if(!flat)
+			return readGame();
+		/* Hand out the plays of the last game read, one row at a time */
+		while(nextRow >= rows.size()) {
+			rows.clear();
+			nextRow = 0;
+			if(readGame() == null)
+				return null;
+		}
+		Tuple row = rows.get(nextRow);
+		rows.set(nextRow++, null);
+		return project((RetrosheetLazyTuple)row);
+	}
 
-		try {
-			if(reader.nextKeyValue()) {
-				LongWritable k = (LongWritable)reader.getCurrentKey();
-				Text v = (Text)reader.getCurrentValue();
-				String record = v.toString();
-				/* Tokenize based on newlines */
-				for(String line : record.split("\n")) {
-					try {
-						String[] elems = line.split(",");
-						String linetype = elems[0].trim();
-						if (linetype.equals("com")) {
-							/* Comment.  Skip for now */
-						} else if (linetype.equals("id")) {
-							/* ID record.  If we've set the ID, this is an error */
-							/* Raw game id */
-							game.set(RetrosheetLoader.GAME_ID, elems[1]);
-							/* We can get the home team from the ID */
-							game.set(RetrosheetLoader.GAME_HOME_TEAM, elems[1].substring(0,3));
-							/* Day, Month, Year */
-							game.set(RetrosheetLoader.GAME_DATE_DAY, Integer.parseInt(elems[1].substring(3,7)));
-							game.set(RetrosheetLoader.GAME_DATE_MONTH, Integer.parseInt(elems[1].substring(7,9)));
-							game.set(RetrosheetLoader.GAME_DATE_YEAR, Integer.parseInt(elems[1].substring(9,11)));
-							int game_of_day = Integer.parseInt(elems[1].substring(11,12));
-							switch(game_of_day) {
-								case 0:
-									/* First game of the day, not a double header */
-									game.set(RetrosheetLoader.GAME_OF_DAY, 1);
-									game.set(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "no");
-									break;
-								case 1:
-									game.set(RetrosheetLoader.GAME_OF_DAY, 1);
-									game.set(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "yes");
-									break;
-								case 2:
-									game.set(RetrosheetLoader.GAME_OF_DAY, 2);
-									game.set(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "yes");
-									break;
-							}
-						} else if (linetype.equals("start")) {
-							/* Player start record.  Add to the current players list */
-							try {
-								RetrosheetPlayer p = new RetrosheetPlayer(elems);
-								players.put(p.player_id, p);
-								if(p.home_team) {
-									home_players[p.position] = p;
-								} else {
-									away_players[p.position] = p;
-								}
-							} catch (Exception e) {
-								/*TODO: Log this */
-							}
-						} else if (linetype.equals("sub")) {
-							/* Player substitution.  Replace the player in the list now */
-							try {
-								RetrosheetPlayer p = new RetrosheetPlayer(elems);
-								players.put(p.player_id, p);
-								if(p.home_team) {
-									home_players[p.position] = p;
-								} else {
-									away_players[p.position] = p;
-								}
-							} catch (Exception e) {
-								/*TODO: Log this */
-							}
-						} else if (linetype.equals("play")) {
-							try{
-								/* Play.  Emit an event into the events list, update players on base, update score. */
-								Tuple currentPlay = tupleFactory.newTuple(39);
-								int possible_rbis = 0;
-
-								/* We can set event of game now.  at-bat has to wait until we parse out stolen bases, etc. */
-								event_of_game++;
-								currentPlay.set(RetrosheetLoader.PLAY_EVENT_OF_GAME, event_of_game);
-							
-								/* Check if the batter has changed. */
-								current_batter = elems[3].trim();
-								RetrosheetPlayer current_player = (RetrosheetPlayer)players.get(current_batter);
-								if(current_batter != last_batter)
-								{
-									atbat_of_game++;
-								} 
-								currentPlay.set(RetrosheetLoader.PLAY_ATBAT_OF_GAME, atbat_of_game);
-								
-								/* Set inning and whether it is top or bottom */
-								currentPlay.set(RetrosheetLoader.PLAY_INNING, Integer.parseInt(elems[1]));
-								if(elems[2].trim() == "0"){
-									currentPlay.set(RetrosheetLoader.PLAY_INNING_HALF, "top");
-									defense = away_players;
-								} else {
-									currentPlay.set(RetrosheetLoader.PLAY_INNING_HALF, "bottom");
-									defense = home_players;
-								}
-
-								/* Set the fielders */	
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER, defense[1].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_CATCHER, defense[2].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_FIRST_BASEMAN, defense[3].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_SECOND_BASEMAN, defense[4].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_THIRD_BASEMAN, defense[5].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_SHORTSTOP, defense[6].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_LEFTFIELDER, defense[7].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_CENTERFIELDER, defense[8].player_id);
-								currentPlay.set(RetrosheetLoader.PLAY_RIGHTFIELDER, defense[9].player_id);
-
-								if (defense.length >=11 && defense[10] != null && defense[10].player_id != null)
-								  currentPlay.set(RetrosheetLoader.PLAY_DESIGNATED_HITTER, defense[10].player_id);
-								else
-								  currentPlay.set(RetrosheetLoader.PLAY_DESIGNATED_HITTER, "");
-								
-								/* Set the runners on base */
-								currentPlay.set(RetrosheetLoader.PLAY_RUNNER_ON_FIRST, runner_on_first);
-								currentPlay.set(RetrosheetLoader.PLAY_RUNNER_ON_SECOND, runner_on_second);
-								currentPlay.set(RetrosheetLoader.PLAY_RUNNER_ON_THIRD, runner_on_third);
-								int number_on_base = 0;
-								if(!runner_on_first.equals(""))
-									number_on_base++;
-								if(!runner_on_second.equals(""))
-									number_on_base++;
-								if(!runner_on_third.equals(""))
-									number_on_base++;
-								currentPlay.set(RetrosheetLoader.PLAY_RUNNERS_ON_BASE, number_on_base);
-
-								currentPlay.set(RetrosheetLoader.PLAY_CURRENT_BATTER, current_batter);
-								current_player.at_bat_number++;
-								currentPlay.set(RetrosheetLoader.PLAY_CURRENT_BATTER_AT_BAT, current_player.at_bat_number);
-								currentPlay.set(RetrosheetLoader.PLAY_BATTER_POSITION, current_player.position);
-								try {
-									int count = Integer.parseInt(elems[4]);
-									currentPlay.set(RetrosheetLoader.PLAY_COUNT, count/10 + "-" + count%10);
-								} catch (Exception e) {
-									currentPlay.set(RetrosheetLoader.PLAY_COUNT, "Unknown");
-								}
-								currentPlay.set(RetrosheetLoader.PLAY_BATTER_HITS_SO_FAR, current_player.hits_so_far);
-								currentPlay.set(RetrosheetLoader.PLAY_BATTER_HBP_SO_FAR, current_player.hbp_so_far);
-								currentPlay.set(RetrosheetLoader.PLAY_BATTER_WALKS_SO_FAR, current_player.walks_so_far);
-								currentPlay.set(RetrosheetLoader.PLAY_BATTER_OUTS_SO_FAR, current_player.outs_so_far);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_BATTERS_PITCHED_TO, defense[1].batters_pitched_to);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_HITS_ALLOWED, defense[1].pitcher_hits_allowed);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_WALKS_ALLOWED, defense[1].pitcher_walks_allowed);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_WILD_PITCHES, defense[1].pitcher_wild_pitches);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_BATTERS_BEANED, defense[1].pitcher_beans);
-								currentPlay.set(RetrosheetLoader.PLAY_PITCHER_STRIKEOUTS, defense[1].pitcher_strikeouts);
-								currentPlay.set(RetrosheetLoader.PLAY_HOME_SCORE, home_score);
-								currentPlay.set(RetrosheetLoader.PLAY_AWAY_SCORE, away_score);
-				
-								/* Parse the event itself */
-								Matcher m = event_pattern.matcher(elems[6]);				
-								if(m.matches() != true) {
-									System.err.println("Couldn't parse event data: " + elems[6]);
-								} else {
-									/* Figure out player movement so we can update everything in order */
-									if(m.groupCount() >= 6 && m.group(5) != null && !m.group(5).equals("")) {
-										/* We have some player movement */
-										String[] runner_mvmt = m.group(5).split(";");
-										/* Scan the whole thing in case the movement is out of order */
-										for(int i=3;i>0;i--) {
-											for(int j=0;j<runner_mvmt.length;j++) {
-												if(runner_mvmt[j].startsWith(""+i)) {
-													/* Check if this is movement or an out. */
-													if(runner_mvmt[j].substring(1,2).equals("X")) {
-														/* Clear the runner */
-														current_outs++;
-														switch(i) {
-															case 1:
-																runner_on_first = "";
-																break;
-															case 2:
-																runner_on_second = "";
-																break;
-															case 3:
-																runner_on_third = "";
-																break;
-														}
-													} else if (runner_mvmt[j].substring(1,2).equals("-")) {
-														String newbasename = runner_mvmt[j].substring(2,3);
-														if(newbasename.equals("H")) {
-															/* Can't credit an RBI yet.  Save as conditional RBI */
-															possible_rbis++;
-															if(current_player.home_team) {
-																home_score++;
-															} else {
-																away_score++;
-															}
-															switch(i) {
-																case 1:
-																	runner_on_first = "";
-																	break;
-																case 2:
-																	runner_on_second = "";
-																	break;
-																case 3:
-																	runner_on_third = "";
-																	break;
-															}
-														} else {
-															int newbase = Integer.parseInt(runner_mvmt[j].substring(2,3));
-															String moving_runner = "";
-															switch(i) {
-																case 1:
-																	moving_runner = runner_on_first;
-																	runner_on_first = "";
-						
-																	break;
-																case 2:
-																	moving_runner = runner_on_second;
-																	runner_on_second = "";
-																	break;
-																case 3:
-																	moving_runner = runner_on_third;
-																	runner_on_third = "";
-																	break;
-															}
-															switch(newbase) {
-
-																case 1:
-																	
-																	runner_on_first = moving_runner;
-																	break;
-																case 2:
-																	runner_on_second = moving_runner;
-																	break;
-																case 3:
-																	runner_on_second = moving_runner;
-																	break;
-															}
-														}
-
-													}
-												}
-											}
-										}
-									}
-									currentPlay.set(RetrosheetLoader.PLAY_BATTER_RBIS, current_player.rbis);
-									if(m.group(1) != null) {
-										if(m.group(1).equals("S")) {
-											runner_on_first = current_batter;	
-											defense[1].pitcher_hits_allowed++;
-											current_player.rbis+=possible_rbis;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Single");
-										} else if (m.group(1).equals("D") || m.group(1).equals("DGR")) {
-											runner_on_second = current_batter;	
-											defense[1].pitcher_hits_allowed++;
-											current_player.rbis+=possible_rbis;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Double");
-										} else if (m.group(1).equals("T")) {
-											runner_on_third = current_batter;	
-											defense[1].pitcher_hits_allowed++;
-											current_player.rbis+=possible_rbis;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Triple");
-										} else if (m.group(1).equals("HR")) {
-											if(current_player.home_team) {
-												home_score++;
-											} else {
-												away_score++;
-											}
-											defense[1].pitcher_hits_allowed++;
-											current_player.rbis+=possible_rbis;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Home run");
-										} else if (m.group(1).equals("HP")) {
-											runner_on_first = current_batter;
-											defense[1].pitcher_beans++;
-											current_player.hbp_so_far++;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Hit by pitch");
-										} else if (m.group(1).equals("WP")) {
-											defense[1].pitcher_wild_pitches++;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Wild pitch");
-										} else if (m.group(1).equals("W") || m.group(1).equals("IW")) {
-											runner_on_first = current_batter;	
-											defense[1].pitcher_walks_allowed++;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Walk");
-										} else if (m.group(1).equals("K")) {
-											defense[1].pitcher_strikeouts++;
-											current_player.strikeouts_so_far++;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Strikeout");
-										} else if (m.group(1).equals("NP")) {
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "No Play");
-										} else if (m.group(1).equals("")) {
-											/* Out */
-											current_player.outs_so_far++;
-											currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Out");
-										}
-										if (m.group(2) != null) 
-											// This is fielder - 1-9
-											currentPlay.set(RetrosheetLoader.PLAY_FIELDER, m.group(2));
-										else
-											currentPlay.set(RetrosheetLoader.PLAY_FIELDER,"0");
-										if (m.group(3) != null) {
-											// This is type of ball hit:
-											//  "L" line drive, "G" grounder,etc
-											switch(m.group(3).charAt(0)) {
-											  case 'L': currentPlay.set(PLAY_TRAJECTORY,"Line drive"); break;
-											  case 'F': currentPlay.set(PLAY_TRAJECTORY,"Fly ball"); break;
-											  case 'G': currentPlay.set(PLAY_TRAJECTORY,"Grounder"); break;
-											  case 'P': currentPlay.set(PLAY_TRAJECTORY,"Pop fly"); break;
-											  case 'B': currentPlay.set(PLAY_TRAJECTORY,"Bunt"); break;
-											  default: currentPlay.set(PLAY_TRAJECTORY,m.group(3));
-											}
-										}
-										else
-											currentPlay.set(PLAY_TRAJECTORY,"0");
-									} else {
-										/* Out */
-										current_player.outs_so_far++;
-										currentPlay.set(RetrosheetLoader.PLAY_RESULT, "Out");
-									}
-									/* Write out rbis and rbis_so_far. */
-									currentPlay.set(RetrosheetLoader.PLAY_RBIS_ON_PLAY, possible_rbis);
-									
-								}
-								events.add(currentPlay);
-							} catch (Exception e) { 
-								System.err.println("Error with play: " + e);
-								e.printStackTrace();
-							}	
-						} else if (linetype.equals("version")) {
-							/* File version info.  Skip for now */
-						} else if (linetype.equals("info")) {
-							/* Game info.  Add to the output tuple */
-							String infotype = elems[1].trim();
-							if (infotype.equals("hometeam")) {
-								/* Ignore, this is already set by ID */
-							} else if (infotype.equals("site")) {
-								game.set(RetrosheetLoader.GAME_SITE, elems[2]);	
-							} else if (infotype.equals("date")) {
-								/* Already set in the ID */
-							} else if (infotype.equals("number")) {
-								/* Already set in the ID */
-							} else if (infotype.equals("daynight")) {
-								game.set(RetrosheetLoader.GAME_DAY_NIGHT, elems[2]);
-							} else if (infotype.equals("starttime")) {
-								String[] time_elems = elems[2].split(":");
-								int hour = 0, minutes = 0;
-								if(time_elems.length == 2) {
-									hour = Integer.parseInt(time_elems[0]);
-									minutes = Integer.parseInt(time_elems[1].substring(0,2));
-									if(!time_elems[1].substring(2,4).equals("AM")) {
-										hour+=12;
-									}
-								} else {
-									if(elems[2].length() > 2) {
-										int length = elems[2].length();
-										minutes = Integer.parseInt(elems[2].substring(length-2, length));
-										hour = Integer.parseInt(elems[2].substring(0, length-2));
-									}
-								}
-								game.set(RetrosheetLoader.GAME_START_HOUR, hour);
-								game.set(RetrosheetLoader.GAME_START_MINUTES, minutes);
-							} else if( infotype.equals("visteam")){
-								game.set(RetrosheetLoader.GAME_AWAY_TEAM, elems[2]);	
-							} else if (infotype.equals("usedh")) {
-								game.set(RetrosheetLoader.GAME_USE_DESIGNATED_HITTER, elems[2]);	
-							} else if (infotype.equals("umphome")) {
-								game.set(RetrosheetLoader.GAME_HOME_UMPIRE, elems[2]);	
-							} else if (infotype.equals("ump1b")) {
-								game.set(RetrosheetLoader.GAME_1ST_BASE_UMPIRE, elems[2]);	
-							} else if (infotype.equals("ump2b")) {
-								game.set(RetrosheetLoader.GAME_2ND_BASE_UMPIRE, elems[2]);	
-							} else if (infotype.equals("ump3b")) {
-								game.set(RetrosheetLoader.GAME_3RD_BASE_UMPIRE, elems[2]);	
-							} else if (infotype.equals("umplf")) {
-								game.set(RetrosheetLoader.GAME_LEFT_FIELD_UMPIRE, elems[2]);	
-							} else if (infotype.equals("umprf")) {
-								game.set(RetrosheetLoader.GAME_RIGHT_FIELD_UMPIRE, elems[2]);	
-							} else if (infotype.equals("wp")) {
-								game.set(RetrosheetLoader.GAME_WINNING_PITCHER, elems[2]);
-							} else if (infotype.equals("lp")) {
-								game.set(RetrosheetLoader.GAME_LOSING_PITCHER, elems[2]);
-							} else if (infotype.equals("howscored")) {
-								game.set(RetrosheetLoader.GAME_HOW_SCORED, elems[2]);
-							} else if (infotype.equals("scorer")) {
-								game.set(RetrosheetLoader.GAME_SCORER, elems[2]);
-							} else if (infotype.equals("inputter")) {
-								game.set(RetrosheetLoader.GAME_INPUTTER, elems[2]);
-							} else if (infotype.equals("translator")) {
-								game.set(RetrosheetLoader.GAME_TRANSLATOR, elems[2]);	
-							} else if (infotype.equals("pitches")) {
-								game.set(RetrosheetLoader.GAME_HAS_PITCHES, elems[2]);
-							} else if (infotype.equals("winddir")) {
-								game.set(RetrosheetLoader.GAME_WIND_DIRECTION, elems[2]);
-							} else if (infotype.equals("windspeed")) {
-								game.set(RetrosheetLoader.GAME_WIND_SPEED, Integer.parseInt(elems[2]));
-							} else if (infotype.equals("temp")) {
-								game.set(RetrosheetLoader.GAME_TEMPERATURE, Integer.parseInt(elems[2]));
-							} else if (infotype.equals("sky")) {
-								game.set(RetrosheetLoader.GAME_SKY_CONDITION, elems[2]);
-							} else if (infotype.equals("fieldcond")) {
-								game.set(RetrosheetLoader.GAME_FIELD_CONDITION, elems[2]);
-							} else if (infotype.equals("precip")) {
-								game.set(RetrosheetLoader.GAME_PRECIPITATION, elems[2]);	
-							} else if (infotype.equals("attendance")) {
-								game.set(RetrosheetLoader.GAME_ATTENDANCE, Integer.parseInt(elems[2]));
-							} else if (infotype.equals("timeofgame")) {
-								game.set(RetrosheetLoader.GAME_DURATION, Integer.parseInt(elems[2]));
-							} else if (infotype.equals("save")) {
-								game.set(RetrosheetLoader.GAME_COUNTED_AS_SAVE, elems[2]);
-							}
-						} else if (linetype.equals("data")) {
-							/* Other game data.  Generally earned runs for the pitchers */
-						}
-					} catch (Exception e) {
-						System.err.println("Malformed data: '" + line + "' exception: " + e);
-					}
+	/* Count plays until the table is full, memory is short or the input ends,
+	   then hand the partial counts out one at a time from rows */
+	private Tuple nextCount() throws IOException {
+		while(nextRow >= rows.size()) {
+			rows.clear();
+			nextRow = 0;
+			if(inputDone)
+				return null;
+			while(counts.size() < maxCounts) {
+				int before = counts.size();
+				if(readGame() == null) {
+					inputDone = true;
+					break;
 				}
-				game.set(RetrosheetLoader.GAME_EVENTS, events);
-				game.set(RetrosheetLoader.GAME_FINAL_HOME_SCORE, home_score);
-				game.set(RetrosheetLoader.GAME_FINAL_AWAY_SCORE, away_score);
-				game.set(RetrosheetLoader.GAME_EVENTS_IN_GAME, event_of_game);
-				game.set(RetrosheetLoader.GAME_BATTERS_IN_GAME, atbat_of_game);
-				if(home_score>away_score) {
-					game.set(RetrosheetLoader.GAME_WINNER, game.get(RetrosheetLoader.GAME_HOME_TEAM));
-				} else if (away_score>home_score) {
-					game.set(RetrosheetLoader.GAME_WINNER, game.get(RetrosheetLoader.GAME_AWAY_TEAM));
+				for(Tuple row : rows)
+					count(row);
+				rows.clear();
+				if(counts.size() / MEMORY_CHECK != before / MEMORY_CHECK && memoryShort())
+					break;
+			}
+			for(Map.Entry<Tuple, long[]> e : counts.entrySet()) {
+				Tuple partial = tupleFactory.newTuple(countKeys.length + 1);
+				for(int i=0;i<countKeys.length;i++)
+					partial.set(i, e.getKey().get(i));
+				partial.set(countKeys.length, e.getValue()[0]);
+				rows.add(partial);
+			}
+			engine.getCounters().add(RetrosheetCounters.Counter.PARTIAL_COUNTS, counts.size());
+			counts.clear();
+			/* The last report was made when the input ended */
+			if(inputDone)
+				reportCounters();
+		}
+		Tuple partial = rows.get(nextRow);
+		rows.set(nextRow++, null);
+		return partial;
+	}
+
+	private void count(Tuple row) throws ExecException {
+		for(int i=0;i<whereFields.length;i++) {
+			Object value = row.get(whereFields[i]);
+			if(value == null || !whereValues[i].equals(value.toString()))
+				return;
+		}
+		for(int i=0;i<countKeys.length;i++)
+			probe.set(i, row.get(countKeys[i]));
+		long[] n = counts.get(probe);
+		if(n == null) {
+			/* The probe becomes the key, and a new one is made for next time */
+			counts.put(probe, n = new long[1]);
+			probe = tupleFactory.newTuple(countKeys.length);
+		}
+		n[0]++;
+	}
+
+	private static boolean memoryShort() {
+		Runtime rt = Runtime.getRuntime();
+		return rt.maxMemory() - (rt.totalMemory() - rt.freeMemory()) < rt.maxMemory() / MEMORY_RESERVE;
+	}
+
+	/* Read the next game.  In flat mode its plays are left in rows, and the
+	   game tuple is returned unprojected. */
+	private Tuple readGame() throws IOException {
+		try {
+			boolean timed = gamesRead % TIMING_SAMPLE == 0;
+			long start = timed ? System.nanoTime() : 0;
+			if(!reader.nextKeyValue()) {
+				reportCounters();
+				return null;
+			}
+			if(timed)
+				engine.getCounters().add(RetrosheetCounters.Counter.READ_NANOS, System.nanoTime() - start);
+			engine.setTiming(timed);
+			if(++gamesRead % REPORT_GAMES == 0)
+				reportCounters();
+			RetrosheetRecordReader r = null;
+			if(reader instanceof RetrosheetRecordReader)
+				r = (RetrosheetRecordReader)reader;
+			else if(reader instanceof RetrosheetCombineRecordReader)
+				r = ((RetrosheetCombineRecordReader)reader).getCurrentReader();
+			/* The game's tuples keep spans of its bytes, so they get a copy of their
+			   own, and the game is replayed out of that */
+			byte[] bytes;
+			if(r != null) {
+				if(r.getPath() != partitionPath) {
+					partitionPath = r.getPath();
+					partition = RetrosheetPartition.parse(partitionPath);
 				}
-				return game;
-			
+				bytes = new byte[r.getGameLength()];
+				System.arraycopy(r.getBuffer(), r.getGameStart(), bytes, 0, bytes.length);
+			} else {
+				Text value = (Text)reader.getCurrentValue();
+				bytes = new byte[value.getLength()];
+				System.arraycopy(value.getBytes(), 0, bytes, 0, bytes.length);
 			}
+			builder.game = new RetrosheetGameTuple(bytes);
+			builder.events = buildEvents && !flat ? new RetrosheetEventBag(engine.getPlayers(), bytes, dimension != null, pitches, maxEventsMemory) : null;
+			engine.setTrackPlays(trackPlays);
+			engine.run(bytes, 0, bytes.length, builder);
+			RetrosheetGameTuple game = builder.game;
+			builder.game = null;
+			builder.events = null;
+			/* In flat mode the rows read their game fields from the game */
+			return flat ? game : project(game);
 		} catch (Exception e) {
-			/*TODO: Log this */
+			/* Counted before the task dies, so the failure shows with the other counts */
+			engine.getCounters().increment(RetrosheetCounters.Counter.FAILED_GAMES);
+			reportCounters();
 			throw new IOException("Error parsing", e);
 		}
-		return null;
-		
+	}
+
+	/* Fills in the game tuple, and the play tuples, as the engine replays a game */
+	private class GameBuilder extends GameVisitor {
+		RetrosheetGameTuple game;
+		DataBag events;
+
+		public void startGame(GameStateEngine engine) throws IOException {
+			if(partition != null) {
+				game.setInt(RetrosheetLoader.GAME_PARTITION_YEAR, partition.getYear());
+				game.setValue(RetrosheetLoader.GAME_PARTITION_TEAM, partition.getTeam());
+				game.setValue(RetrosheetLoader.GAME_PARTITION_LEAGUE, partition.getLeague());
+			}
+		}
+
+		/* A game field that is the text of a field of the current line */
+		private void span(int gameField, RetrosheetTokenizer tok, int field) {
+			game.setSpan(gameField, tok.fieldStart(field), tok.fieldLength(field));
+		}
+
+		public void gameId(GameStateEngine engine) throws IOException {
+			RetrosheetTokenizer tok = engine.getTokenizer();
+			/* Raw game id */
+			span(RetrosheetLoader.GAME_ID, tok, 1);
+			/* We can get the home team from the ID */
+			if(tok.fieldLength(1) < 3)
+				throw new IndexOutOfBoundsException("Game id too short for a home team");
+			game.setSpan(RetrosheetLoader.GAME_HOME_TEAM, tok.fieldStart(1), 3);
+			/* Day, Month, Year */
+			game.setInt(RetrosheetLoader.GAME_DATE_DAY, tok.parseInt(1, 3, 7));
+			game.setInt(RetrosheetLoader.GAME_DATE_MONTH, tok.parseInt(1, 7, 9));
+			game.setInt(RetrosheetLoader.GAME_DATE_YEAR, tok.parseInt(1, 9, 11));
+			int game_of_day = tok.parseInt(1, 11, 12);
+			switch(game_of_day) {
+				case 0:
+					/* First game of the day, not a double header */
+					game.setInt(RetrosheetLoader.GAME_OF_DAY, 1);
+					game.setValue(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "no");
+					break;
+				case 1:
+					game.setInt(RetrosheetLoader.GAME_OF_DAY, 1);
+					game.setValue(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "yes");
+					break;
+				case 2:
+					game.setInt(RetrosheetLoader.GAME_OF_DAY, 2);
+					game.setValue(RetrosheetLoader.GAME_IS_DOUBLE_HEADER, "yes");
+					break;
+			}
+		}
+
+		/* Game info.  Add to the output tuple. */
+		public void info(GameStateEngine engine, int key) throws IOException {
+			if(parseFields != null && !parseInfo(key))
+				return;
+			RetrosheetTokenizer tok = engine.getTokenizer();
+			switch(key) {
+			case RetrosheetTokenizer.INFO_HOMETEAM:
+				/* Ignore, this is already set by ID */
+				break;
+			case RetrosheetTokenizer.INFO_SITE:
+				span(RetrosheetLoader.GAME_SITE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_DATE:
+			case RetrosheetTokenizer.INFO_NUMBER:
+				/* Already set in the ID */
+				break;
+			case RetrosheetTokenizer.INFO_DAYNIGHT:
+				span(RetrosheetLoader.GAME_DAY_NIGHT, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_STARTTIME:
+				int hour = 0, minutes = 0;
+				int length = tok.fieldLength(2);
+				int colon = 0;
+				while(colon < length && tok.byteAt(2, colon) != ':')
+					colon++;
+				if(colon < length) {
+					hour = tok.parseInt(2, 0, colon);
+					minutes = tok.parseInt(2, colon + 1, colon + 3);
+					if(!(length >= colon + 5 && tok.byteAt(2, colon + 3) == 'A' && tok.byteAt(2, colon + 4) == 'M')) {
+						hour+=12;
+					}
+				} else {
+					if(length > 2) {
+						minutes = tok.parseInt(2, length-2, length);
+						hour = tok.parseInt(2, 0, length-2);
+					}
+				}
+				game.setInt(RetrosheetLoader.GAME_START_HOUR, hour);
+				game.setInt(RetrosheetLoader.GAME_START_MINUTES, minutes);
+				break;
+			case RetrosheetTokenizer.INFO_VISTEAM:
+				span(RetrosheetLoader.GAME_AWAY_TEAM, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_USEDH:
+				span(RetrosheetLoader.GAME_USE_DESIGNATED_HITTER, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMPHOME:
+				span(RetrosheetLoader.GAME_HOME_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMP1B:
+				span(RetrosheetLoader.GAME_1ST_BASE_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMP2B:
+				span(RetrosheetLoader.GAME_2ND_BASE_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMP3B:
+				span(RetrosheetLoader.GAME_3RD_BASE_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMPLF:
+				span(RetrosheetLoader.GAME_LEFT_FIELD_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_UMPRF:
+				span(RetrosheetLoader.GAME_RIGHT_FIELD_UMPIRE, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_WP:
+				span(RetrosheetLoader.GAME_WINNING_PITCHER, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_LP:
+				span(RetrosheetLoader.GAME_LOSING_PITCHER, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_HOWSCORED:
+				span(RetrosheetLoader.GAME_HOW_SCORED, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_SCORER:
+				span(RetrosheetLoader.GAME_SCORER, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_INPUTTER:
+				span(RetrosheetLoader.GAME_INPUTTER, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_TRANSLATOR:
+				span(RetrosheetLoader.GAME_TRANSLATOR, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_PITCHES:
+				span(RetrosheetLoader.GAME_HAS_PITCHES, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_WINDDIR:
+				span(RetrosheetLoader.GAME_WIND_DIRECTION, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_WINDSPEED:
+				game.setInt(RetrosheetLoader.GAME_WIND_SPEED, tok.parseInt(2));
+				break;
+			case RetrosheetTokenizer.INFO_TEMP:
+				game.setInt(RetrosheetLoader.GAME_TEMPERATURE, tok.parseInt(2));
+				break;
+			case RetrosheetTokenizer.INFO_SKY:
+				span(RetrosheetLoader.GAME_SKY_CONDITION, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_FIELDCOND:
+				span(RetrosheetLoader.GAME_FIELD_CONDITION, tok, 2);
+				break;
+			case RetrosheetTokenizer.INFO_PRECIP:
+				span(RetrosheetLoader.GAME_PRECIPITATION, tok, 2);	
+				break;
+			case RetrosheetTokenizer.INFO_ATTENDANCE:
+				game.setInt(RetrosheetLoader.GAME_ATTENDANCE, tok.parseInt(2));
+				break;
+			case RetrosheetTokenizer.INFO_TIMEOFGAME:
+				game.setInt(RetrosheetLoader.GAME_DURATION, tok.parseInt(2));
+				break;
+			case RetrosheetTokenizer.INFO_SAVE:
+				span(RetrosheetLoader.GAME_COUNTED_AS_SAVE, tok, 2);
+				break;
+			}
+		}
+
+		/* Emit the play into the events list, or the flat rows.  Without either
+		   there is nothing to keep. */
+		public void play(GameStateEngine engine) throws IOException {
+			if(!flat && !buildEvents) {
+				if(!engine.isParsed())
+					logProblem("Couldn't parse event data: " + engine.getTokenizer().fieldString(6), null);
+				return;
+			}
+			RetrosheetGameState st = engine.getState();
+			RetrosheetPlayTuple currentPlay = new RetrosheetPlayTuple(engine.getPlayers(), game.getBytes(), flat ? game : null, dimension != null, pitches);
+			int[] v = currentPlay.values;
+			int batter = engine.getBatter();
+			int pitcher = engine.getPitcher();
+			int[] defense = engine.getDefense();
+
+			v[RetrosheetLoader.PLAY_EVENT_OF_GAME] = st.eventOfGame;
+			v[RetrosheetLoader.PLAY_ATBAT_OF_GAME] = st.atBatOfGame;
+			v[RetrosheetLoader.PLAY_INNING] = engine.getInning();
+			v[RetrosheetLoader.PLAY_INNING_HALF] = engine.isTop() ? 1 : 0;
+
+			/* Set the fielders */	
+			v[RetrosheetLoader.PLAY_PITCHER] = player(st, pitcher);
+			v[RetrosheetLoader.PLAY_CATCHER] = player(st, defense[2]);
+			v[RetrosheetLoader.PLAY_FIRST_BASEMAN] = player(st, defense[3]);
+			v[RetrosheetLoader.PLAY_SECOND_BASEMAN] = player(st, defense[4]);
+			v[RetrosheetLoader.PLAY_THIRD_BASEMAN] = player(st, defense[5]);
+			v[RetrosheetLoader.PLAY_SHORTSTOP] = player(st, defense[6]);
+			v[RetrosheetLoader.PLAY_LEFTFIELDER] = player(st, defense[7]);
+			v[RetrosheetLoader.PLAY_CENTERFIELDER] = player(st, defense[8]);
+			v[RetrosheetLoader.PLAY_RIGHTFIELDER] = player(st, defense[9]);
+			v[RetrosheetLoader.PLAY_DESIGNATED_HITTER] = player(st, defense[10]);
+
+			/* Set the runners on base */
+			v[RetrosheetLoader.PLAY_RUNNER_ON_FIRST] = player(st, st.runners[1]);
+			v[RetrosheetLoader.PLAY_RUNNER_ON_SECOND] = player(st, st.runners[2]);
+			v[RetrosheetLoader.PLAY_RUNNER_ON_THIRD] = player(st, st.runners[3]);
+			v[RetrosheetLoader.PLAY_RUNNERS_ON_BASE] = st.runnersOnBase();
+
+			v[RetrosheetLoader.PLAY_CURRENT_BATTER] = player(st, batter);
+			v[RetrosheetLoader.PLAY_CURRENT_BATTER_AT_BAT] = st.atBats[batter];
+			v[RetrosheetLoader.PLAY_BATTER_POSITION] = st.position[batter];
+			v[RetrosheetLoader.PLAY_COUNT] = engine.isCountKnown() ? engine.getCount() : RetrosheetPlayTuple.UNKNOWN_COUNT;
+			v[RetrosheetLoader.PLAY_BATTER_HITS_SO_FAR] = st.hits[batter];
+			v[RetrosheetLoader.PLAY_BATTER_HBP_SO_FAR] = st.hitByPitch[batter];
+			v[RetrosheetLoader.PLAY_BATTER_WALKS_SO_FAR] = st.walks[batter];
+			v[RetrosheetLoader.PLAY_BATTER_OUTS_SO_FAR] = st.outs[batter];
+			v[RetrosheetLoader.PLAY_PITCHER_BATTERS_PITCHED_TO] = st.battersPitchedTo[pitcher];
+			v[RetrosheetLoader.PLAY_PITCHER_HITS_ALLOWED] = st.hitsAllowed[pitcher];
+			v[RetrosheetLoader.PLAY_PITCHER_WALKS_ALLOWED] = st.walksAllowed[pitcher];
+			v[RetrosheetLoader.PLAY_PITCHER_WILD_PITCHES] = st.wildPitches[pitcher];
+			v[RetrosheetLoader.PLAY_PITCHER_BATTERS_BEANED] = st.battersHit[pitcher];
+			v[RetrosheetLoader.PLAY_PITCHER_STRIKEOUTS] = st.pitcherStrikeouts[pitcher];
+			v[RetrosheetLoader.PLAY_HOME_SCORE] = st.homeScore;
+			v[RetrosheetLoader.PLAY_AWAY_SCORE] = st.awayScore;
+			if(dimension != null) {
+				currentPlay.batterName = playerName(engine, batter);
+				currentPlay.pitcherName = playerName(engine, pitcher);
+			}
+			if(pitches) {
+				/* Packed when the field is read */
+				RetrosheetTokenizer tok = engine.getTokenizer();
+				if(tok.hasField(5)) {
+					currentPlay.pitchesStart = tok.fieldStart(5);
+					currentPlay.pitchesLength = tok.fieldLength(5);
+				}
+			}
+
+			if(!engine.isParsed()) {
+				logProblem("Couldn't parse event data: " + engine.getTokenizer().fieldString(6), null);
+			} else {
+				RetrosheetEvent event = engine.getEvent();
+				currentPlay.parsed = true;
+				/* RBIs so far don't include this play's */
+				v[RetrosheetLoader.PLAY_BATTER_RBIS] = st.rbis[batter];
+				v[RetrosheetLoader.PLAY_RESULT] = event.type;
+				// This is the fielders who handled the ball - 1-9, as a span of the event
+				currentPlay.fielderStart = event.offset + event.fielderStart;
+				currentPlay.fielderLength = Math.max(0, event.fielderEnd - event.fielderStart);
+				// This is type of ball hit:
+				//  "L" line drive, "G" grounder,etc
+				v[RetrosheetLoader.PLAY_TRAJECTORY] = event.trajectory;
+				v[RetrosheetLoader.PLAY_RBIS_ON_PLAY] = engine.getRbisOnPlay();
+			}
+			if(flat)
+				rows.add(currentPlay);
+			else
+				events.add(currentPlay);
+		}
+
+		/* Dictionary code of the player in a slot, or -1 for nobody */
+		private int player(RetrosheetGameState st, int slot) {
+			return slot == RetrosheetGameState.NONE ? -1 : st.player[slot];
+		}
+
+		public void playError(GameStateEngine engine, Exception e) throws IOException {
+			logProblem("Error with play: '" + line(engine) + "'", e);
+		}
+
+		public void malformedLine(GameStateEngine engine, Exception e) throws IOException {
+			logProblem("Malformed data: '" + line(engine) + "'", e);
+		}
+
+		private String line(GameStateEngine engine) throws IOException {
+			RetrosheetTokenizer tok = engine.getTokenizer();
+			return Text.decode(tok.getBytes(), tok.lineStart(), tok.lineLength());
+		}
+
+		public void endGame(GameStateEngine engine) throws IOException {
+			RetrosheetGameState st = engine.getState();
+			if(events != null)
+				game.setValue(RetrosheetLoader.GAME_EVENTS, events);
+			game.setInt(RetrosheetLoader.GAME_FINAL_HOME_SCORE, st.homeScore);
+			game.setInt(RetrosheetLoader.GAME_FINAL_AWAY_SCORE, st.awayScore);
+			game.setInt(RetrosheetLoader.GAME_EVENTS_IN_GAME, st.eventOfGame);
+			game.setInt(RetrosheetLoader.GAME_BATTERS_IN_GAME, st.atBatOfGame);
+			if(st.homeScore>st.awayScore) {
+				game.copyField(RetrosheetLoader.GAME_WINNER, RetrosheetLoader.GAME_HOME_TEAM);
+			} else if (st.awayScore>st.homeScore) {
+				game.copyField(RetrosheetLoader.GAME_WINNER, RetrosheetLoader.GAME_AWAY_TEAM);
+			}
+		}
+	}
+
+	private static final RetrosheetCounters.Counter[] REPORTED_COUNTERS = RetrosheetCounters.counters();
+
+	/* Pass the counts since the last report on to the task's counters.  Outside
+	   of a task there are no counters, and they are dropped. */
+	private void reportCounters() {
+		RetrosheetCounters counters = engine.getCounters();
+		PigStatusReporter reporter = PigStatusReporter.getInstance();
+		for(RetrosheetCounters.Counter c : REPORTED_COUNTERS) {
+			long n = counters.get(c);
+			if(n == 0)
+				continue;
+			org.apache.hadoop.mapreduce.Counter counter = reporter.getCounter(c);
+			if(counter != null)
+				counter.increment(n);
+		}
+		counters.clear();
+	}
+
+	/* Log the first few problems of a task */
+	private void logProblem(String message, Exception e) {
+		if(warnings >= MAX_WARNINGS)
+			return;
+		if(e == null)
+			LOG.warn(message);
+		else
+			LOG.warn(message, e);
+		if(++warnings == MAX_WARNINGS)
+			LOG.warn("Further problems are only counted, in the " + RetrosheetCounters.Counter.class.getName() + " counters");
+	}
+
+	/* Whether the given info key sets a game field in the projection */
+	private boolean parseInfo(int key) {
+		int field = key < INFO_FIELDS.length ? INFO_FIELDS[key] : -1;
+		return field >= 0 && parseFields[field];
+	}
+
+	/* Game field set by each info key, or -1 */
+	private static final int[] INFO_FIELDS = new int[RetrosheetTokenizer.INFO_TIMEOFGAME + 1];
+	static {
+		Arrays.fill(INFO_FIELDS, -1);
+		INFO_FIELDS[RetrosheetTokenizer.INFO_SITE] = GAME_SITE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_DAYNIGHT] = GAME_DAY_NIGHT;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_STARTTIME] = GAME_START_HOUR;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_VISTEAM] = GAME_AWAY_TEAM;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_USEDH] = GAME_USE_DESIGNATED_HITTER;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMPHOME] = GAME_HOME_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMP1B] = GAME_1ST_BASE_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMP2B] = GAME_2ND_BASE_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMP3B] = GAME_3RD_BASE_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMPLF] = GAME_LEFT_FIELD_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_UMPRF] = GAME_RIGHT_FIELD_UMPIRE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_WP] = GAME_WINNING_PITCHER;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_LP] = GAME_LOSING_PITCHER;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_HOWSCORED] = GAME_HOW_SCORED;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_SCORER] = GAME_SCORER;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_INPUTTER] = GAME_INPUTTER;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_TRANSLATOR] = GAME_TRANSLATOR;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_PITCHES] = GAME_HAS_PITCHES;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_WINDDIR] = GAME_WIND_DIRECTION;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_WINDSPEED] = GAME_WIND_SPEED;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_TEMP] = GAME_TEMPERATURE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_SKY] = GAME_SKY_CONDITION;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_FIELDCOND] = GAME_FIELD_CONDITION;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_PRECIP] = GAME_PRECIPITATION;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_ATTENDANCE] = GAME_ATTENDANCE;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_TIMEOFGAME] = GAME_DURATION;
+		INFO_FIELDS[RetrosheetTokenizer.INFO_SAVE] = GAME_COUNTED_AS_SAVE;
+	}
+
+	/* Balls-strikes strings for the two digit count field */
+	private static final String[] COUNT_STRINGS = new String[100];
+	static {
+		for(int i=0;i<COUNT_STRINGS.length;i++)
+			COUNT_STRINGS[i] = i/10 + "-" + i%10;
+	}
+
+	static String countString(int count) {
+		if(count >= 0 && count < COUNT_STRINGS.length)
+			return COUNT_STRINGS[count];
+		return count/10 + "-" + count%10;
 	}
 }
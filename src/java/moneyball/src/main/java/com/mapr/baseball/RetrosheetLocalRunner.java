@@ -0,0 +1,225 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.io.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+import org.apache.pig.*;
+import org.apache.pig.data.*;
+
+/* Turns local event files into the per play rows of summarize_loader.pig,
+   without Pig or Hadoop, using every core of one box.
+
+	java -cp moneyball.jar:<pig and hadoop jars> com.mapr.baseball.RetrosheetLocalRunner
+		[-threads n] [-format csv|json] <output dir> <event file or dir> ...
+
+   Each event file is read by one worker with its own RetrosheetRecordReader
+   and RetrosheetLoader('-flat'), so the rows are exactly the ones the loader
+   gives Pig, less the year, team and league partition keys, which
+   summarize_loader.pig leaves off too ($0 .. $78).  Each is written to a
+   file of the same name plus .csv or .json in the output directory.  CSV files start with a header line of field names;
+   JSON files have one object per line.
+*/
+public class RetrosheetLocalRunner {
+	public static final String CSV = "csv";
+	public static final String JSON = "json";
+
+	private final String format;
+	private final int threads;
+	private final String[] names;
+
+	public RetrosheetLocalRunner(String format, int threads) {
+		if(!format.equals(CSV) && !format.equals(JSON))
+			throw new IllegalArgumentException("Unknown format " + format);
+		this.format = format;
+		this.threads = threads;
+		ResourceSchema.ResourceFieldSchema[] fields = new RetrosheetLoader("-flat").getSchema(null, null).getFields();
+		names = new String[RetrosheetLoader.FLAT_PARTITION_OFFSET];
+		for(int i=0;i<names.length;i++)
+			names[i] = fields[i].getName();
+	}
+
+	/* Convert the files on the worker threads, and return the number of rows written */
+	public long run(List<File> inputs, final File output) throws IOException, InterruptedException {
+		/* Biggest files first, so one big file doesn't hold up the end */
+		List<File> files = new ArrayList<File>(inputs);
+		Collections.sort(files, new Comparator<File>() {
+			public int compare(File a, File b) {
+				return a.length() < b.length() ? 1 : a.length() > b.length() ? -1 : a.compareTo(b);
+			}
+		});
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for(final File in : files) {
+				results.add(pool.submit(new Callable<Long>() {
+					public Long call() throws IOException, InterruptedException {
+						return convert(in, new File(output, in.getName() + "." + format));
+					}
+				}));
+			}
+			long rows = 0;
+			for(Future<Long> result : results) {
+				try {
+					rows += result.get();
+				} catch (ExecutionException e) {
+					if(e.getCause() instanceof IOException)
+						throw (IOException)e.getCause();
+					throw new IOException("Conversion failed", e.getCause());
+				}
+			}
+			return rows;
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/* Convert one event file, and return the number of rows written */
+	public long convert(File in, File out) throws IOException, InterruptedException {
+		TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+		RetrosheetRecordReader reader = new RetrosheetRecordReader();
+		reader.initialize(new FileSplit(new Path(in.getAbsolutePath()), 0, in.length(), new String[0]), context);
+		RetrosheetLoader loader = new RetrosheetLoader("-flat");
+		loader.prepareToRead(reader, null);
+
+		long rows = 0;
+		StringBuilder line = new StringBuilder(1024);
+		/* The game fields are the same for every play of a game, and only formatted once */
+		StringBuilder game = new StringBuilder(512);
+		Object lastGame = null;
+		Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), "UTF-8"), 256 * 1024);
+		try {
+			if(format.equals(CSV)) {
+				for(int i=0;i<names.length;i++) {
+					if(i > 0)
+						line.append(',');
+					line.append(names[i]);
+				}
+				line.append('\n');
+				w.append(line);
+			}
+			Tuple t;
+			while((t = loader.getNext()) != null) {
+				if(t.get(RetrosheetLoader.GAME_ID) != lastGame || lastGame == null) {
+					lastGame = t.get(RetrosheetLoader.GAME_ID);
+					game.setLength(0);
+					format(t, 0, RetrosheetLoader.FLAT_PLAY_OFFSET, game);
+				}
+				line.setLength(0);
+				line.append(game);
+				format(t, RetrosheetLoader.FLAT_PLAY_OFFSET, names.length, line);
+				line.append(format.equals(CSV) ? "\n" : "}\n");
+				w.append(line);
+				rows++;
+			}
+		} finally {
+			w.close();
+			reader.close();
+		}
+		return rows;
+	}
+
+	/* Fields [from, to) of a row, with the separator before each but the first of the row */
+	void format(Tuple t, int from, int to, StringBuilder b) throws IOException {
+		if(format.equals(CSV))
+			csv(t, from, to, b);
+		else
+			json(t, from, to, b);
+	}
+
+	/* Nulls are left empty, and strings quoted only when they need it */
+	private void csv(Tuple t, int from, int to, StringBuilder b) throws IOException {
+		for(int i=from;i<to;i++) {
+			if(i > 0)
+				b.append(',');
+			Object o = t.get(i);
+			if(o == null)
+				continue;
+			String s = o.toString();
+			if(s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) {
+				b.append(s);
+			} else {
+				b.append('"');
+				for(int c=0;c<s.length();c++) {
+					if(s.charAt(c) == '"')
+						b.append('"');
+					b.append(s.charAt(c));
+				}
+				b.append('"');
+			}
+		}
+	}
+
+	/* Quoted by the type of the value, since some fields such as
+	   half_of_inning hold strings where the schema says int.  The closing
+	   brace is left to the caller. */
+	private void json(Tuple t, int from, int to, StringBuilder b) throws IOException {
+		for(int i=from;i<to;i++) {
+			b.append(i > 0 ? ',' : '{');
+			b.append('"').append(names[i]).append("\":");
+			Object o = t.get(i);
+			if(o == null) {
+				b.append("null");
+			} else if(!(o instanceof String)) {
+				b.append(o);
+			} else {
+				String s = o.toString();
+				b.append('"');
+				for(int c=0;c<s.length();c++) {
+					char ch = s.charAt(c);
+					if(ch == '"' || ch == '\\')
+						b.append('\\').append(ch);
+					else if(ch < ' ')
+						b.append(String.format("\\u%04x", (int)ch));
+					else
+						b.append(ch);
+				}
+				b.append('"');
+			}
+		}
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String format = CSV;
+		File output = null;
+		List<File> inputs = new ArrayList<File>();
+		for(int i=0;i<args.length;i++) {
+			if(args[i].equals("-threads") && i + 1 < args.length) {
+				threads = Integer.parseInt(args[++i]);
+			} else if(args[i].equals("-format") && i + 1 < args.length) {
+				format = args[++i];
+			} else if(output == null) {
+				output = new File(args[i]);
+			} else {
+				File f = new File(args[i]);
+				File[] list = f.isDirectory() ? f.listFiles() : new File[] { f };
+				if(list == null)
+					throw new FileNotFoundException(args[i]);
+				for(File in : list) {
+					/* Skip index sidecars and the like */
+					if(in.isFile() && !in.getName().startsWith(".") && !in.getName().startsWith("_"))
+						inputs.add(in);
+				}
+			}
+		}
+		if(output == null || inputs.isEmpty()) {
+			System.err.println("Usage: RetrosheetLocalRunner [-threads n] [-format csv|json] <output dir> <event file or dir> ...");
+			System.exit(1);
+		}
+		if(!output.isDirectory() && !output.mkdirs())
+			throw new IOException("Can't create " + output);
+
+		long bytes = 0;
+		for(File in : inputs)
+			bytes += in.length();
+		long start = System.currentTimeMillis();
+		long rows = new RetrosheetLocalRunner(format, threads).run(inputs, output);
+		double seconds = Math.max(System.currentTimeMillis() - start, 1) / 1000.0;
+		System.err.println(String.format("%d files, %d plays, %.1f MB in %.1f s on %d threads (%.1f MB/s)",
+			inputs.size(), rows, bytes / 1048576.0, seconds, threads, bytes / 1048576.0 / seconds));
+	}
+}
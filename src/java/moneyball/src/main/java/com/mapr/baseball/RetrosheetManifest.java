@@ -0,0 +1,274 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.security.*;
+import java.util.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+
+/* The event files a summary was built from, so that only seasons with new,
+   changed or removed files are parsed again.  The summary keeps one
+   directory per season:
+
+	<output>/_manifest		name, size, modification time and checksum of each file parsed
+	<output>/<year>/part-*		the plays of that season
+
+   An incremental run is
+
+	plan <input> <output>		list the seasons to parse, and save the new file list
+					as <output>/_manifest.pending
+	(parse each season into <output>/_staging/<year>, see summarize_season.pig)
+	commit <output>			swap each staged season in, and make the pending file
+					list the manifest
+
+   A file is only read for its checksum when its size or modification time
+   has changed, and a season is only parsed again when a file was added,
+   removed, or its size or checksum changed.  If a run dies before commit the
+   old manifest stays, and the same seasons are planned next time.  plan -all
+   lists every season, to rebuild the whole summary.
+
+   A summary written in one piece, as part files with no manifest, is
+   refused by plan: move it aside before the first incremental run.
+*/
+public class RetrosheetManifest {
+	public static final String MANIFEST = "_manifest";
+	public static final String PENDING = "_manifest.pending";
+	public static final String STAGING = "_staging";
+
+	/* One event file */
+	static class Entry {
+		final String name;
+		final long size;
+		final long modified;
+		final String checksum;
+
+		Entry(String name, long size, long modified, String checksum) {
+			this.name = name;
+			this.size = size;
+			this.modified = modified;
+			this.checksum = checksum;
+		}
+
+		int getSeason() {
+			return RetrosheetPartition.parse(name).getYear();
+		}
+
+		/* Same contents, whenever it was written */
+		boolean sameContents(Entry other) {
+			return other != null && size == other.size && checksum.equals(other.checksum);
+		}
+	}
+
+	/* By file name */
+	private final SortedMap<String, Entry> entries = new TreeMap<String, Entry>();
+
+	/* Read a manifest, or an empty one if there is none yet */
+	public static RetrosheetManifest read(FileSystem fs, Path file) throws IOException {
+		RetrosheetManifest manifest = new RetrosheetManifest();
+		if(!fs.exists(file))
+			return manifest;
+		BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(file), "UTF-8"));
+		try {
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] f = line.split("\t");
+				if(f.length != 4)
+					throw new IOException("Bad manifest line in " + file + ": " + line);
+				manifest.entries.put(f[0], new Entry(f[0], Long.parseLong(f[1]), Long.parseLong(f[2]), f[3]));
+			}
+		} finally {
+			in.close();
+		}
+		return manifest;
+	}
+
+	/* Written aside and renamed over the old one, so a reader never sees half a manifest */
+	public void write(FileSystem fs, Path file) throws IOException {
+		Path tmp = new Path(file.getParent(), file.getName() + ".tmp");
+		Writer out = new OutputStreamWriter(fs.create(tmp, true), "UTF-8");
+		try {
+			for(Entry e : entries.values())
+				out.write(e.name + "\t" + e.size + "\t" + e.modified + "\t" + e.checksum + "\n");
+		} finally {
+			out.close();
+		}
+		if(fs.exists(file) && !fs.delete(file, false))
+			throw new IOException("Can't replace " + file);
+		if(!fs.rename(tmp, file))
+			throw new IOException("Can't rename " + tmp + " to " + file);
+	}
+
+	/* The files of a directory that the season script reads, as they are now.
+	   Checksums are taken from previous for files whose size and modification
+	   time haven't changed. */
+	public static RetrosheetManifest scan(FileSystem fs, Path input, RetrosheetManifest previous) throws IOException {
+		RetrosheetManifest manifest = new RetrosheetManifest();
+		FileStatus[] files = fs.listStatus(input);
+		if(files == null)
+			throw new FileNotFoundException(input.toString());
+		for(FileStatus file : files) {
+			String name = file.getPath().getName();
+			if(file.isDir() || !isSeasonFile(name))
+				continue;
+			Entry old = previous.entries.get(name);
+			String checksum;
+			if(old != null && old.size == file.getLen() && old.modified == file.getModificationTime())
+				checksum = old.checksum;
+			else
+				checksum = checksum(fs, file.getPath());
+			manifest.entries.put(name, new Entry(name, file.getLen(), file.getModificationTime(), checksum));
+		}
+		return manifest;
+	}
+
+	/* The files summarize_season.pig reads, $season*.EV{N,A}: the American
+	   and National League event files, but not the .EVE files or compressed ones */
+	static boolean isSeasonFile(String name) {
+		return (name.endsWith(".EVA") || name.endsWith(".EVN")) && RetrosheetPartition.parse(name) != null;
+	}
+
+	/* The file system's own checksum where it keeps one, otherwise an MD5 of the file */
+	static String checksum(FileSystem fs, Path file) throws IOException {
+		FileChecksum sum = fs.getFileChecksum(file);
+		if(sum != null)
+			return sum.getAlgorithmName() + ":" + hex(sum.getBytes());
+		MessageDigest md5;
+		try {
+			md5 = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException("No MD5", e);
+		}
+		byte[] buffer = new byte[64 * 1024];
+		InputStream in = fs.open(file);
+		try {
+			int n;
+			while((n = in.read(buffer)) > 0)
+				md5.update(buffer, 0, n);
+		} finally {
+			in.close();
+		}
+		return "MD5:" + hex(md5.digest());
+	}
+
+	private static String hex(byte[] b) {
+		StringBuilder s = new StringBuilder(b.length * 2);
+		for(byte x : b)
+			s.append(Character.forDigit((x >> 4) & 0xf, 16)).append(Character.forDigit(x & 0xf, 16));
+		return s.toString();
+	}
+
+	/* Seasons with a file added, removed or changed since previous */
+	public SortedSet<Integer> changedSeasons(RetrosheetManifest previous) {
+		SortedSet<Integer> seasons = new TreeSet<Integer>();
+		for(Entry e : entries.values()) {
+			if(!e.sameContents(previous.entries.get(e.name)))
+				seasons.add(e.getSeason());
+		}
+		for(Entry e : previous.entries.values()) {
+			if(!entries.containsKey(e.name))
+				seasons.add(e.getSeason());
+		}
+		return seasons;
+	}
+
+	/* Seasons that have files */
+	public SortedSet<Integer> getSeasons() {
+		SortedSet<Integer> seasons = new TreeSet<Integer>();
+		for(Entry e : entries.values())
+			seasons.add(e.getSeason());
+		return seasons;
+	}
+
+	/* Save the input as it is now as the pending manifest, and return the
+	   seasons that have to be parsed into the staging directory, or every
+	   season with all.  Seasons whose files were all removed aren't returned;
+	   commit drops them. */
+	public static SortedSet<Integer> plan(FileSystem fs, Path input, Path output, boolean all) throws IOException {
+		Path manifest = new Path(output, MANIFEST);
+		if(!fs.exists(manifest))
+			checkNotFlat(fs, output);
+		RetrosheetManifest done = read(fs, manifest);
+		RetrosheetManifest now = scan(fs, input, done);
+		fs.mkdirs(output);
+		now.write(fs, new Path(output, PENDING));
+		SortedSet<Integer> seasons = all ? now.getSeasons() : now.changedSeasons(done);
+		seasons.retainAll(now.getSeasons());
+		return seasons;
+	}
+
+	public static SortedSet<Integer> plan(FileSystem fs, Path input, Path output) throws IOException {
+		return plan(fs, input, output, false);
+	}
+
+	/* Season directories can't be added next to the part files of a summary
+	   written in one piece, or every season would be there twice */
+	private static void checkNotFlat(FileSystem fs, Path output) throws IOException {
+		FileStatus[] files = fs.listStatus(output);
+		if(files == null)
+			return;
+		for(FileStatus f : files) {
+			if(!f.isDir() && f.getPath().getName().startsWith("part-"))
+				throw new IOException(output + " holds a summary written in one piece, with no " + MANIFEST + "; move it aside first");
+		}
+	}
+
+	/* Replace the output of each planned season with its staged output, and
+	   return the seasons replaced or dropped */
+	public static SortedSet<Integer> commit(FileSystem fs, Path output) throws IOException {
+		Path pendingFile = new Path(output, PENDING);
+		if(!fs.exists(pendingFile))
+			throw new FileNotFoundException("Nothing planned in " + output);
+		RetrosheetManifest done = read(fs, new Path(output, MANIFEST));
+		RetrosheetManifest pending = read(fs, pendingFile);
+		SortedSet<Integer> seasons = pending.changedSeasons(done);
+		SortedSet<Integer> present = pending.getSeasons();
+		Path staging = new Path(output, STAGING);
+		/* Unchanged seasons staged too, by plan -all, are swapped in as well */
+		for(Integer season : present) {
+			if(fs.exists(new Path(staging, season.toString())))
+				seasons.add(season);
+		}
+
+		/* Check everything is staged before replacing anything */
+		for(Integer season : seasons) {
+			if(present.contains(season) && !fs.exists(new Path(staging, season.toString())))
+				throw new FileNotFoundException("Season " + season + " was not staged in " + staging);
+		}
+		for(Integer season : seasons) {
+			Path current = new Path(output, season.toString());
+			Path old = new Path(staging, season + ".old");
+			if(fs.exists(current) && !fs.rename(current, old))
+				throw new IOException("Can't move " + current + " aside");
+			if(present.contains(season) && !fs.rename(new Path(staging, season.toString()), current))
+				throw new IOException("Can't move season " + season + " into " + output);
+			fs.delete(old, true);
+		}
+		pending.write(fs, new Path(output, MANIFEST));
+		fs.delete(pendingFile, false);
+		fs.delete(staging, true);
+		return seasons;
+	}
+
+	public static void main(String[] args) throws IOException {
+		Configuration conf = new Configuration();
+		boolean all = args.length == 4 && args[0].equals("plan") && args[1].equals("-all");
+		if(all)
+			args = new String[] { args[0], args[2], args[3] };
+		if(args.length == 3 && args[0].equals("plan")) {
+			Path input = new Path(args[1]);
+			SortedSet<Integer> seasons = plan(input.getFileSystem(conf), input, new Path(args[2]), all);
+			StringBuilder line = new StringBuilder();
+			for(Integer season : seasons)
+				line.append(line.length() > 0 ? " " : "").append(season);
+			System.out.println(line);
+		} else if(args.length == 2 && args[0].equals("commit")) {
+			Path output = new Path(args[1]);
+			SortedSet<Integer> seasons = commit(output.getFileSystem(conf), output);
+			System.err.println("Replaced seasons " + seasons + " in " + output);
+		} else {
+			System.err.println("Usage: RetrosheetManifest plan [-all] <input dir> <output dir>");
+			System.err.println("       RetrosheetManifest commit <output dir>");
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package com.mapr.baseball;
+
+import java.util.regex.*;
+import org.apache.hadoop.fs.*;
+
+/* Partition values encoded in a Retrosheet event file name.
+
+   2010BOS.EVA holds the 2010 home games of BOS, an American League club,
+   so its year is 2010, its team "BOS" and its league "AL".  .EVN files are
+   National League, and other files such as 2010WS.EVE have no league.
+   A compression suffix, as in 2010BOS.EVA.gz, is ignored.
+*/
+public class RetrosheetPartition {
+	public static final String YEAR = "year";
+	public static final String TEAM = "team";
+	public static final String LEAGUE = "league";
+	public static final String[] KEYS = { YEAR, TEAM, LEAGUE };
+
+	private static final Pattern NAME = Pattern.compile("(\\d{4})([A-Za-z0-9]+)\\.EV([A-Z])(\\.[A-Za-z0-9]+)?");
+
+	private final Integer year;
+	private final String team;
+	private final String league;
+
+	public RetrosheetPartition(Integer year, String team, String league) {
+		this.year = year;
+		this.team = team;
+		this.league = league;
+	}
+
+	/* The partition of an event file, or null if the name isn't one */
+	public static RetrosheetPartition parse(String name) {
+		Matcher m = NAME.matcher(name);
+		if(!m.matches())
+			return null;
+		String league = null;
+		if(m.group(3).equals("A"))
+			league = "AL";
+		else if(m.group(3).equals("N"))
+			league = "NL";
+		return new RetrosheetPartition(Integer.valueOf(m.group(1)), m.group(2), league);
+	}
+
+	public static RetrosheetPartition parse(Path file) {
+		return parse(file.getName());
+	}
+
+	public Integer getYear() {
+		return year;
+	}
+
+	public String getTeam() {
+		return team;
+	}
+
+	public String getLeague() {
+		return league;
+	}
+
+	/* Value of a partition key, or null if the key is unknown or has no value */
+	public Object get(String key) {
+		if(YEAR.equals(key))
+			return year;
+		if(TEAM.equals(key))
+			return team;
+		if(LEAGUE.equals(key))
+			return league;
+		return null;
+	}
+}
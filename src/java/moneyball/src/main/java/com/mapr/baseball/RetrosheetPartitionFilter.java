@@ -0,0 +1,192 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.regex.Pattern;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+import org.apache.pig.Expression;
+import org.apache.pig.impl.util.ObjectSerializer;
+
+/* A partition filter pushed down by Pig, evaluated against the partition
+   of each event file before any file is opened.
+
+   Pig drops the filter from the plan once it has been pushed down, and
+   gives the loader no way to hand it back, so every operator Pig pushes is
+   evaluated exactly as Pig would: comparisons, arithmetic, matches, is null,
+   and, or and not, with a missing value (a file with no league) as null.
+   Anything else fails the query with an IOException rather than being
+   matched loosely.
+*/
+public class RetrosheetPartitionFilter implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	/* Serialized filter in the job configuration, read by Paths */
+	public static final String FILTER = "retrosheet.partition.filter";
+
+	private final Expression.OpType op;
+	private final String column;
+	private final Object value;
+	private final RetrosheetPartitionFilter lhs, rhs;
+
+	private RetrosheetPartitionFilter(Expression.OpType op, String column, Object value, RetrosheetPartitionFilter lhs, RetrosheetPartitionFilter rhs) {
+		this.op = op;
+		this.column = column;
+		this.value = value;
+		this.lhs = lhs;
+		this.rhs = rhs;
+	}
+
+	public static RetrosheetPartitionFilter fromExpression(Expression e) throws IOException {
+		switch(e.getOpType()) {
+		case TERM_COL:
+			String name = ((Expression.Column)e).getName();
+			boolean known = false;
+			for(String key : RetrosheetPartition.KEYS)
+				known |= key.equals(name);
+			if(!known)
+				throw new IOException("Not a partition key: " + name);
+			return new RetrosheetPartitionFilter(e.getOpType(), name, null, null, null);
+		case TERM_CONST:
+			return new RetrosheetPartitionFilter(e.getOpType(), null, ((Expression.Const)e).getValue(), null, null);
+		case OP_NOT:
+		case OP_NULL:
+			Expression.UnaryExpression u = (Expression.UnaryExpression)e;
+			return new RetrosheetPartitionFilter(e.getOpType(), null, null, fromExpression(u.getExpression()), null);
+		case OP_AND:
+		case OP_OR:
+		case OP_EQ:
+		case OP_NE:
+		case OP_GT:
+		case OP_GE:
+		case OP_LT:
+		case OP_LE:
+		case OP_MATCH:
+		case OP_PLUS:
+		case OP_MINUS:
+		case OP_TIMES:
+		case OP_DIV:
+		case OP_MOD:
+			Expression.BinaryExpression b = (Expression.BinaryExpression)e;
+			RetrosheetPartitionFilter lhs = fromExpression(b.getLhs());
+			RetrosheetPartitionFilter rhs = fromExpression(b.getRhs());
+			/* The pattern is compiled here, so a bad one fails the query up front */
+			Object pattern = null;
+			if(e.getOpType() == Expression.OpType.OP_MATCH && rhs.op == Expression.OpType.TERM_CONST && rhs.value != null)
+				pattern = Pattern.compile(rhs.value.toString());
+			return new RetrosheetPartitionFilter(e.getOpType(), null, pattern, lhs, rhs);
+		default:
+			throw new IOException("Partition filter operator " + e.getOpType() + " is not supported: " + e);
+		}
+	}
+
+	public boolean matches(RetrosheetPartition partition) {
+		return Boolean.TRUE.equals(evaluate(partition));
+	}
+
+	/* The value of the expression, null when it is null in Pig */
+	private Object evaluate(RetrosheetPartition p) {
+		switch(op) {
+		case TERM_COL:
+			return p.get(column);
+		case TERM_CONST:
+			return value;
+		case OP_NULL:
+			return lhs.evaluate(p) == null;
+		case OP_NOT: {
+			Boolean b = bool(lhs.evaluate(p));
+			return b == null ? null : (Object)!b.booleanValue();
+		}
+		case OP_AND: {
+			/* false and null is false, true and null is null */
+			Boolean l = bool(lhs.evaluate(p)), r = bool(rhs.evaluate(p));
+			if(Boolean.FALSE.equals(l) || Boolean.FALSE.equals(r))
+				return false;
+			return l == null || r == null ? null : (Object)true;
+		}
+		case OP_OR: {
+			Boolean l = bool(lhs.evaluate(p)), r = bool(rhs.evaluate(p));
+			if(Boolean.TRUE.equals(l) || Boolean.TRUE.equals(r))
+				return true;
+			return l == null || r == null ? null : (Object)false;
+		}
+		}
+
+		Object l = lhs.evaluate(p);
+		Object r = rhs.evaluate(p);
+		if(l == null || r == null)
+			return null;
+		switch(op) {
+		case OP_MATCH:
+			/* The whole value has to match, as in Pig */
+			Pattern pattern = value != null ? (Pattern)value : Pattern.compile(r.toString());
+			return pattern.matcher(l.toString()).matches();
+		case OP_EQ: return compare(l, r) == 0;
+		case OP_NE: return compare(l, r) != 0;
+		case OP_GT: return compare(l, r) > 0;
+		case OP_GE: return compare(l, r) >= 0;
+		case OP_LT: return compare(l, r) < 0;
+		case OP_LE: return compare(l, r) <= 0;
+		}
+
+		/* Arithmetic, which only applies to the year */
+		if(!(l instanceof Number && r instanceof Number))
+			return null;
+		long a = ((Number)l).longValue(), b = ((Number)r).longValue();
+		switch(op) {
+		case OP_PLUS: return a + b;
+		case OP_MINUS: return a - b;
+		case OP_TIMES: return a * b;
+		case OP_DIV: return b == 0 ? null : (Object)(a / b);
+		case OP_MOD: return b == 0 ? null : (Object)(a % b);
+		}
+		return null;
+	}
+
+	private static Boolean bool(Object o) {
+		return o instanceof Boolean ? (Boolean)o : null;
+	}
+
+	private static int compare(Object l, Object r) {
+		if(l instanceof Number && r instanceof Number) {
+			long a = ((Number)l).longValue(), b = ((Number)r).longValue();
+			return a < b ? -1 : (a == b ? 0 : 1);
+		}
+		return l.toString().compareTo(r.toString());
+	}
+
+	public String serialize() throws IOException {
+		return ObjectSerializer.serialize(this);
+	}
+
+	public static RetrosheetPartitionFilter deserialize(String s) throws IOException {
+		return (RetrosheetPartitionFilter)ObjectSerializer.deserialize(s);
+	}
+
+	/* Input path filter for FileInputFormat.  Event files whose partition
+	   fails the filter are dropped; anything else, such as directories, is kept. */
+	public static class Paths implements PathFilter, Configurable {
+		private Configuration conf;
+		private RetrosheetPartitionFilter filter;
+
+		public void setConf(Configuration conf) {
+			this.conf = conf;
+			String s = conf.get(FILTER);
+			try {
+				filter = s == null ? null : deserialize(s);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("Bad " + FILTER, e);
+			}
+		}
+
+		public Configuration getConf() {
+			return conf;
+		}
+
+		public boolean accept(Path path) {
+			if(filter == null)
+				return true;
+			RetrosheetPartition partition = RetrosheetPartition.parse(path);
+			return partition == null || filter.matches(partition);
+		}
+	}
+}
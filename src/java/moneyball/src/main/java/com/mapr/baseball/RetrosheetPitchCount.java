@@ -0,0 +1,20 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.pig.data.*;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+
+/* Number of pitches thrown in a play, from its packed pitches:
+
+	RetrosheetPitchCount(pitches)
+*/
+public class RetrosheetPitchCount extends RetrosheetPitchFunc<Integer> {
+	public Integer exec(Tuple input) throws IOException {
+		byte[] pitches = pitches(input);
+		return pitches == null ? null : RetrosheetPitches.pitchCount(pitches);
+	}
+
+	public Schema outputSchema(Schema input) {
+		return new Schema(new Schema.FieldSchema("pitch_count", DataType.INTEGER));
+	}
+}
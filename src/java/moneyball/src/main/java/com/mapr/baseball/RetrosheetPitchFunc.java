@@ -0,0 +1,21 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.pig.*;
+import org.apache.pig.data.*;
+
+/* Base of the UDFs over the packed pitches field of RetrosheetLoader('-pitches').
+   They read the packed bytes in place and never build a tuple per pitch. */
+public abstract class RetrosheetPitchFunc<T> extends EvalFunc<T> {
+	/* The packed pitches, the first argument, or null if there are none */
+	protected static byte[] pitches(Tuple input) throws IOException {
+		if(input == null || input.size() == 0)
+			return null;
+		Object o = input.get(0);
+		if(o == null)
+			return null;
+		if(!(o instanceof DataByteArray))
+			throw new IOException("Expected packed pitches, got " + DataType.findTypeName(o));
+		return ((DataByteArray)o).get();
+	}
+}
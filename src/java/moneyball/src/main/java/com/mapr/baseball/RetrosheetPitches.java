@@ -0,0 +1,168 @@
+package com.mapr.baseball;
+
+/* Packs the pitch sequence of a play line into one byte per pitch.
+
+   The low five bits of each byte are the pitch, one of the TYPE_ codes
+   below, and the top three are modifiers from the characters that came
+   before it in the sequence: '*' (blocked by the catcher), '>' (runner
+   going) and any pickoff throw or play not involving the batter ('1', '2',
+   '3', '+', '.').  So "CB*B>X" packs into four bytes, and the UDFs that
+   work on packed pitches never build a tuple per pitch.
+*/
+public class RetrosheetPitches {
+	public static final int TYPE_UNKNOWN = 0;
+	public static final int TYPE_BALL = 1;
+	public static final int TYPE_CALLED_STRIKE = 2;
+	public static final int TYPE_FOUL = 3;
+	public static final int TYPE_HIT_BY_PITCH = 4;
+	public static final int TYPE_INTENTIONAL_BALL = 5;
+	public static final int TYPE_STRIKE = 6;
+	public static final int TYPE_FOUL_BUNT = 7;
+	public static final int TYPE_MISSED_BUNT = 8;
+	public static final int TYPE_NO_PITCH = 9;
+	public static final int TYPE_FOUL_TIP_BUNT = 10;
+	public static final int TYPE_PITCHOUT = 11;
+	public static final int TYPE_SWINGING_PITCHOUT = 12;
+	public static final int TYPE_FOUL_PITCHOUT = 13;
+	public static final int TYPE_SWINGING_STRIKE = 14;
+	public static final int TYPE_FOUL_TIP = 15;
+	public static final int TYPE_UNKNOWN_PITCH = 16;
+	public static final int TYPE_AUTOMATIC_BALL = 17;
+	public static final int TYPE_IN_PLAY = 18;
+	public static final int TYPE_IN_PLAY_PITCHOUT = 19;
+
+	public static final int TYPE_MASK = 0x1f;
+	public static final int BLOCKED = 0x20;
+	public static final int RUNNER_GOING = 0x40;
+	public static final int THROW_BEFORE = 0x80;
+
+	/* Retrosheet letter of each type */
+	private static final String LETTERS = "?BCFHIKLMNOPQRSTUVXY";
+
+	private static final String[] NAMES = {
+		"Unknown", "Ball", "Called strike", "Foul", "Hit by pitch", "Intentional ball", "Strike",
+		"Foul bunt", "Missed bunt", "No pitch", "Foul tip bunt", "Pitchout", "Swinging pitchout",
+		"Foul pitchout", "Swinging strike", "Foul tip", "Unknown pitch", "Automatic ball", "In play",
+		"In play pitchout"
+	};
+
+	/* Type of each pitch letter, or -1 for a modifier or anything else */
+	private static final int[] TYPES = new int[128];
+	static {
+		java.util.Arrays.fill(TYPES, -1);
+		for(int i=1;i<LETTERS.length();i++)
+			TYPES[LETTERS.charAt(i)] = i;
+	}
+
+	/* Pack the pitch sequence in b[off, off+len).  Anything that is neither a
+	   pitch letter nor a known modifier is skipped. */
+	public static byte[] encode(byte[] b, int off, int len) {
+		int pitches = 0;
+		for(int i=off;i<off+len;i++)
+			if(b[i] >= 0 && TYPES[b[i]] >= 0)
+				pitches++;
+		byte[] packed = new byte[pitches];
+		int n = 0, modifiers = 0;
+		for(int i=off;i<off+len;i++) {
+			byte c = b[i];
+			int type = c >= 0 ? TYPES[c] : -1;
+			if(type >= 0) {
+				packed[n++] = (byte)(type | modifiers);
+				modifiers = 0;
+			} else if(c == '*') {
+				modifiers |= BLOCKED;
+			} else if(c == '>') {
+				modifiers |= RUNNER_GOING;
+			} else if(c == '1' || c == '2' || c == '3' || c == '+' || c == '.') {
+				modifiers |= THROW_BEFORE;
+			}
+		}
+		return packed;
+	}
+
+	public static int type(byte pitch) {
+		return pitch & TYPE_MASK;
+	}
+
+	public static boolean hasModifier(byte pitch, int modifier) {
+		return (pitch & modifier) != 0;
+	}
+
+	/* Name of a type, such as "Called strike" */
+	public static String typeName(int type) {
+		return type >= 0 && type < NAMES.length ? NAMES[type] : NAMES[TYPE_UNKNOWN];
+	}
+
+	/* The packed sequence in Retrosheet's letters, for checking.  Packing loses
+	   which throws came before a pitch and how many, so each shows as one '.',
+	   and only a sequence without throws comes back as Retrosheet wrote it. */
+	public static String decode(byte[] packed) {
+		StringBuilder b = new StringBuilder(packed.length);
+		for(byte p : packed) {
+			if(hasModifier(p, THROW_BEFORE))
+				b.append('.');
+			if(hasModifier(p, BLOCKED))
+				b.append('*');
+			if(hasModifier(p, RUNNER_GOING))
+				b.append('>');
+			int type = type(p);
+			b.append(type < LETTERS.length() ? LETTERS.charAt(type) : '?');
+		}
+		return b.toString();
+	}
+
+	/* Pitches actually thrown to the batter, leaving out no-pitch entries */
+	public static int pitchCount(byte[] packed) {
+		int n = 0;
+		for(byte p : packed)
+			if(type(p) != TYPE_NO_PITCH)
+				n++;
+		return n;
+	}
+
+	public static boolean isBall(int type) {
+		return type == TYPE_BALL || type == TYPE_INTENTIONAL_BALL || type == TYPE_PITCHOUT || type == TYPE_AUTOMATIC_BALL;
+	}
+
+	/* Strikes that count whatever the count */
+	public static boolean isStrike(int type) {
+		return type == TYPE_CALLED_STRIKE || type == TYPE_STRIKE || type == TYPE_SWINGING_STRIKE
+			|| type == TYPE_SWINGING_PITCHOUT || type == TYPE_MISSED_BUNT || type == TYPE_FOUL_TIP
+			|| type == TYPE_FOUL_BUNT || type == TYPE_FOUL_TIP_BUNT;
+	}
+
+	/* Fouls only count as strikes before two strikes */
+	public static boolean isFoul(int type) {
+		return type == TYPE_FOUL || type == TYPE_FOUL_PITCHOUT;
+	}
+
+	/* Index in the packed bytes of the given pitch thrown (0 for the first),
+	   skipping no-pitch entries, or -1 if there weren't that many */
+	public static int pitchIndex(byte[] packed, int pitch) {
+		int n = 0;
+		for(int i=0;i<packed.length;i++) {
+			if(type(packed[i]) == TYPE_NO_PITCH)
+				continue;
+			if(n++ == pitch)
+				return i;
+		}
+		return -1;
+	}
+
+	/* The count before the given pitch thrown (0 for the first) as balls * 10
+	   + strikes, the way the play line writes it, or -1 if there weren't that many */
+	public static int countBefore(byte[] packed, int pitch) {
+		int end = pitchIndex(packed, pitch);
+		if(end < 0)
+			return -1;
+		int balls = 0, strikes = 0;
+		for(int i=0;i<end;i++) {
+			int type = type(packed[i]);
+			if(isBall(type) && balls < 3)
+				balls++;
+			else if((isStrike(type) || isFoul(type)) && strikes < 2)
+				strikes++;
+		}
+		return balls * 10 + strikes;
+	}
+}
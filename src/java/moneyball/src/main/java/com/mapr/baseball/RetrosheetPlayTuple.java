@@ -0,0 +1,144 @@
+package com.mapr.baseball;
+
+import org.apache.pig.backend.executionengine.ExecException;
+import org.apache.pig.data.DataByteArray;
+
+/* A play record of RetrosheetLoader: a tuple of the game_events bag, or in
+   flat mode a whole row, whose game fields are read from the game's tuple.
+
+   The play is kept as it was when the engine replayed it: ints, players as
+   RetrosheetPlayerDictionary codes, and the fielders and pitches as spans
+   of the game's bytes.  Fields after the play fields, the names and the
+   pitches, are set when the loader was asked for them.
+*/
+class RetrosheetPlayTuple extends RetrosheetLazyTuple {
+	private static final long serialVersionUID = 1L;
+	static final int PLAY_FIELDS = 39;
+	/* values[PLAY_COUNT] when the count isn't known */
+	static final int UNKNOWN_COUNT = -1;
+
+	private final RetrosheetPlayerDictionary players;
+	/* The game's bytes, which the spans are of */
+	private final byte[] bytes;
+	/* The game, in flat mode */
+	private final RetrosheetGameTuple game;
+	private final boolean names;
+	private final boolean pitches;
+
+	/* Each play field by its PLAY_ index: players as codes, or -1 for nobody,
+	   the half as 1 for the top, the result as its RetrosheetEvent type and
+	   the trajectory as its letter */
+	final int[] values = new int[PLAY_FIELDS];
+	/* Whether the event was parsed.  If not, the fields that come from it are null. */
+	boolean parsed;
+	/* Spans of the game's bytes */
+	int fielderStart, fielderLength;
+	int pitchesStart, pitchesLength;
+	String batterName, pitcherName;
+
+	RetrosheetPlayTuple(RetrosheetPlayerDictionary players, byte[] bytes, RetrosheetGameTuple game, boolean names, boolean pitches) {
+		this.players = players;
+		this.bytes = bytes;
+		this.game = game;
+		this.names = names;
+		this.pitches = pitches;
+	}
+
+	/* Whether this is a game_events play of the game in bytes, as the loader made it */
+	boolean isPlayOf(byte[] bytes) {
+		return game == null && this.bytes == bytes && isPristine();
+	}
+
+	protected int fieldCount() {
+		int extras = (names ? 2 : 0) + (pitches ? 1 : 0);
+		return (game == null ? PLAY_FIELDS : RetrosheetLoader.FLAT_FIELDS) + extras;
+	}
+
+	protected Object decode(int field) throws ExecException {
+		if(game == null)
+			return field < PLAY_FIELDS ? play(field) : extra(field - PLAY_FIELDS);
+		if(field < RetrosheetLoader.FLAT_PLAY_OFFSET)
+			return game.decode(field);
+		if(field < RetrosheetLoader.FLAT_PARTITION_OFFSET)
+			return play(field - RetrosheetLoader.FLAT_PLAY_OFFSET);
+		if(field < RetrosheetLoader.FLAT_FIELDS)
+			return game.decode(RetrosheetLoader.GAME_PARTITION_YEAR + field - RetrosheetLoader.FLAT_PARTITION_OFFSET);
+		return extra(field - RetrosheetLoader.FLAT_FIELDS);
+	}
+
+	/* How each play field is decoded */
+	private static final int INT = 0;
+	private static final int HALF = 1;
+	private static final int PLAYER = 2;
+	private static final int COUNT = 3;
+	private static final int EVENT_INT = 4;
+	private static final int RESULT = 5;
+	private static final int FIELDER = 6;
+	private static final int TRAJECTORY = 7;
+	private static final int[] KINDS = new int[PLAY_FIELDS];
+	static {
+		KINDS[RetrosheetLoader.PLAY_INNING_HALF] = HALF;
+		int[] playerFields = {
+			RetrosheetLoader.PLAY_PITCHER, RetrosheetLoader.PLAY_CATCHER, RetrosheetLoader.PLAY_FIRST_BASEMAN,
+			RetrosheetLoader.PLAY_SECOND_BASEMAN, RetrosheetLoader.PLAY_THIRD_BASEMAN, RetrosheetLoader.PLAY_SHORTSTOP,
+			RetrosheetLoader.PLAY_LEFTFIELDER, RetrosheetLoader.PLAY_CENTERFIELDER, RetrosheetLoader.PLAY_RIGHTFIELDER,
+			RetrosheetLoader.PLAY_DESIGNATED_HITTER, RetrosheetLoader.PLAY_RUNNER_ON_FIRST,
+			RetrosheetLoader.PLAY_RUNNER_ON_SECOND, RetrosheetLoader.PLAY_RUNNER_ON_THIRD,
+			RetrosheetLoader.PLAY_CURRENT_BATTER
+		};
+		for(int f : playerFields)
+			KINDS[f] = PLAYER;
+		KINDS[RetrosheetLoader.PLAY_COUNT] = COUNT;
+		KINDS[RetrosheetLoader.PLAY_BATTER_RBIS] = EVENT_INT;
+		KINDS[RetrosheetLoader.PLAY_RBIS_ON_PLAY] = EVENT_INT;
+		KINDS[RetrosheetLoader.PLAY_RESULT] = RESULT;
+		KINDS[RetrosheetLoader.PLAY_FIELDER] = FIELDER;
+		KINDS[RetrosheetLoader.PLAY_TRAJECTORY] = TRAJECTORY;
+	}
+
+	private Object play(int field) throws ExecException {
+		int v = values[field];
+		switch(KINDS[field]) {
+		case HALF:
+			return v == 1 ? "top" : "bottom";
+		case PLAYER:
+			return v < 0 ? "" : players.id(v);
+		case COUNT:
+			return v == UNKNOWN_COUNT ? "Unknown" : RetrosheetLoader.countString(v);
+		case EVENT_INT:
+			return parsed ? Integer.valueOf(v) : null;
+		case RESULT:
+			return parsed ? RetrosheetEvent.typeName(v) : null;
+		case FIELDER:
+			if(!parsed)
+				return null;
+			return fielderLength == 0 ? "" : RetrosheetGameTuple.string(bytes, fielderStart, fielderLength);
+		case TRAJECTORY:
+			return parsed ? trajectory(v) : null;
+		default:
+			return Integer.valueOf(v);
+		}
+	}
+
+	private Object extra(int extra) throws ExecException {
+		if(names && extra < 2)
+			return extra == 0 ? batterName : pitcherName;
+		return new DataByteArray(RetrosheetPitches.encode(bytes, pitchesStart, pitchesLength));
+	}
+
+	private static String trajectory(int t) {
+		switch(t) {
+		case 'L': return "Line drive";
+		case 'F': return "Fly ball";
+		case 'G': return "Grounder";
+		case 'P': return "Pop fly";
+		case 'B': return "Bunt";
+		default: return "0";
+		}
+	}
+
+	protected long recordSize() {
+		/* The game's bytes are counted by the game */
+		return 16 + 4 * PLAY_FIELDS + 32 + memorySize(batterName) + memorySize(pitcherName);
+	}
+}
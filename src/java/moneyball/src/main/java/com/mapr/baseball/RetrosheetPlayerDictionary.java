@@ -0,0 +1,120 @@
+package com.mapr.baseball;
+
+import org.apache.hadoop.io.*;
+
+/* Interns player ids such as "pedrd001" to small int codes.
+
+   One dictionary lives for the whole task, so each player's id String is
+   decoded once, however many games and plays they appear in.  Lookups
+   hash the id bytes in place and allocate nothing.
+*/
+public class RetrosheetPlayerDictionary {
+	private static final int EMPTY = -1;
+
+	/* Open addressed table of codes, keyed by the id bytes */
+	private int[] table = new int[1024];
+	private byte[][] keys = new byte[512][];
+	private int[] hashes = new int[512];
+	private String[] ids = new String[512];
+	private int size = 0;
+
+	public RetrosheetPlayerDictionary() {
+		java.util.Arrays.fill(table, EMPTY);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/* Code of the id in b[off, off+len), adding it if it is new */
+	public int intern(byte[] b, int off, int len) {
+		int h = hash(b, off, len);
+		int slot = find(b, off, len, h);
+		if(table[slot] != EMPTY)
+			return table[slot];
+
+		if(size == keys.length)
+			growEntries();
+		int code = size++;
+		byte[] key = new byte[len];
+		System.arraycopy(b, off, key, 0, len);
+		keys[code] = key;
+		hashes[code] = h;
+		table[slot] = code;
+		if(size * 2 > table.length)
+			rehash();
+		return code;
+	}
+
+	/* Code of the id, or -1 if it has never been interned */
+	public int lookup(byte[] b, int off, int len) {
+		return table[find(b, off, len, hash(b, off, len))];
+	}
+
+	/* The id for a code, decoded the first time it is asked for */
+	public String id(int code) {
+		String id = ids[code];
+		if(id == null) {
+			try {
+				id = Text.decode(keys[code]);
+			} catch (java.nio.charset.CharacterCodingException e) {
+				throw new IllegalArgumentException("Malformed player id", e);
+			}
+			ids[code] = id;
+		}
+		return id;
+	}
+
+	private int find(byte[] b, int off, int len, int h) {
+		int mask = table.length - 1;
+		int slot = h & mask;
+		while(table[slot] != EMPTY) {
+			int code = table[slot];
+			if(hashes[code] == h && equals(keys[code], b, off, len))
+				return slot;
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static boolean equals(byte[] key, byte[] b, int off, int len) {
+		if(key.length != len)
+			return false;
+		for(int i=0;i<len;i++)
+			if(key[i] != b[off + i])
+				return false;
+		return true;
+	}
+
+	private static int hash(byte[] b, int off, int len) {
+		int h = 0;
+		for(int i=0;i<len;i++)
+			h = 31 * h + b[off + i];
+		return h ^ (h >>> 16);
+	}
+
+	private void growEntries() {
+		int n = keys.length * 2;
+		byte[][] k = new byte[n][];
+		System.arraycopy(keys, 0, k, 0, size);
+		keys = k;
+		int[] h = new int[n];
+		System.arraycopy(hashes, 0, h, 0, size);
+		hashes = h;
+		String[] s = new String[n];
+		System.arraycopy(ids, 0, s, 0, size);
+		ids = s;
+	}
+
+	private void rehash() {
+		table = new int[table.length * 2];
+		java.util.Arrays.fill(table, EMPTY);
+		int mask = table.length - 1;
+		for(int code=0;code<size;code++) {
+			int slot = hashes[code] & mask;
+			while(table[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			table[slot] = code;
+		}
+	}
+}
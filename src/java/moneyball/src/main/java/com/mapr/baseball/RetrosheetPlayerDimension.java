@@ -0,0 +1,222 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.fs.*;
+
+/* Every player in a set of Retrosheet roster files, by id, in one small
+   binary file that a task can load whole.
+
+   Roster files such as BOS2010.ROS have one line per player:
+
+	pedrd001,Pedroia,Dustin,R,R,BOS,2B
+
+   A player on many rosters is kept once, with the names from the latest
+   season.  The file holds the players sorted by id, each as the id, last
+   name, first name, bats and throws, and is built with
+
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetPlayerDimension <output> <roster file or dir> ...
+
+   RetrosheetLoader('-names <output>') ships it to its tasks through the
+   distributed cache, and looks the batter and pitcher names up in it.
+*/
+public class RetrosheetPlayerDimension {
+	private static final int VERSION = 1;
+
+	/* Sorted by id */
+	private final String[] ids;
+	private final String[] lastNames;
+	private final String[] firstNames;
+	private final byte[] bats;
+	private final byte[] throwsHand;
+
+	private RetrosheetPlayerDimension(String[] ids, String[] lastNames, String[] firstNames, byte[] bats, byte[] throwsHand) {
+		this.ids = ids;
+		this.lastNames = lastNames;
+		this.firstNames = firstNames;
+		this.bats = bats;
+		this.throwsHand = throwsHand;
+	}
+
+	public int size() {
+		return ids.length;
+	}
+
+	/* Index of a player, or -1 if the id isn't in any roster */
+	public int find(String id) {
+		int i = Arrays.binarySearch(ids, id);
+		return i < 0 ? -1 : i;
+	}
+
+	public String getId(int player) {
+		return ids[player];
+	}
+
+	public String getLastName(int player) {
+		return lastNames[player];
+	}
+
+	public String getFirstName(int player) {
+		return firstNames[player];
+	}
+
+	/* "First Last", or null if the id isn't in any roster */
+	public String name(String id) {
+		int i = find(id);
+		if(i < 0)
+			return null;
+		if(firstNames[i].length() == 0)
+			return lastNames[i];
+		return firstNames[i] + " " + lastNames[i];
+	}
+
+	/* R, L or B (switch hitter) */
+	public char getBats(int player) {
+		return (char)bats[player];
+	}
+
+	public char getThrows(int player) {
+		return (char)throwsHand[player];
+	}
+
+	public static RetrosheetPlayerDimension read(FileSystem fs, Path file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(file)));
+		try {
+			if(WritableUtils.readVInt(in) != VERSION)
+				throw new IOException(file + " is not a player dimension file");
+			int count = WritableUtils.readVInt(in);
+			String[] ids = new String[count];
+			String[] lastNames = new String[count];
+			String[] firstNames = new String[count];
+			byte[] bats = new byte[count];
+			byte[] throwsHand = new byte[count];
+			for(int i=0;i<count;i++) {
+				ids[i] = Text.readString(in);
+				lastNames[i] = Text.readString(in);
+				firstNames[i] = Text.readString(in);
+				bats[i] = in.readByte();
+				throwsHand[i] = in.readByte();
+			}
+			return new RetrosheetPlayerDimension(ids, lastNames, firstNames, bats, throwsHand);
+		} finally {
+			in.close();
+		}
+	}
+
+	public void write(FileSystem fs, Path file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(file, true)));
+		try {
+			WritableUtils.writeVInt(out, VERSION);
+			WritableUtils.writeVInt(out, ids.length);
+			for(int i=0;i<ids.length;i++) {
+				Text.writeString(out, ids[i]);
+				Text.writeString(out, lastNames[i]);
+				Text.writeString(out, firstNames[i]);
+				out.writeByte(bats[i]);
+				out.writeByte(throwsHand[i]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/* Collects roster lines, keeping the latest season of each player */
+	public static class Builder {
+		private final Map<String, String[]> players = new TreeMap<String, String[]>();
+		private final Map<String, Integer> seasons = new HashMap<String, Integer>();
+
+		/* One roster line, from the given season */
+		public void add(int year, String line) {
+			String[] f = line.split(",", -1);
+			if(f.length < 5 || f[0].trim().length() == 0)
+				return;
+			String id = f[0].trim();
+			Integer seen = seasons.get(id);
+			if(seen != null && seen > year)
+				return;
+			seasons.put(id, year);
+			players.put(id, f);
+		}
+
+		/* Every line of a roster file, whose season comes from its name */
+		public void add(FileSystem fs, Path file) throws IOException {
+			RetrosheetRosterLoader.Roster roster = RetrosheetRosterLoader.Roster.parse(file);
+			if(roster == null)
+				throw new IOException(file + " isn't a roster file, such as BOS2010.ROS");
+			int year = roster.getYear();
+			BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(file), "UTF-8"));
+			try {
+				String line;
+				while((line = in.readLine()) != null)
+					add(year, line);
+			} finally {
+				in.close();
+			}
+		}
+
+		/* Every roster file matching a path or glob, or in a directory it names.  Other
+		   files, such as the event files kept beside the rosters, are skipped.  Returns
+		   how many rosters were read. */
+		public int addRosters(FileSystem fs, Path path) throws IOException {
+			FileStatus[] matches = fs.globStatus(path);
+			if(matches == null)
+				return 0;
+			int files = 0;
+			for(FileStatus m : matches) {
+				FileStatus[] list = m.isDir() ? fs.listStatus(m.getPath()) : new FileStatus[] { m };
+				for(FileStatus f : list) {
+					if(f.isDir() || RetrosheetRosterLoader.Roster.parse(f.getPath()) == null)
+						continue;
+					add(fs, f.getPath());
+					files++;
+				}
+			}
+			return files;
+		}
+
+		public RetrosheetPlayerDimension build() {
+			int count = players.size();
+			String[] ids = new String[count];
+			String[] lastNames = new String[count];
+			String[] firstNames = new String[count];
+			byte[] bats = new byte[count];
+			byte[] throwsHand = new byte[count];
+			int i = 0;
+			for(Map.Entry<String, String[]> e : players.entrySet()) {
+				String[] f = e.getValue();
+				ids[i] = e.getKey();
+				lastNames[i] = f[1].trim();
+				firstNames[i] = f[2].trim();
+				bats[i] = hand(f[3]);
+				throwsHand[i] = hand(f[4]);
+				i++;
+			}
+			return new RetrosheetPlayerDimension(ids, lastNames, firstNames, bats, throwsHand);
+		}
+
+		private static byte hand(String s) {
+			s = s.trim();
+			return s.length() == 0 ? (byte)'?' : (byte)s.charAt(0);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if(args.length < 2) {
+			System.err.println("Usage: RetrosheetPlayerDimension <output> <roster file or dir> ...");
+			System.exit(1);
+		}
+		Configuration conf = new Configuration();
+		Builder builder = new Builder();
+		int files = 0;
+		for(int a=1;a<args.length;a++) {
+			Path p = new Path(args[a]);
+			files += builder.addRosters(p.getFileSystem(conf), p);
+		}
+		RetrosheetPlayerDimension dimension = builder.build();
+		Path out = new Path(args[0]);
+		dimension.write(out.getFileSystem(conf), out);
+		System.out.println(out + ": " + dimension.size() + " players from " + files + " rosters");
+	}
+}
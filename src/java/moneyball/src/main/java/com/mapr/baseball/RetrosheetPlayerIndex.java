@@ -0,0 +1,347 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.io.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/* For each player id, the file, byte offset and length of every game the
+   player appears in through a start or sub line, so the games of one player
+   can be read without scanning every event file.
+
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetPlayerIndex [-reducers n] <input> <index>
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetPlayerIndex -lookup <index> <player id>
+
+   The index is one MapFile per reducer, keyed by player id and partitioned
+   as HashPartitioner does, so a lookup opens the one part the id hashes to
+   and seeks to it.  Each file's length is kept with its games, and reading a
+   file whose length has changed since fails: build the index again whenever
+   the event files change.  Compressed event files can't be read from an
+   offset, and are not indexed.
+
+   RetrosheetInputFormat reads through the index when retrosheet.player.index.player
+   is set, turning each run of back to back games into a RetrosheetGameSplit;
+   see RetrosheetLoader -player.
+*/
+public class RetrosheetPlayerIndex {
+	/* Directory the index was written to */
+	public static final String INDEX = "retrosheet.player.index";
+	/* Player whose games are read, or "" for all games */
+	public static final String PLAYER = "retrosheet.player.index.player";
+	private static final String COUNTERS = "RetrosheetPlayerIndex";
+
+	/* The games of a player: for each event file, its length and the offset
+	   and length of each game.  Offsets are written as deltas. */
+	public static class Games implements Writable {
+		private final SortedMap<String, SortedMap<Long, Long>> games = new TreeMap<String, SortedMap<Long, Long>>();
+		private final Map<String, Long> fileLengths = new HashMap<String, Long>();
+
+		public void clear() {
+			games.clear();
+			fileLengths.clear();
+		}
+
+		public void add(String file, long fileLength, long offset, long length) {
+			SortedMap<Long, Long> offsets = games.get(file);
+			if(offsets == null) {
+				games.put(file, offsets = new TreeMap<Long, Long>());
+				fileLengths.put(file, fileLength);
+			}
+			offsets.put(offset, length);
+		}
+
+		public void addAll(Games other) {
+			for(Map.Entry<String, SortedMap<Long, Long>> e : other.games.entrySet()) {
+				for(Map.Entry<Long, Long> g : e.getValue().entrySet())
+					add(e.getKey(), other.fileLengths.get(e.getKey()), g.getKey(), g.getValue());
+			}
+		}
+
+		public Set<String> getFiles() {
+			return games.keySet();
+		}
+
+		/* Length of the file when it was indexed */
+		public long getFileLength(String file) {
+			return fileLengths.get(file);
+		}
+
+		/* Offset to length of each game in the file, or null if the player has none there */
+		public SortedMap<Long, Long> getGames(String file) {
+			return games.get(file);
+		}
+
+		public int getGameCount() {
+			int count = 0;
+			for(SortedMap<Long, Long> offsets : games.values())
+				count += offsets.size();
+			return count;
+		}
+
+		public void write(DataOutput out) throws IOException {
+			WritableUtils.writeVInt(out, games.size());
+			for(Map.Entry<String, SortedMap<Long, Long>> e : games.entrySet()) {
+				Text.writeString(out, e.getKey());
+				WritableUtils.writeVLong(out, fileLengths.get(e.getKey()));
+				WritableUtils.writeVInt(out, e.getValue().size());
+				long last = 0;
+				for(Map.Entry<Long, Long> g : e.getValue().entrySet()) {
+					WritableUtils.writeVLong(out, g.getKey() - last);
+					WritableUtils.writeVLong(out, g.getValue());
+					last = g.getKey();
+				}
+			}
+		}
+
+		public void readFields(DataInput in) throws IOException {
+			clear();
+			int files = WritableUtils.readVInt(in);
+			for(int i=0;i<files;i++) {
+				String file = Text.readString(in);
+				long fileLength = WritableUtils.readVLong(in);
+				int count = WritableUtils.readVInt(in);
+				long offset = 0;
+				for(int j=0;j<count;j++) {
+					offset += WritableUtils.readVLong(in);
+					add(file, fileLength, offset, WritableUtils.readVLong(in));
+				}
+			}
+		}
+
+		public String toString() {
+			StringBuilder b = new StringBuilder();
+			for(Map.Entry<String, SortedMap<Long, Long>> e : games.entrySet()) {
+				for(Map.Entry<Long, Long> g : e.getValue().entrySet())
+					b.append(e.getKey()).append('\t').append(g.getKey()).append('\t').append(g.getValue()).append('\n');
+			}
+			return b.toString();
+		}
+	}
+
+	private static final byte[] START = { 's', 't', 'a', 'r', 't', ',' };
+	private static final byte[] SUB = { 's', 'u', 'b', ',' };
+
+	/* Add the id of every player on a start or sub line of the game to ids */
+	static void players(byte[] b, int start, int length, Collection<String> ids) throws IOException {
+		int end = start + length;
+		int line = start;
+		while(line < end) {
+			int eol = line;
+			while(eol < end && b[eol] != '\n')
+				eol++;
+			int id = -1;
+			if(startsWith(b, line, eol, START))
+				id = line + START.length;
+			else if(startsWith(b, line, eol, SUB))
+				id = line + SUB.length;
+			if(id >= 0) {
+				int comma = id;
+				while(comma < eol && b[comma] != ',')
+					comma++;
+				if(comma > id)
+					ids.add(Text.decode(b, id, comma - id));
+			}
+			line = eol + 1;
+		}
+	}
+
+	private static boolean startsWith(byte[] b, int from, int to, byte[] prefix) {
+		if(to - from < prefix.length)
+			return false;
+		for(int i=0;i<prefix.length;i++) {
+			if(b[from + i] != prefix[i])
+				return false;
+		}
+		return true;
+	}
+
+	/* Writes (player, game) for every player of every game */
+	public static class IndexMapper extends Mapper<LongWritable, Text, Text, Games> {
+		private final Text player = new Text();
+		private final Games games = new Games();
+		private final Set<String> ids = new HashSet<String>();
+		private String file;
+		private long fileLength;
+		private boolean compressed;
+
+		protected void setup(Context context) throws IOException {
+			Configuration conf = context.getConfiguration();
+			Path path = ((FileSplit)context.getInputSplit()).getPath();
+			FileSystem fs = path.getFileSystem(conf);
+			file = fs.makeQualified(path).toString();
+			fileLength = fs.getFileStatus(path).getLen();
+			compressed = new CompressionCodecFactory(conf).getCodec(path) != null;
+		}
+
+		protected void map(LongWritable offset, Text game, Context context) throws IOException, InterruptedException {
+			if(compressed) {
+				context.getCounter(COUNTERS, "Compressed games skipped").increment(1);
+				return;
+			}
+			ids.clear();
+			players(game.getBytes(), 0, game.getLength(), ids);
+			for(String id : ids) {
+				player.set(id);
+				games.clear();
+				games.add(file, fileLength, offset.get(), game.getLength());
+				context.write(player, games);
+			}
+			context.getCounter(COUNTERS, "Games indexed").increment(1);
+		}
+	}
+
+	/* Merges the games of a player, as the combiner and the reducer */
+	public static class MergeReducer extends Reducer<Text, Games, Text, Games> {
+		private final Games merged = new Games();
+
+		protected void reduce(Text player, Iterable<Games> values, Context context) throws IOException, InterruptedException {
+			merged.clear();
+			for(Games games : values)
+				merged.addAll(games);
+			context.write(player, merged);
+		}
+	}
+
+	/* Writes each reducer's players as a MapFile, so they can be looked up */
+	public static class MapFileOutput extends FileOutputFormat<Text, Games> {
+		public RecordWriter<Text, Games> getRecordWriter(TaskAttemptContext context) throws IOException {
+			Configuration conf = context.getConfiguration();
+			Path dir = getDefaultWorkFile(context, "");
+			final MapFile.Writer out = new MapFile.Writer(conf, dir.getFileSystem(conf), dir.toString(),
+				Text.class, Games.class, SequenceFile.CompressionType.BLOCK, context);
+			return new RecordWriter<Text, Games>() {
+				public void write(Text player, Games games) throws IOException {
+					out.append(player, games);
+				}
+
+				public void close(TaskAttemptContext context) throws IOException {
+					out.close();
+				}
+			};
+		}
+	}
+
+	private static final PathFilter PARTS = new PathFilter() {
+		public boolean accept(Path p) {
+			return p.getName().startsWith("part-");
+		}
+	};
+
+	/* The games of a player, empty if the index doesn't know the player */
+	public static Games lookup(Configuration conf, Path index, String player) throws IOException {
+		FileSystem fs = index.getFileSystem(conf);
+		FileStatus[] parts = fs.listStatus(index, PARTS);
+		if(parts == null || parts.length == 0)
+			throw new FileNotFoundException("No player index in " + index);
+		Arrays.sort(parts);
+		Text key = new Text(player);
+		/* The part HashPartitioner sent the player to */
+		Path part = parts[(key.hashCode() & Integer.MAX_VALUE) % parts.length].getPath();
+		Games games = new Games();
+		MapFile.Reader in = new MapFile.Reader(fs, part.toString(), conf);
+		try {
+			if(in.get(key, games) == null)
+				games.clear();
+		} finally {
+			in.close();
+		}
+		return games;
+	}
+
+	/* Splits holding just the player's games in the given files, one per run
+	   of back to back games.  Files the player has no games in get none. */
+	static List<InputSplit> getSplits(Configuration conf, List<FileStatus> files, String player) throws IOException {
+		Path index = new Path(conf.get(INDEX));
+		Games games = lookup(conf, index, player);
+		CompressionCodecFactory codecs = new CompressionCodecFactory(conf);
+		List<InputSplit> splits = new ArrayList<InputSplit>();
+		for(FileStatus file : files) {
+			Path path = file.getPath();
+			if(codecs.getCodec(path) != null)
+				throw new IOException("Compressed event file " + path + " can't be read through the player index");
+			FileSystem fs = path.getFileSystem(conf);
+			String name = fs.makeQualified(path).toString();
+			SortedMap<Long, Long> offsets = games.getGames(name);
+			if(offsets == null)
+				continue;
+			if(games.getFileLength(name) != file.getLen())
+				throw new IOException("Player index " + index + " is older than " + path + ", build it again");
+			long start = 0, end = 0;
+			int count = 0;
+			for(Map.Entry<Long, Long> g : offsets.entrySet()) {
+				if(count > 0 && g.getKey() != end) {
+					splits.add(split(fs, file, start, end, count));
+					count = 0;
+				}
+				if(count == 0)
+					start = g.getKey();
+				end = g.getKey() + g.getValue();
+				count++;
+			}
+			if(count > 0)
+				splits.add(split(fs, file, start, end, count));
+		}
+		return splits;
+	}
+
+	private static RetrosheetGameSplit split(FileSystem fs, FileStatus file, long start, long end, int games) throws IOException {
+		BlockLocation[] blocks = fs.getFileBlockLocations(file, start, end - start);
+		String[] hosts = blocks == null || blocks.length == 0 ? new String[0] : blocks[0].getHosts();
+		return new RetrosheetGameSplit(file.getPath(), start, end - start, games, hosts);
+	}
+
+	public static Job createJob(Configuration conf, Path input, Path output) throws IOException {
+		Job job = new Job(conf, "retrosheet player index");
+		job.setJarByClass(RetrosheetPlayerIndex.class);
+		job.setInputFormatClass(RetrosheetInputFormat.class);
+		job.setMapperClass(IndexMapper.class);
+		job.setCombinerClass(MergeReducer.class);
+		job.setReducerClass(MergeReducer.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(Games.class);
+		job.setOutputFormatClass(MapFileOutput.class);
+		FileInputFormat.addInputPath(job, input);
+		FileOutputFormat.setOutputPath(job, output);
+		return job;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		args = new GenericOptionsParser(conf, args).getRemainingArgs();
+		if(args.length == 3 && args[0].equals("-lookup")) {
+			Games games = lookup(conf, new Path(args[1]), args[2]);
+			System.out.print(games);
+			System.err.println(games.getGameCount() + " games");
+			return;
+		}
+		int reducers = -1;
+		String input = null, output = null;
+		boolean usage = false;
+		for(int i=0;i<args.length;i++) {
+			if(args[i].equals("-reducers") && i + 1 < args.length)
+				reducers = Integer.parseInt(args[++i]);
+			else if(input == null)
+				input = args[i];
+			else if(output == null)
+				output = args[i];
+			else
+				usage = true;
+		}
+		if(usage || output == null) {
+			System.err.println("Usage: RetrosheetPlayerIndex [-reducers n] <input> <index>");
+			System.err.println("       RetrosheetPlayerIndex -lookup <index> <player id>");
+			System.exit(1);
+		}
+		Job job = createJob(conf, new Path(input), new Path(output));
+		if(reducers > 0)
+			job.setNumReduceTasks(reducers);
+		System.exit(job.waitForCompletion(true) ? 0 : 1);
+	}
+}
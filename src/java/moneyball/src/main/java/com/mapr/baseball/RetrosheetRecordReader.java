@@ -3,6 +3,7 @@ package com.mapr.baseball;
 import java.util.*;
 import java.io.*;
 import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.*;
 import org.apache.hadoop.util.*;
 import org.apache.hadoop.mapreduce.*;
 import org.apache.hadoop.mapreduce.lib.input.*;
@@ -10,34 +11,90 @@ import org.apache.hadoop.conf.*;
 import org.apache.hadoop.fs.*;
 
 
-/* Reads a single game at a time */
+/* Reads a single game at a time.
+
+   The split is read into one reusable buffer, and each game is returned as
+   a byte range over that buffer, from its "id," line up to the next one.
+   Game boundaries are found with a single scan for "\nid,".  Callers that
+   can work on bytes use getBuffer(), getGameStart() and getGameLength();
+   getCurrentValue() copies the game into a reused Text for everyone else.
+
+   A split owns the games whose id line starts inside it.  The last game is
+   read past the end of the split until the next id line or end of file.
+   A RetrosheetGameSplit is already aligned on games, so it is read from its
+   first byte and never past its end.
+
+   Files with a compression codec known to Hadoop, such as 2010BOS.EVA.gz
+   or 2010BOS.EVA.bz2, are decompressed as they are read.  They aren't
+   splittable with the codecs of this Hadoop version, so their split is
+   always the whole file, and keys are offsets in the decompressed text.
+*/
 public class RetrosheetRecordReader extends RecordReader<LongWritable, Text> {
-	private FSDataInputStream filein;
-	private LineReader in;
+	public static final String BUFFER_SIZE = "retrosheet.reader.buffer.size";
+	private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+
+	private InputStream filein;
+	/* The file itself, under any decompressor, for progress */
+	private FSDataInputStream rawin;
+	private Decompressor decompressor;
+	private boolean compressed;
+	private CompressionCodecFactory codecs;
+	private Configuration codecsConf;
+	private Path path;
 	private long start=0, end=0, pos=0;
-	private int maxLineLength;
-	private LongWritable key;
-	private Text value;
-	private Text deferred_line = null;
+	private LongWritable key = new LongWritable();
+	private Text value = new Text();
+	private boolean valueCurrent = false;
+
+	/* buffer[0, bufferEnd) holds file bytes starting at file offset bufferPos */
+	private byte[] buffer;
+	private int bufferEnd;
+	private long bufferPos;
+	private boolean eof;
+	/* File offset reads stop at */
+	private long limit;
+	private boolean done;
+
+	/* Current game, as offsets into buffer */
+	private int gameStart, gameEnd;
 
 	public void close() throws IOException {
-		if (in != null) {
-			in.close();
+		if (filein != null) {
+			filein.close();
+			filein = null;
+			rawin = null;
+		}
+		if (decompressor != null) {
+			CodecPool.returnDecompressor(decompressor);
+			decompressor = null;
 		}
 	}
 
 	public long getPos() throws IOException
 	{
 		return pos;
-	}	
+	}
 
-	public float getProgress() 
+	public float getProgress()
 	{
 		if(end-start == 0)
 			return 0;
+		if(compressed) {
+			/* Only the compressed position is comparable to the split */
+			try {
+				return rawin == null ? 1.0f : Math.min(1.0f, (float)rawin.getPos()/(float)end);
+			} catch (IOException e) {
+				return 0;
+			}
+		}
 		if(pos > end)
 			return 1.0f;
-		return (float)pos/(float)(end-start);
+		return (float)(pos-start)/(float)(end-start);
+	}
+
+	/* File being read */
+	public Path getPath() {
+		return path;
 	}
 
 	public LongWritable getCurrentKey() {
@@ -45,108 +102,160 @@ public class RetrosheetRecordReader extends RecordReader<LongWritable, Text> {
 	}
 
 	public Text getCurrentValue() {
+		if(!valueCurrent) {
+			value.set(buffer, gameStart, gameEnd - gameStart);
+			valueCurrent = true;
+		}
 		return value;
 	}
 
-	private boolean isStartLine(Text t) {
-		/* Find the end of the first field */
-		int fieldTerm = t.find(",");
-		int idTerm = t.find("id");
-		return (idTerm != -1 && fieldTerm != -1 && idTerm < fieldTerm);
+	/* Bytes of the current game are getBuffer()[getGameStart(), getGameStart()+getGameLength()).
+	   They are only valid until the next call to nextKeyValue(). */
+	public byte[] getBuffer() {
+		return buffer;
+	}
+
+	public int getGameStart() {
+		return gameStart;
+	}
+
+	public int getGameLength() {
+		return gameEnd - gameStart;
 	}
 
 	public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException, InterruptedException {
 		FileSplit split = (FileSplit) genericSplit;
 		final Path file = split.getPath();
+		path = file;
 		Configuration conf = context.getConfiguration();
 		FileSystem fs = file.getFileSystem(conf);
 
-
 		start = split.getStart();
 		end = start + split.getLength();
-		filein = fs.open(split.getPath());
-
-		this.maxLineLength = conf.getInt("mapred.linerecordreader.maxlength", Integer.MAX_VALUE);
-
-		in = new LineReader(filein, conf);
-		
-		if(start!=0) {
-			boolean recordStart = false;
-			/* Read until we have an id line, and then rewind. */
-			filein.seek(start-1);
-			Text tmpTxt = new Text();
-			
-			while(!recordStart){
-				int linelen = in.readLine(tmpTxt, this.maxLineLength);
-				if(isStartLine(tmpTxt))
-				{
-					/* Found an ID record. */
-					filein.seek(start);
-					recordStart = true; 	
-				} else {
-					start += linelen;
-				}
+		/* A reader can be initialized again for another split, and keeps its buffer */
+		int size = conf.getInt(BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+		if(buffer == null || buffer.length < size)
+			buffer = new byte[size];
+		FSDataInputStream in = fs.open(split.getPath());
+		rawin = in;
+		CompressionCodec codec = getCodec(conf, file);
+		compressed = codec != null;
+
+		if(compressed) {
+			if(start != 0) {
+				in.close();
+				throw new IOException("Compressed event file " + file + " can't be read from offset " + start);
 			}
+			decompressor = CodecPool.getDecompressor(codec);
+			open(codec.createInputStream(in, decompressor), 0);
+		} else if(split instanceof RetrosheetGameSplit) {
+			in.seek(start);
+			open(in, start);
+			limit = end;
+		} else if(start!=0) {
+			/* Back up one byte so a game starting exactly at start is still found after its newline */
+			in.seek(start-1);
+			open(in, start-1);
+			/* Skip to the first id line that starts inside this split. */
+			int first = findGameStart(0);
+			if(first < 0) {
+				done = true;
+			} else {
+				gameStart = gameEnd = first;
+			}
+		} else {
+			open(in, 0);
 		}
-		this.pos = start;
+		this.pos = bufferPos + gameEnd;
+	}
+
+	/* Codec for the file's suffix, or null if it isn't compressed.  The codec
+	   list is kept while the reader is initialized with the same configuration. */
+	private CompressionCodec getCodec(Configuration conf, Path file) {
+		if(codecs == null || codecsConf != conf) {
+			codecs = new CompressionCodecFactory(conf);
+			codecsConf = conf;
+		}
+		return codecs.getCodec(file);
+	}
+
+	private void open(InputStream in, long streamPos) {
+		filein = in;
+		bufferPos = streamPos;
+		bufferEnd = 0;
+		gameStart = gameEnd = 0;
+		limit = Long.MAX_VALUE;
+		eof = false;
+		done = false;
 	}
 
 	public boolean nextKeyValue() throws IOException
 	{
-		Text line = new Text();
-		Text newline = new Text("\n");
-		Date d = new Date();
-
-		if(key == null)
-			key = new LongWritable();
-		key.set(pos);
-		
-		if(value == null)
-			value = new Text();
-		value.clear();
-
-		int newSize = 0;
-
-		if(deferred_line != null) {
-			/* We held onto a line on the last invocation. Copy it in before we start */
-			value.append(deferred_line.getBytes(), 0, deferred_line.getLength());
-			value.append(newline.getBytes(), 0, newline.getLength());
-			this.pos+=deferred_line.getLength();
-			deferred_line=null;
+		valueCurrent = false;
+		gameStart = gameEnd;
+		if(done)
+			return false;
+		if(gameStart >= bufferEnd && !fill()) {
+			/* If we got 0 bytes, we're at EOF and need to bail. */
+			done = true;
+			return false;
 		}
-
-		newSize = in.readLine(line, maxLineLength);
-		value.append(line.getBytes(), 0, line.getLength());
-		value.append(newline.getBytes(), 0, newline.getLength());
-		this.pos+=newSize;
-		if(newSize == 0) {
-			/* If we got 0 bytes, we're at EOF and need to bail.
-			   since we didn't get a first record, return nothing
-			*/
-			key = null;
-			value = null;
-			d = new Date();
-			
+		if(!compressed && bufferPos + gameStart >= end) {
+			/* This game starts in the next split */
+			done = true;
 			return false;
 		}
+		int next = findGameStart(gameStart);
+		gameEnd = next < 0 ? bufferEnd : next;
+		key.set(bufferPos + gameStart);
+		this.pos = bufferPos + gameEnd;
+		return true;
+	}
+
+	/* Offset in buffer of the next line starting with "id,", scanning from the
+	   given offset and reading more of the file as needed.  Returns -1 at end of input. */
+	private int findGameStart(int from) throws IOException {
+		int i = from;
 		while(true) {
-			line.clear();
-			newSize = in.readLine(line, maxLineLength);
-			if(isStartLine(line))
-			{
-				/* Save this line for the next record */
-				this.deferred_line = line;
-				/* Return the current version. */
-				return true;
-			} else if (newSize == 0) {
-				/* At EOF */
-				return true;
-			} else {
-				value.append(line.getBytes(), 0, line.getLength());
-				value.append(newline.getBytes(), 0, newline.getLength());
-				this.pos+=newSize;
+			for(;i + 3 < bufferEnd;i++) {
+				if(buffer[i] == '\n' && buffer[i+1] == 'i' && buffer[i+2] == 'd' && buffer[i+3] == ',')
+					return i + 1;
 			}
+			/* fill() moves the buffer contents, so remember where we were relative to the game */
+			int scanned = i - gameStart;
+			if(!fill())
+				return -1;
+			i = gameStart + scanned;
+		}
+	}
+
+	/* Move the current game to the front of the buffer, growing it if the game
+	   already fills it, and read more of the file.  False at end of file. */
+	private boolean fill() throws IOException {
+		if(eof)
+			return false;
+		if(gameStart > 0) {
+			System.arraycopy(buffer, gameStart, buffer, 0, bufferEnd - gameStart);
+			bufferEnd -= gameStart;
+			bufferPos += gameStart;
+			gameEnd -= gameStart;
+			gameStart = 0;
+		}
+		if(bufferEnd == buffer.length) {
+			byte[] bigger = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, bigger, 0, bufferEnd);
+			buffer = bigger;
+		}
+		int want = buffer.length - bufferEnd;
+		if(limit - (bufferPos + bufferEnd) < want)
+			want = (int)(limit - (bufferPos + bufferEnd));
+		int read = want > 0 ? filein.read(buffer, bufferEnd, want) : 0;
+		if(read <= 0) {
+			eof = true;
+			return false;
 		}
+		bufferEnd += read;
+		return true;
 	}
 
 }
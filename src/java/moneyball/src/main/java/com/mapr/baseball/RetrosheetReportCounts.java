@@ -0,0 +1,70 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.Arrays;
+import org.apache.hadoop.io.*;
+
+/* The counts of one RetrosheetReports key, such as plate appearances, hits
+   and home runs, written as VLongs so the many small partial counts out of
+   the combiners take a byte or two each. */
+public class RetrosheetReportCounts implements Writable {
+	private long[] counts = new long[0];
+
+	public RetrosheetReportCounts() {
+	}
+
+	public RetrosheetReportCounts(int size) {
+		counts = new long[size];
+	}
+
+	public int size() {
+		return counts.length;
+	}
+
+	public long get(int i) {
+		return counts[i];
+	}
+
+	public void set(int i, long n) {
+		counts[i] = n;
+	}
+
+	/* Zero every count, making room for size of them */
+	public void clear(int size) {
+		if(counts.length != size)
+			counts = new long[size];
+		else
+			Arrays.fill(counts, 0);
+	}
+
+	public void add(RetrosheetReportCounts other) {
+		if(other.counts.length > counts.length)
+			counts = Arrays.copyOf(counts, other.counts.length);
+		for(int i=0;i<other.counts.length;i++)
+			counts[i] += other.counts[i];
+	}
+
+	public void write(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, counts.length);
+		for(long n : counts)
+			WritableUtils.writeVLong(out, n);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		int size = WritableUtils.readVInt(in);
+		if(counts.length != size)
+			counts = new long[size];
+		for(int i=0;i<size;i++)
+			counts[i] = WritableUtils.readVLong(in);
+	}
+
+	public String toString() {
+		StringBuilder b = new StringBuilder();
+		for(int i=0;i<counts.length;i++) {
+			if(i > 0)
+				b.append(',');
+			b.append(counts[i]);
+		}
+		return b.toString();
+	}
+}
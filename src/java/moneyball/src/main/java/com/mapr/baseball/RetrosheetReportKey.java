@@ -0,0 +1,153 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.io.*;
+
+/* Key of the RetrosheetReports jobs: a player, a second player (or ""), and
+   a fielding detail (or NO_DETAIL), such as (batter, pitcher) for matchups
+   or (batter, "", detail) for fielding.  The detail packs a play's position,
+   placement and result into one small int, as fielding() does, and is
+   written out as their names.
+
+   Written as the two ids as Text and the detail as a VInt, and sorted by
+   Comparator on those bytes, in the same order as compareTo(), so the sort
+   and merge never build keys.
+*/
+public class RetrosheetReportKey implements WritableComparable<RetrosheetReportKey> {
+	public static final int NO_DETAIL = -1;
+
+	/* Where the ball went: 1 to 9 by the fielder, or the gaps */
+	public static final int UNKNOWN_POSITION = 0;
+	public static final int LEFT_CENTER = 10;
+	public static final int RIGHT_CENTER = 11;
+	private static final String[] POSITIONS = {
+		"unknown", "pitcher", "catcher", "first base", "second base", "third base",
+		"shortstop", "left field", "center field", "right field", "left center", "right center"
+	};
+
+	public static final int NO_PLACEMENT = 0;
+	public static final int SHORT = 1;
+	public static final int DEEP = 2;
+	private static final String[] PLACEMENTS = { "", "short", "deep" };
+
+	public static final int OUT = 0;
+	public static final int SINGLE = 1;
+	public static final int DOUBLE = 2;
+	public static final int TRIPLE = 3;
+	public static final int HOME_RUN = 4;
+	public static final int WALK = 5;
+	private static final String[] RESULTS = { "out", "single", "double", "triple", "home run", "walk" };
+
+	private final Text player = new Text();
+	private final Text other = new Text();
+	private int detail = NO_DETAIL;
+
+	public RetrosheetReportKey() {
+	}
+
+	public RetrosheetReportKey(String player, String other, int detail) {
+		set(player, other, detail);
+	}
+
+	public void set(String player, String other, int detail) {
+		this.player.set(player);
+		this.other.set(other);
+		this.detail = detail;
+	}
+
+	public Text getPlayer() {
+		return player;
+	}
+
+	public Text getOther() {
+		return other;
+	}
+
+	public int getDetail() {
+		return detail;
+	}
+
+	/* The detail of a play's position, placement and result */
+	public static int fielding(int position, int placement, int result) {
+		return (position * PLACEMENTS.length + placement) * RESULTS.length + result;
+	}
+
+	/* position,placement,result of a detail, as the fielding report writes it */
+	public static String fieldingString(int detail) {
+		int result = detail % RESULTS.length;
+		int placement = detail / RESULTS.length % PLACEMENTS.length;
+		int position = detail / RESULTS.length / PLACEMENTS.length;
+		return POSITIONS[position] + "," + PLACEMENTS[placement] + "," + RESULTS[result];
+	}
+
+	public void write(DataOutput out) throws IOException {
+		player.write(out);
+		other.write(out);
+		WritableUtils.writeVInt(out, detail);
+	}
+
+	public void readFields(DataInput in) throws IOException {
+		player.readFields(in);
+		other.readFields(in);
+		detail = WritableUtils.readVInt(in);
+	}
+
+	public int compareTo(RetrosheetReportKey k) {
+		int c = player.compareTo(k.player);
+		if(c == 0)
+			c = other.compareTo(k.other);
+		if(c == 0)
+			c = detail < k.detail ? -1 : detail == k.detail ? 0 : 1;
+		return c;
+	}
+
+	public boolean equals(Object o) {
+		return o instanceof RetrosheetReportKey && compareTo((RetrosheetReportKey)o) == 0;
+	}
+
+	public int hashCode() {
+		return (player.hashCode() * 31 + other.hashCode()) * 31 + detail;
+	}
+
+	/* The fields that are set, comma separated, as the reports write them */
+	public String toString() {
+		StringBuilder b = new StringBuilder(player.toString());
+		if(other.getLength() > 0)
+			b.append(',').append(other.toString());
+		if(detail != NO_DETAIL)
+			b.append(',').append(fieldingString(detail));
+		return b.toString();
+	}
+
+	/* Compares serialized keys field by field, without reading them in */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(RetrosheetReportKey.class);
+		}
+
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				for(int field=0;field<2;field++) {
+					int n1 = WritableUtils.decodeVIntSize(b1[s1]);
+					int n2 = WritableUtils.decodeVIntSize(b2[s2]);
+					int len1 = readVInt(b1, s1);
+					int len2 = readVInt(b2, s2);
+					int c = compareBytes(b1, s1 + n1, len1, b2, s2 + n2, len2);
+					if(c != 0)
+						return c;
+					s1 += n1 + len1;
+					s2 += n2 + len2;
+				}
+				int d1 = readVInt(b1, s1);
+				int d2 = readVInt(b2, s2);
+				return d1 < d2 ? -1 : d1 == d2 ? 0 : 1;
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	static {
+		WritableComparator.define(RetrosheetReportKey.class, new Comparator());
+	}
+}
@@ -0,0 +1,279 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.GenericOptionsParser;
+
+/* The reports run every day, as plain MapReduce jobs over the event files
+   instead of Pig scripts:
+
+	home-runs	batter, home_runs
+	matchups	batter, pitcher, plate_appearances, hits, home_runs, walks, strikeouts
+	fielding	batter, position, placement, result, plays
+
+   Maps replay each game with GameStateEngine and write RetrosheetReportKey
+   and RetrosheetReportCounts, which are summed by the same reducer as a
+   combiner, and sorted on their bytes.  Each part file holds every line of
+   its players, sorted by player, as comma separated text:
+
+	hadoop jar moneyball.jar com.mapr.baseball.RetrosheetReports [-reducers n] [-hot id,...] <report> <input> <output>
+
+   fielding is summarize_at_bats.pig's report: position is where the ball
+   went (left field, left center, ..., catcher, or unknown), placement is
+   short, deep or empty, and result is out, single, double, triple, home run
+   or walk.  Positions are taken from the fielders of an out or hit, such as
+   the 6 of 63 or the 78 of D78, as the script does, and otherwise from the
+   hit location modifier, such as the 7 of S/L7D, which the script drops.
+   The placement is the S or D ending that location.  Unlike the script,
+   which sorts results with regular expressions, only plays that end the
+   batter's turn are counted: no stolen bases or wild pitches as outs,
+   defensive indifference as a double, or hit by pitch as an out.
+
+   -hot lists busy players whose keys are spread over all the reducers; see
+   RetrosheetSkewPartitioner.  There is no ORDER step: ranking a report is a
+   sort of its small output.
+*/
+public class RetrosheetReports {
+	public static final String REPORT = "retrosheet.report";
+
+	public enum Report {
+		HOME_RUNS("home-runs", 1),
+		MATCHUPS("matchups", 5),
+		FIELDING("fielding", 1);
+
+		private final String name;
+		private final int counts;
+
+		Report(String name, int counts) {
+			this.name = name;
+			this.counts = counts;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		/* The report of a command line name, or null */
+		public static Report forName(String name) {
+			for(Report r : values()) {
+				if(r.name.equals(name))
+					return r;
+			}
+			return null;
+		}
+	}
+
+	/* Turns each play into the key and counts of a report */
+	static abstract class ReportVisitor extends GameVisitor {
+		private final Report report;
+		private final RetrosheetReportKey key = new RetrosheetReportKey();
+		private final RetrosheetReportCounts counts;
+
+		ReportVisitor(Report report) {
+			this.report = report;
+			counts = new RetrosheetReportCounts(report.counts);
+		}
+
+		/* Nothing passed may be kept, both are reused */
+		protected abstract void emit(RetrosheetReportKey key, RetrosheetReportCounts counts) throws IOException;
+
+		public void play(GameStateEngine engine) throws IOException {
+			if(!engine.isParsed())
+				return;
+			RetrosheetEvent event = engine.getEvent();
+			int type = event.type;
+			String batter = engine.playerId(engine.getBatter());
+			switch(report) {
+			case HOME_RUNS:
+				if(type != RetrosheetEvent.HOME_RUN)
+					return;
+				key.set(batter, "", RetrosheetReportKey.NO_DETAIL);
+				counts.set(0, 1);
+				break;
+			case MATCHUPS:
+				if(!endsPlateAppearance(event))
+					return;
+				key.set(batter, engine.playerId(engine.getPitcher()), RetrosheetReportKey.NO_DETAIL);
+				counts.set(0, 1);
+				counts.set(1, event.isHit() ? 1 : 0);
+				counts.set(2, type == RetrosheetEvent.HOME_RUN ? 1 : 0);
+				counts.set(3, type == RetrosheetEvent.WALK || type == RetrosheetEvent.INTENTIONAL_WALK ? 1 : 0);
+				counts.set(4, type == RetrosheetEvent.STRIKEOUT ? 1 : 0);
+				break;
+			case FIELDING:
+				int result = result(type);
+				if(result < 0)
+					return;
+				key.set(batter, "", RetrosheetReportKey.fielding(position(event), placement(event), result));
+				counts.set(0, 1);
+				break;
+			}
+			emit(key, counts);
+		}
+	}
+
+	/* Plays that finish the batter's turn, rather than base running or no play */
+	static boolean endsPlateAppearance(RetrosheetEvent event) {
+		int type = event.type;
+		return event.isHit() || type == RetrosheetEvent.OUT || type == RetrosheetEvent.ERROR
+			|| type == RetrosheetEvent.FIELDERS_CHOICE || type == RetrosheetEvent.STRIKEOUT
+			|| type == RetrosheetEvent.WALK || type == RetrosheetEvent.INTENTIONAL_WALK
+			|| type == RetrosheetEvent.HIT_BY_PITCH || type == RetrosheetEvent.INTERFERENCE;
+	}
+
+	/* The fielding report's result of a play, or -1 if it isn't counted */
+	static int result(int type) {
+		switch(type) {
+		case RetrosheetEvent.OUT:
+		case RetrosheetEvent.STRIKEOUT:
+		case RetrosheetEvent.ERROR:
+		case RetrosheetEvent.FIELDERS_CHOICE:
+			return RetrosheetReportKey.OUT;
+		case RetrosheetEvent.SINGLE:
+			return RetrosheetReportKey.SINGLE;
+		case RetrosheetEvent.DOUBLE:
+		case RetrosheetEvent.GROUND_RULE_DOUBLE:
+			return RetrosheetReportKey.DOUBLE;
+		case RetrosheetEvent.TRIPLE:
+			return RetrosheetReportKey.TRIPLE;
+		case RetrosheetEvent.HOME_RUN:
+			return RetrosheetReportKey.HOME_RUN;
+		case RetrosheetEvent.WALK:
+		case RetrosheetEvent.INTENTIONAL_WALK:
+			return RetrosheetReportKey.WALK;
+		}
+		return -1;
+	}
+
+	/* Where the ball went, from the fielders of an out or hit, else the hit location */
+	static int position(RetrosheetEvent event) {
+		if((event.type == RetrosheetEvent.OUT || event.isHit()) && event.fielderCount > 0)
+			return position(event.fielders[0], event.fielderCount > 1 ? event.fielders[1] : 0);
+		String location = event.locationString();
+		if(location.length() > 0)
+			return position(location.charAt(0) - '0', location.length() > 1 ? location.charAt(1) - '0' : 0);
+		return RetrosheetReportKey.UNKNOWN_POSITION;
+	}
+
+	/* 78 and 89 are the gaps, anything else goes by the first fielder */
+	static int position(int first, int second) {
+		if(first == 7 && second == 8)
+			return RetrosheetReportKey.LEFT_CENTER;
+		if(first == 8 && second == 9)
+			return RetrosheetReportKey.RIGHT_CENTER;
+		return first >= 1 && first <= 9 ? first : RetrosheetReportKey.UNKNOWN_POSITION;
+	}
+
+	/* Short or deep from the S or D ending the hit location, if there is one */
+	static int placement(RetrosheetEvent event) {
+		String location = event.locationString();
+		if(location.endsWith("S"))
+			return RetrosheetReportKey.SHORT;
+		if(location.endsWith("D"))
+			return RetrosheetReportKey.DEEP;
+		return RetrosheetReportKey.NO_PLACEMENT;
+	}
+
+	public static class ReportMapper extends Mapper<LongWritable, Text, RetrosheetReportKey, RetrosheetReportCounts> {
+		private final GameStateEngine engine = new GameStateEngine();
+		private ReportVisitor visitor;
+
+		protected void setup(final Context context) {
+			Report report = Report.valueOf(context.getConfiguration().get(REPORT));
+			visitor = new ReportVisitor(report) {
+				protected void emit(RetrosheetReportKey key, RetrosheetReportCounts counts) throws IOException {
+					try {
+						context.write(key, counts);
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException("Interrupted writing " + key);
+					}
+				}
+			};
+		}
+
+		protected void map(LongWritable offset, Text game, Context context) throws IOException {
+			engine.run(game, visitor);
+		}
+
+		/* The engine's counts become the task's counters, as with RetrosheetLoader */
+		protected void cleanup(Context context) {
+			RetrosheetCounters counters = engine.getCounters();
+			for(RetrosheetCounters.Counter c : RetrosheetCounters.counters()) {
+				long n = counters.get(c);
+				if(n != 0)
+					context.getCounter(c).increment(n);
+			}
+			counters.clear();
+		}
+	}
+
+	/* Sums the counts of a key, as the combiner and the reducer */
+	public static class SumReducer extends Reducer<RetrosheetReportKey, RetrosheetReportCounts, RetrosheetReportKey, RetrosheetReportCounts> {
+		private final RetrosheetReportCounts sum = new RetrosheetReportCounts();
+
+		protected void reduce(RetrosheetReportKey key, Iterable<RetrosheetReportCounts> values, Context context) throws IOException, InterruptedException {
+			sum.clear(0);
+			for(RetrosheetReportCounts counts : values)
+				sum.add(counts);
+			context.write(key, sum);
+		}
+	}
+
+	public static Job createJob(Configuration conf, Report report, Path input, Path output) throws IOException {
+		conf.set(REPORT, report.name());
+		conf.set("mapred.textoutputformat.separator", ",");
+		Job job = new Job(conf, "retrosheet " + report.getName());
+		job.setJarByClass(RetrosheetReports.class);
+		job.setInputFormatClass(RetrosheetInputFormat.class);
+		job.setMapperClass(ReportMapper.class);
+		job.setCombinerClass(SumReducer.class);
+		job.setReducerClass(SumReducer.class);
+		job.setPartitionerClass(RetrosheetSkewPartitioner.class);
+		job.setSortComparatorClass(RetrosheetReportKey.Comparator.class);
+		job.setMapOutputKeyClass(RetrosheetReportKey.class);
+		job.setMapOutputValueClass(RetrosheetReportCounts.class);
+		job.setOutputKeyClass(RetrosheetReportKey.class);
+		job.setOutputValueClass(RetrosheetReportCounts.class);
+		job.setOutputFormatClass(TextOutputFormat.class);
+		FileInputFormat.addInputPath(job, input);
+		FileOutputFormat.setOutputPath(job, output);
+		return job;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Configuration conf = new Configuration();
+		args = new GenericOptionsParser(conf, args).getRemainingArgs();
+		int reducers = -1;
+		boolean usage = false;
+		Report report = null;
+		String input = null, output = null;
+		for(int i=0;i<args.length;i++) {
+			if(args[i].equals("-reducers") && i + 1 < args.length)
+				reducers = Integer.parseInt(args[++i]);
+			else if(args[i].equals("-hot") && i + 1 < args.length)
+				conf.set(RetrosheetSkewPartitioner.HOT_PLAYERS, args[++i]);
+			else if(report == null && Report.forName(args[i]) != null)
+				report = Report.forName(args[i]);
+			else if(report != null && input == null)
+				input = args[i];
+			else if(input != null && output == null)
+				output = args[i];
+			else
+				usage = true;
+		}
+		if(usage || output == null) {
+			System.err.println("Usage: RetrosheetReports [-reducers n] [-hot id,...] home-runs|matchups|fielding <input> <output>");
+			System.exit(1);
+		}
+		Job job = createJob(conf, report, new Path(input), new Path(output));
+		if(reducers > 0)
+			job.setNumReduceTasks(reducers);
+		System.exit(job.waitForCompletion(true) ? 0 : 1);
+	}
+}
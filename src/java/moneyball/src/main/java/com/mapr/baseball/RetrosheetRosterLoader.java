@@ -0,0 +1,152 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import java.util.regex.*;
+import java.io.*;
+
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.*;
+import org.apache.pig.*;
+import org.apache.pig.data.*;
+import org.apache.pig.backend.hadoop.executionengine.mapReduceLayer.*;
+import org.apache.pig.impl.logicalLayer.schema.Schema;
+import org.apache.pig.impl.logicalLayer.schema.Schema.FieldSchema;
+
+/* Loads Retrosheet roster files, one record per player line:
+
+	(player_id, last_name, first_name, bats, throws, team, position, year)
+
+   The year comes from the file name, as in BOS2010.ROS.  Lines that don't
+   have a player id and at least the two names are skipped.
+*/
+public class RetrosheetRosterLoader extends LoadFunc implements LoadMetadata {
+	public static int ROSTER_ID = 0;
+	public static int ROSTER_LAST_NAME = 1;
+	public static int ROSTER_FIRST_NAME = 2;
+	public static int ROSTER_BATS = 3;
+	public static int ROSTER_THROWS = 4;
+	public static int ROSTER_TEAM = 5;
+	public static int ROSTER_POSITION = 6;
+	public static int ROSTER_YEAR = 7;
+	private static final int FIELDS = 8;
+
+	private RosterReader reader;
+	private final TupleFactory tupleFactory = TupleFactory.getInstance();
+	/* Roster of the file being read */
+	private Path rosterPath;
+	private Roster roster;
+
+	/* Team and season of a roster file name */
+	public static class Roster {
+		private static final Pattern NAME = Pattern.compile("([A-Za-z0-9]+)(\\d{4})\\.ROS(\\.[A-Za-z0-9]+)?");
+
+		private final String team;
+		private final int year;
+
+		public Roster(String team, int year) {
+			this.team = team;
+			this.year = year;
+		}
+
+		/* The roster of a file, or null if the name isn't one */
+		public static Roster parse(Path file) {
+			Matcher m = NAME.matcher(file.getName());
+			if(!m.matches())
+				return null;
+			return new Roster(m.group(1), Integer.parseInt(m.group(2)));
+		}
+
+		public String getTeam() {
+			return team;
+		}
+
+		public int getYear() {
+			return year;
+		}
+	}
+
+	/* Lines of a file, remembering which file they came from */
+	static class RosterReader extends LineRecordReader {
+		private Path path;
+
+		public void initialize(InputSplit split, TaskAttemptContext context) throws IOException {
+			path = ((FileSplit)split).getPath();
+			super.initialize(split, context);
+		}
+
+		Path getPath() {
+			return path;
+		}
+	}
+
+	public static class RosterInputFormat extends TextInputFormat {
+		public RecordReader<LongWritable, Text> createRecordReader(InputSplit split, TaskAttemptContext context) {
+			return new RosterReader();
+		}
+	}
+
+	@Override
+	public InputFormat getInputFormat() throws IOException {
+		return new RosterInputFormat();
+	}
+
+	@Override
+	public void setLocation(String location, Job job) throws IOException {
+		FileInputFormat.setInputPaths(job, location);
+	}
+
+	@Override
+	public void prepareToRead(RecordReader reader, PigSplit split) throws IOException {
+		this.reader = (RosterReader)reader;
+	}
+
+	@Override
+	public Tuple getNext() throws IOException {
+		while(reader.nextKeyValue()) {
+			String[] f = reader.getCurrentValue().toString().split(",", -1);
+			if(f.length < 3 || f[0].trim().length() == 0)
+				continue;
+			if(reader.getPath() != rosterPath) {
+				rosterPath = reader.getPath();
+				roster = Roster.parse(rosterPath);
+			}
+			Tuple t = tupleFactory.newTuple(FIELDS);
+			for(int i=0;i<ROSTER_YEAR && i<f.length;i++) {
+				String value = f[i].trim();
+				t.set(i, value.length() == 0 ? null : value);
+			}
+			if(t.get(ROSTER_TEAM) == null && roster != null)
+				t.set(ROSTER_TEAM, roster.getTeam());
+			if(roster != null)
+				t.set(ROSTER_YEAR, roster.getYear());
+			return t;
+		}
+		return null;
+	}
+
+	public ResourceSchema getSchema(String location, Job job) {
+		List<FieldSchema> fields = new ArrayList<FieldSchema>();
+		fields.add(new FieldSchema("player_id", DataType.CHARARRAY));
+		fields.add(new FieldSchema("last_name", DataType.CHARARRAY));
+		fields.add(new FieldSchema("first_name", DataType.CHARARRAY));
+		fields.add(new FieldSchema("bats", DataType.CHARARRAY));
+		fields.add(new FieldSchema("throws", DataType.CHARARRAY));
+		fields.add(new FieldSchema("team", DataType.CHARARRAY));
+		fields.add(new FieldSchema("position", DataType.CHARARRAY));
+		fields.add(new FieldSchema("year", DataType.INTEGER));
+		return new ResourceSchema(new Schema(fields));
+	}
+
+	public ResourceStatistics getStatistics(String location, Job job) throws IOException {
+		return null;
+	}
+
+	public String[] getPartitionKeys(String location, Job job) throws IOException {
+		return null;
+	}
+
+	public void setPartitionFilter(Expression partitionFilter) throws IOException {
+	}
+}
@@ -0,0 +1,62 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.hive.serde2.*;
+import org.apache.hadoop.hive.serde2.objectinspector.*;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.data.DataType;
+
+/* Hive columns for the plays read by RetrosheetHiveInputFormat.  The columns
+   are those of RetrosheetLoader('-flat'), in the same order, so tables are
+   created without a column list.  Read only. */
+public class RetrosheetSerDe implements Deserializer {
+	private ObjectInspector inspector;
+
+	public void initialize(Configuration conf, Properties table) throws SerDeException {
+		ResourceSchema.ResourceFieldSchema[] fields = new RetrosheetLoader("-flat").getSchema(null, null).getFields();
+		List<String> names = new ArrayList<String>();
+		List<ObjectInspector> types = new ArrayList<ObjectInspector>();
+		for(int i=0;i<fields.length;i++) {
+			names.add(fields[i].getName());
+			types.add(inspector(i, fields[i].getType()));
+		}
+		inspector = ObjectInspectorFactory.getStandardStructObjectInspector(names, types);
+	}
+
+	private static ObjectInspector inspector(int field, byte type) throws SerDeException {
+		/* These are declared int in the loader schema, but hold strings */
+		if(field == RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_INNING_HALF
+				|| field == RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_FIELDER)
+			return PrimitiveObjectInspectorFactory.javaStringObjectInspector;
+		switch(type) {
+		case DataType.CHARARRAY:
+			return PrimitiveObjectInspectorFactory.javaStringObjectInspector;
+		case DataType.INTEGER:
+			return PrimitiveObjectInspectorFactory.javaIntObjectInspector;
+		case DataType.LONG:
+			return PrimitiveObjectInspectorFactory.javaLongObjectInspector;
+		default:
+			throw new SerDeException("No Hive type for " + DataType.findTypeName(type));
+		}
+	}
+
+	/* The play's values, as a list the struct inspector reads in place */
+	public Object deserialize(Writable blob) throws SerDeException {
+		try {
+			return ((RetrosheetHiveInputFormat.Row)blob).getTuple().getAll();
+		} catch (ClassCastException e) {
+			throw new SerDeException("RetrosheetSerDe only reads RetrosheetHiveInputFormat rows", e);
+		}
+	}
+
+	public ObjectInspector getObjectInspector() throws SerDeException {
+		return inspector;
+	}
+
+	public SerDeStats getSerDeStats() {
+		return null;
+	}
+}
@@ -0,0 +1,40 @@
+package com.mapr.baseball;
+
+import java.util.*;
+import org.apache.hadoop.conf.*;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Partitioner;
+
+/* Sends every key of a player to the same reducer, so each player's lines
+   of a report end up together in one part file, except for the players
+   listed in retrosheet.reports.hot.  The keys of those, such as every
+   pitcher a busy batter faced, are spread over all the reducers by the
+   whole key instead, so no one reducer gets all of their work.
+*/
+public class RetrosheetSkewPartitioner extends Partitioner<RetrosheetReportKey, RetrosheetReportCounts> implements Configurable {
+	/* Comma separated player ids */
+	public static final String HOT_PLAYERS = "retrosheet.reports.hot";
+
+	private Configuration conf;
+	private final Set<Text> hot = new HashSet<Text>();
+
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+		hot.clear();
+		for(String id : conf.get(HOT_PLAYERS, "").split(",")) {
+			if(id.trim().length() > 0)
+				hot.add(new Text(id.trim()));
+		}
+	}
+
+	public Configuration getConf() {
+		return conf;
+	}
+
+	public int getPartition(RetrosheetReportKey key, RetrosheetReportCounts counts, int partitions) {
+		int hash = key.getPlayer().hashCode();
+		if(hot.contains(key.getPlayer()))
+			hash = key.hashCode();
+		return (hash & Integer.MAX_VALUE) % partitions;
+	}
+}
@@ -0,0 +1,300 @@
+package com.mapr.baseball;
+
+import java.nio.charset.CharacterCodingException;
+import org.apache.hadoop.io.*;
+
+/* Splits a game record into lines and comma separated fields in place.
+
+   The tokenizer never copies the record.  Each call to nextLine() finds the
+   next line in the byte range it was reset() with and records the start and
+   end of every field on that line.  Line types and info keys are resolved
+   with a table lookup on the raw bytes, and integers are parsed directly
+   from the bytes, so a String is only created when fieldString() is called.
+*/
+public class RetrosheetTokenizer {
+
+	public static final int LINE_UNKNOWN = 0;
+	public static final int LINE_ID = 1;
+	public static final int LINE_VERSION = 2;
+	public static final int LINE_INFO = 3;
+	public static final int LINE_START = 4;
+	public static final int LINE_SUB = 5;
+	public static final int LINE_PLAY = 6;
+	public static final int LINE_DATA = 7;
+	public static final int LINE_COM = 8;
+	public static final int LINE_BADJ = 9;
+	public static final int LINE_PADJ = 10;
+	public static final int LINE_LADJ = 11;
+
+	public static final int INFO_UNKNOWN = 0;
+	public static final int INFO_VISTEAM = 1;
+	public static final int INFO_HOMETEAM = 2;
+	public static final int INFO_SITE = 3;
+	public static final int INFO_DATE = 4;
+	public static final int INFO_NUMBER = 5;
+	public static final int INFO_STARTTIME = 6;
+	public static final int INFO_DAYNIGHT = 7;
+	public static final int INFO_USEDH = 8;
+	public static final int INFO_UMPHOME = 9;
+	public static final int INFO_UMP1B = 10;
+	public static final int INFO_UMP2B = 11;
+	public static final int INFO_UMP3B = 12;
+	public static final int INFO_UMPLF = 13;
+	public static final int INFO_UMPRF = 14;
+	public static final int INFO_WP = 15;
+	public static final int INFO_LP = 16;
+	public static final int INFO_SAVE = 17;
+	public static final int INFO_HOWSCORED = 18;
+	public static final int INFO_SCORER = 19;
+	public static final int INFO_INPUTTER = 20;
+	public static final int INFO_TRANSLATOR = 21;
+	public static final int INFO_PITCHES = 22;
+	public static final int INFO_WINDDIR = 23;
+	public static final int INFO_WINDSPEED = 24;
+	public static final int INFO_TEMP = 25;
+	public static final int INFO_SKY = 26;
+	public static final int INFO_FIELDCOND = 27;
+	public static final int INFO_PRECIP = 28;
+	public static final int INFO_ATTENDANCE = 29;
+	public static final int INFO_TIMEOFGAME = 30;
+
+	private static final String[] LINE_TYPES = {
+		null, "id", "version", "info", "start", "sub", "play", "data", "com", "badj", "padj", "ladj"
+	};
+
+	private static final String[] INFO_KEYS = {
+		null, "visteam", "hometeam", "site", "date", "number", "starttime", "daynight", "usedh",
+		"umphome", "ump1b", "ump2b", "ump3b", "umplf", "umprf", "wp", "lp", "save", "howscored",
+		"scorer", "inputter", "translator", "pitches", "winddir", "windspeed", "temp", "sky",
+		"fieldcond", "precip", "attendance", "timeofgame"
+	};
+
+	/* Open addressed lookup tables, indexed by hash() of the key bytes */
+	private static final int TABLE_SIZE = 128;
+	private static final byte[][] lineKeys = new byte[TABLE_SIZE][];
+	private static final int[] lineValues = new int[TABLE_SIZE];
+	private static final byte[][] infoKeys = new byte[TABLE_SIZE][];
+	private static final int[] infoValues = new int[TABLE_SIZE];
+
+	static {
+		for(int i=1;i<LINE_TYPES.length;i++)
+			addKey(lineKeys, lineValues, LINE_TYPES[i], i);
+		for(int i=1;i<INFO_KEYS.length;i++)
+			addKey(infoKeys, infoValues, INFO_KEYS[i], i);
+	}
+
+	private static void addKey(byte[][] keys, int[] values, String key, int value) {
+		byte[] b = key.getBytes();
+		int slot = hash(b, 0, b.length);
+		while(keys[slot] != null)
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		keys[slot] = b;
+		values[slot] = value;
+	}
+
+	private static int hash(byte[] b, int start, int len) {
+		if(len == 0)
+			return 0;
+		return (len * 31 + b[start] * 7 + b[start + len - 1] * 3 + b[start + (len >> 1)]) & (TABLE_SIZE - 1);
+	}
+
+	private static int lookup(byte[][] keys, int[] values, byte[] b, int start, int len) {
+		int slot = hash(b, start, len);
+		while(keys[slot] != null) {
+			byte[] k = keys[slot];
+			if(k.length == len) {
+				int i = 0;
+				while(i < len && k[i] == b[start + i])
+					i++;
+				if(i == len)
+					return values[slot];
+			}
+			slot = (slot + 1) & (TABLE_SIZE - 1);
+		}
+		return 0;
+	}
+
+	private static final int MAX_FIELDS = 16;
+
+	private byte[] buf;
+	private int pos, limit;
+	private int lineStart, lineEnd;
+	private int fieldCount;
+	private final int[] fieldStart = new int[MAX_FIELDS];
+	private final int[] fieldEnd = new int[MAX_FIELDS];
+
+	public void reset(byte[] bytes, int offset, int length) {
+		buf = bytes;
+		pos = offset;
+		limit = offset + length;
+		fieldCount = 0;
+	}
+
+	public void reset(Text t) {
+		reset(t.getBytes(), 0, t.getLength());
+	}
+
+	/* Advance to the next non-empty line.  Returns false at the end of the record. */
+	public boolean nextLine() {
+		while(pos < limit) {
+			lineStart = pos;
+			int end = pos;
+			while(end < limit && buf[end] != '\n')
+				end++;
+			pos = end + 1;
+			while(end > lineStart && buf[end - 1] <= ' ')
+				end--;
+			if(end == lineStart)
+				continue;
+			lineEnd = end;
+			split();
+			return true;
+		}
+		fieldCount = 0;
+		return false;
+	}
+
+	private void split() {
+		fieldCount = 0;
+		int s = lineStart;
+		for(int i=lineStart;i<=lineEnd;i++) {
+			if(i == lineEnd || buf[i] == ',') {
+				if(fieldCount < MAX_FIELDS) {
+					int fs = s, fe = i;
+					while(fs < fe && buf[fs] <= ' ')
+						fs++;
+					while(fe > fs && buf[fe - 1] <= ' ')
+						fe--;
+					fieldStart[fieldCount] = fs;
+					fieldEnd[fieldCount] = fe;
+					fieldCount++;
+				}
+				s = i + 1;
+			}
+		}
+	}
+
+	public byte[] getBytes() {
+		return buf;
+	}
+
+	public int lineStart() {
+		return lineStart;
+	}
+
+	public int lineLength() {
+		return lineEnd - lineStart;
+	}
+
+	public int lineType() {
+		if(fieldCount == 0)
+			return LINE_UNKNOWN;
+		return lookup(lineKeys, lineValues, buf, fieldStart[0], fieldEnd[0] - fieldStart[0]);
+	}
+
+	/* Resolve the key of an info line (the second field) */
+	public int infoKey() {
+		if(fieldCount < 2)
+			return INFO_UNKNOWN;
+		return lookup(infoKeys, infoValues, buf, fieldStart[1], fieldEnd[1] - fieldStart[1]);
+	}
+
+	public int fieldCount() {
+		return fieldCount;
+	}
+
+	public int fieldStart(int field) {
+		checkField(field);
+		return fieldStart[field];
+	}
+
+	public int fieldLength(int field) {
+		checkField(field);
+		return fieldEnd[field] - fieldStart[field];
+	}
+
+	/* Fields that are missing or empty are treated alike, mirroring String.split() */
+	public boolean hasField(int field) {
+		return field < fieldCount && fieldEnd[field] > fieldStart[field];
+	}
+
+	public byte byteAt(int field, int index) {
+		checkField(field);
+		if(index < 0 || index >= fieldEnd[field] - fieldStart[field])
+			throw new IndexOutOfBoundsException("Index " + index + " out of range for field " + field);
+		return buf[fieldStart[field] + index];
+	}
+
+	public boolean fieldEquals(int field, byte[] value) {
+		checkField(field);
+		int len = fieldEnd[field] - fieldStart[field];
+		if(len != value.length)
+			return false;
+		int s = fieldStart[field];
+		for(int i=0;i<len;i++)
+			if(buf[s + i] != value[i])
+				return false;
+		return true;
+	}
+
+	public String fieldString(int field) {
+		checkField(field);
+		return decode(fieldStart[field], fieldEnd[field] - fieldStart[field]);
+	}
+
+	public String fieldString(int field, int from, int to) {
+		checkField(field);
+		if(from < 0 || to > fieldEnd[field] - fieldStart[field] || from > to)
+			throw new IndexOutOfBoundsException("Range " + from + "-" + to + " out of range for field " + field);
+		return decode(fieldStart[field] + from, to - from);
+	}
+
+	public int parseInt(int field) {
+		checkField(field);
+		return parseInt(buf, fieldStart[field], fieldEnd[field]);
+	}
+
+	public int parseInt(int field, int from, int to) {
+		checkField(field);
+		if(from < 0 || to > fieldEnd[field] - fieldStart[field] || from > to)
+			throw new IndexOutOfBoundsException("Range " + from + "-" + to + " out of range for field " + field);
+		return parseInt(buf, fieldStart[field] + from, fieldStart[field] + to);
+	}
+
+	/* Parse a signed decimal integer from b[start, end), with the same failure behavior as Integer.parseInt */
+	public static int parseInt(byte[] b, int start, int end) {
+		if(start >= end)
+			throw new NumberFormatException("Empty number");
+		boolean negative = false;
+		int i = start;
+		if(b[i] == '-' || b[i] == '+') {
+			negative = b[i] == '-';
+			i++;
+			if(i == end)
+				throw new NumberFormatException("Bad number");
+		}
+		int result = 0;
+		for(;i<end;i++) {
+			int d = b[i] - '0';
+			if(d < 0 || d > 9)
+				throw new NumberFormatException("Bad digit in number");
+			if(result > (Integer.MAX_VALUE - d) / 10)
+				throw new NumberFormatException("Number out of range");
+			result = result * 10 + d;
+		}
+		return negative ? -result : result;
+	}
+
+	private String decode(int start, int len) {
+		try {
+			return Text.decode(buf, start, len);
+		} catch (CharacterCodingException e) {
+			throw new IllegalArgumentException("Malformed field bytes", e);
+		}
+	}
+
+	private void checkField(int field) {
+		if(field < 0 || field >= fieldCount)
+			throw new IndexOutOfBoundsException("No field " + field + " on line");
+	}
+}
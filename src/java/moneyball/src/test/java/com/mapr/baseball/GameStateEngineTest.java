@@ -0,0 +1,165 @@
+package com.mapr.baseball;
+
+import java.io.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Replays the sample games through the engine without Pig.
+ */
+public class GameStateEngineTest
+    extends TestCase
+{
+    public GameStateEngineTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( GameStateEngineTest.class );
+    }
+
+    /* Counts what the engine reports */
+    static class CountingVisitor extends GameVisitor
+    {
+        int games, ids, infos, players, plays, errors, lastEvent;
+
+        public void startGame(GameStateEngine engine)
+        {
+            games++;
+        }
+
+        public void gameId(GameStateEngine engine)
+        {
+            ids++;
+        }
+
+        public void info(GameStateEngine engine, int key)
+        {
+            infos++;
+        }
+
+        public void player(GameStateEngine engine, int slot)
+        {
+            players++;
+        }
+
+        public void play(GameStateEngine engine)
+        {
+            plays++;
+            RetrosheetGameState st = engine.getState();
+            assertEquals(lastEvent + 1, st.eventOfGame);
+            assertTrue(engine.isParsed());
+            assertEquals(engine.getDefense()[1], engine.getPitcher());
+            assertEquals(engine.isTop(), !st.home[engine.getBatter()]);
+            lastEvent = st.eventOfGame;
+        }
+
+        public void playError(GameStateEngine engine, Exception e)
+        {
+            errors++;
+        }
+
+        public void endGame(GameStateEngine engine)
+        {
+            lastEvent = 0;
+        }
+    }
+
+    static byte[] sample(String name) throws IOException
+    {
+        InputStream in = GameStateEngineTest.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull("Missing sample file " + name, in);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[8192];
+        int read;
+        while ((read = in.read(buf)) > 0) {
+            out.write(buf, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    static int count(byte[] b, String prefix) throws IOException
+    {
+        int n = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(b), "US-ASCII"));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith(prefix)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    public void testReplaysEveryLine() throws IOException
+    {
+        GameStateEngine engine = new GameStateEngine();
+        for (String name : RetrosheetEventParserTest.SAMPLE_FILES) {
+            byte[] b = sample(name);
+            /* Replay the file one game at a time */
+            CountingVisitor v = new CountingVisitor();
+            String text = new String(b, "US-ASCII");
+            int start = text.indexOf("id,");
+            while (start >= 0) {
+                int next = text.indexOf("\nid,", start);
+                int end = next < 0 ? b.length : next + 1;
+                engine.run(b, start, end - start, v);
+                start = next < 0 ? -1 : end;
+            }
+            assertEquals(count(b, "id,"), v.games);
+            assertEquals(v.games, v.ids);
+            assertEquals(count(b, "start,") + count(b, "sub,"), v.players);
+            assertEquals(count(b, "play,"), v.plays + v.errors);
+            assertTrue(v.plays > 0);
+            assertTrue(v.infos > 0);
+        }
+    }
+
+    public void testCounters() throws IOException
+    {
+        GameStateEngine engine = new GameStateEngine();
+        engine.setTiming(true);
+        byte[] b = sample(RetrosheetEventParserTest.SAMPLE_FILES[0]);
+        /* A lineup line with no batting order, and a play by nobody in the game */
+        String extra = "start,nobo001,\"Nobody\",0,x,7\nplay,9,0,nobo001,00,X,S8\n";
+        String first = new String(b, "US-ASCII");
+        first = first.substring(0, first.indexOf("\nid,") + 1);
+        byte[] game = (first + extra).getBytes("US-ASCII");
+        CountingVisitor v = new CountingVisitor();
+        engine.run(game, 0, game.length, v);
+
+        RetrosheetCounters c = engine.getCounters();
+        assertEquals(1, c.get(RetrosheetCounters.Counter.GAMES));
+        assertEquals(game.length, c.get(RetrosheetCounters.Counter.BYTES));
+        assertEquals(1, c.get(RetrosheetCounters.Counter.ID_LINES));
+        assertEquals(count(game, "play,"), c.get(RetrosheetCounters.Counter.PLAY_LINES));
+        assertEquals(v.plays, c.get(RetrosheetCounters.Counter.PLAYS));
+        assertEquals(1, c.get(RetrosheetCounters.Counter.MALFORMED_LINEUP_LINES));
+        assertEquals(1, c.get(RetrosheetCounters.Counter.BATTER_NOT_IN_LINEUP));
+        assertEquals(1, c.get(RetrosheetCounters.Counter.TIMED_GAMES));
+        assertTrue(c.get(RetrosheetCounters.Counter.TOKENIZE_NANOS) > 0);
+        assertTrue(c.get(RetrosheetCounters.Counter.EVENT_PARSE_NANOS) > 0);
+
+        c.clear();
+        assertEquals(0, c.get(RetrosheetCounters.Counter.GAMES));
+    }
+
+    public void testWithoutPlays() throws IOException
+    {
+        GameStateEngine engine = new GameStateEngine();
+        engine.setTrackPlays(false);
+        CountingVisitor v = new CountingVisitor();
+        byte[] b = sample(RetrosheetEventParserTest.SAMPLE_FILES[0]);
+        engine.run(b, 0, b.length, v);
+        assertEquals(1, v.games);
+        assertEquals(0, v.players);
+        assertEquals(0, v.plays);
+        assertEquals(0, engine.getState().eventOfGame);
+        assertTrue(v.infos > 0);
+    }
+}
@@ -0,0 +1,166 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.fs.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Generates small seasons and replays them through the game state engine.
+ */
+public class RetrosheetCorpusGeneratorTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir;
+
+    public RetrosheetCorpusGeneratorTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetCorpusGeneratorTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("corpus");
+        fs = corpus.fs;
+        dir = corpus.dir;
+    }
+
+    protected void tearDown() throws IOException
+    {
+        corpus.delete();
+    }
+
+    static byte[] read(FileSystem fs, Path file) throws IOException
+    {
+        byte[] b = new byte[(int)fs.getFileStatus(file).getLen()];
+        FSDataInputStream in = fs.open(file);
+        in.readFully(b);
+        in.close();
+        return b;
+    }
+
+    /* Checks that the engine replays each game without errors, and that its
+       final score matches the runs the game's data lines charge to each side */
+    static class ScoreCheck extends GameVisitor
+    {
+        int games, plays, errors, visitorRunsAllowed, homeRunsAllowed;
+
+        public void startGame(GameStateEngine engine)
+        {
+            visitorRunsAllowed = homeRunsAllowed = 0;
+        }
+
+        public void play(GameStateEngine engine)
+        {
+            plays++;
+            if (!engine.isParsed()) {
+                errors++;
+            }
+        }
+
+        public void playError(GameStateEngine engine, Exception e)
+        {
+            errors++;
+        }
+
+        public void malformedLine(GameStateEngine engine, Exception e)
+        {
+            errors++;
+        }
+
+        public void endGame(GameStateEngine engine)
+        {
+            games++;
+        }
+    }
+
+    public void testSeasonReplays() throws IOException
+    {
+        RetrosheetCorpusGenerator generator = new RetrosheetCorpusGenerator(42, 0);
+        List<Path> files = generator.writeSeason(fs, dir, 2011, 6);
+        assertEquals(30, files.size());
+        assertEquals(new Path(dir, "2011BOS.EVA"), files.get(2));
+
+        GameStateEngine engine = new GameStateEngine();
+        ScoreCheck check = new ScoreCheck();
+        int extraInnings = 0, doubleHeaders = 0;
+        for (Path file : files) {
+            byte[] b = read(fs, file);
+            String text = new String(b, "US-ASCII");
+            int start = 0;
+            while (start < b.length) {
+                int next = text.indexOf("\nid,", start);
+                int end = next < 0 ? b.length : next + 1;
+                String game = text.substring(start, end);
+                engine.run(b, start, end - start, check);
+                RetrosheetGameState st = engine.getState();
+
+                /* Runs charged to each side's pitchers */
+                int homeAllowed = 0, visitorAllowed = 0;
+                Set<String> homePitchers = new HashSet<String>();
+                for (String line : game.split("\r\n")) {
+                    String[] f = line.split(",");
+                    if ((f[0].equals("start") || f[0].equals("sub")) && f[5].equals("1") && f[3].equals("1")) {
+                        homePitchers.add(f[1]);
+                    }
+                    if (f[0].equals("data")) {
+                        if (homePitchers.contains(f[2])) {
+                            homeAllowed += Integer.parseInt(f[3]);
+                        } else {
+                            visitorAllowed += Integer.parseInt(f[3]);
+                        }
+                    }
+                    if (f[0].equals("play") && Integer.parseInt(f[1]) > 9) {
+                        extraInnings++;
+                    }
+                    if (line.equals("info,number,2")) {
+                        doubleHeaders++;
+                    }
+                }
+                assertEquals(homeAllowed, st.awayScore);
+                assertEquals(visitorAllowed, st.homeScore);
+                start = end;
+            }
+        }
+        assertEquals(generator.getGames(), check.games);
+        assertEquals(0, check.errors);
+        assertTrue(check.plays > check.games * 60);
+        assertTrue(extraInnings > 0);
+        assertTrue(doubleHeaders > 0);
+    }
+
+    public void testDeterministic() throws IOException
+    {
+        Path a = new Path(dir, "a"), b = new Path(dir, "b");
+        new RetrosheetCorpusGenerator(7, 0.01).writeSeason(fs, a, 2010, 3);
+        new RetrosheetCorpusGenerator(7, 0.01).writeSeason(fs, b, 2010, 3);
+        RetrosheetCorpusGenerator clean = new RetrosheetCorpusGenerator(7, 0);
+        clean.writeSeason(fs, new Path(dir, "c"), 2010, 3);
+        assertTrue(Arrays.equals(read(fs, new Path(a, "2010SEA.EVA")), read(fs, new Path(b, "2010SEA.EVA"))));
+
+        /* Garbling doesn't change the games, only some of their lines */
+        String garbled = new String(read(fs, new Path(a, "2010SEA.EVA")), "US-ASCII");
+        String original = new String(read(fs, new Path(dir, "c/2010SEA.EVA")), "US-ASCII");
+        String[] g = garbled.split("\r\n"), o = original.split("\r\n");
+        assertEquals(o.length, g.length);
+        int different = 0;
+        for (int i = 0; i < o.length; i++) {
+            if (!o[i].equals(g[i])) {
+                assertFalse(o[i].startsWith("id,"));
+                different++;
+            }
+        }
+        assertTrue(different > 0);
+    }
+}
@@ -0,0 +1,160 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+import java.util.regex.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks the event parser against the regular expression RetrosheetLoader
+ * used before it, over every play in the sample corpus.
+ */
+public class RetrosheetEventParserTest
+    extends TestCase
+{
+    static final String[] SAMPLE_FILES = { "sample/2010BOS.EVA", "sample/2010CHN.EVN" };
+
+    /* The event regex from the original RetrosheetLoader.prepareToRead */
+    static final Pattern LEGACY_EVENT_PATTERN = Pattern.compile("([KSDTW]|IW|HR|WP|HP|DGR|NP)?([1-9]?[1-9]?[(1)]*)?(?:/[1-9]*[C]?)?(?:/((?:SH)?B?[GLPF]+\\+?(/IPHR)?)?([1-9]*[LM]?[M]?[RL]?[XL]?[DS]?F?W?))?(/R[1-9])?(?:\\.(.*))?");
+
+    public RetrosheetEventParserTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetEventParserTest.class );
+    }
+
+    static List<String> sampleEvents() throws IOException
+    {
+        List<String> events = new ArrayList<String>();
+        for (String name : SAMPLE_FILES) {
+            InputStream in = RetrosheetEventParserTest.class.getClassLoader().getResourceAsStream(name);
+            assertNotNull("Missing sample file " + name, in);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "US-ASCII"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("play,")) {
+                    events.add(line.split(",")[6].trim());
+                }
+            }
+            reader.close();
+        }
+        return events;
+    }
+
+    static String legacyType(int type)
+    {
+        switch (type) {
+            case RetrosheetEvent.OUT: return null;
+            case RetrosheetEvent.SINGLE: return "S";
+            case RetrosheetEvent.DOUBLE: return "D";
+            case RetrosheetEvent.GROUND_RULE_DOUBLE: return "DGR";
+            case RetrosheetEvent.TRIPLE: return "T";
+            case RetrosheetEvent.HOME_RUN: return "HR";
+            case RetrosheetEvent.STRIKEOUT: return "K";
+            case RetrosheetEvent.WALK: return "W";
+            case RetrosheetEvent.INTENTIONAL_WALK: return "IW";
+            case RetrosheetEvent.HIT_BY_PITCH: return "HP";
+            case RetrosheetEvent.WILD_PITCH: return "WP";
+            case RetrosheetEvent.NO_PLAY: return "NP";
+        }
+        return "?" + type;
+    }
+
+    public void testAgreesWithLegacyRegex() throws IOException
+    {
+        RetrosheetEventParser parser = new RetrosheetEventParser();
+        RetrosheetEvent event = new RetrosheetEvent();
+        int compared = 0;
+
+        for (String ev : sampleEvents()) {
+            byte[] b = ev.getBytes("US-ASCII");
+            assertTrue("Parser rejected " + ev, parser.parse(b, 0, b.length, event));
+
+            Matcher m = LEGACY_EVENT_PATTERN.matcher(ev);
+            if (!m.matches()) {
+                /* The regex only understood a subset of the grammar */
+                continue;
+            }
+            compared++;
+            assertEquals("Play type of " + ev, m.group(1), legacyType(event.type));
+            assertEquals("Fielders of " + ev, m.group(2) == null ? "" : m.group(2), event.fielderString());
+            if (m.group(3) == null) {
+                assertEquals("Trajectory of " + ev, 0, event.trajectory);
+            } else {
+                assertEquals("Trajectory of " + ev, m.group(3).charAt(0), (char)event.trajectory);
+            }
+
+            String advances = m.group(7);
+            String[] moves = advances == null ? new String[0] : advances.split(";");
+            assertEquals("Advances of " + ev, moves.length, event.advanceCount);
+            for (int i = 0; i < moves.length; i++) {
+                String mv = moves[i];
+                int from = mv.charAt(0) == 'B' ? RetrosheetEvent.BATTER : mv.charAt(0) - '0';
+                int to = mv.charAt(2) == 'H' ? RetrosheetEvent.HOME : mv.charAt(2) - '0';
+                assertEquals("Advance from in " + ev, from, event.advanceFrom[i]);
+                assertEquals("Advance to in " + ev, to, event.advanceTo[i]);
+                assertEquals("Advance out in " + ev, mv.charAt(1) == 'X' && mv.indexOf('E') < 0, event.advanceOut[i]);
+            }
+        }
+        assertTrue("Too few events compared: " + compared, compared > 300);
+    }
+
+    public void testGrammarOutsideLegacyRegex() throws IOException
+    {
+        RetrosheetEventParser parser = new RetrosheetEventParser();
+        RetrosheetEvent e = new RetrosheetEvent();
+
+        assertTrue(parse(parser, "64(1)3/GDP/G6.3-H;2-3", e));
+        assertEquals(RetrosheetEvent.OUT, e.type);
+        assertEquals("64(1)3", e.fielderString());
+        assertEquals(3, e.fielderCount);
+        assertEquals(1 << 1, e.putOuts);
+        assertFalse(e.endsWithPutOut);
+        assertEquals(2, e.modifierCount);
+        assertEquals('G', e.trajectory);
+        assertEquals("6", e.locationString());
+        assertEquals(2, e.advanceCount);
+
+        assertTrue(parse(parser, "K+SB2;SB3", e));
+        assertEquals(RetrosheetEvent.STRIKEOUT, e.type);
+        assertEquals(RetrosheetEvent.STOLEN_BASE, e.secondaryType);
+        assertEquals((1 << 2) | (1 << 3), e.secondaryBases);
+
+        assertTrue(parse(parser, "FC5/G.3XH(52);B-1", e));
+        assertEquals(RetrosheetEvent.FIELDERS_CHOICE, e.type);
+        assertTrue(e.advanceOut[0]);
+        assertEquals(RetrosheetEvent.BATTER, e.advanceFrom[1]);
+
+        assertTrue(parse(parser, "CS2(2E4).1-3", e));
+        assertEquals(RetrosheetEvent.CAUGHT_STEALING, e.type);
+        assertTrue(e.runnerSafeOnError);
+
+        assertTrue(parse(parser, "S9/L9S.2-H(E9/TH)(NR);1X3(95)", e));
+        assertTrue(e.advanceError[0]);
+        assertTrue(e.advanceNoRbi[0]);
+        assertFalse(e.advanceOut[0]);
+        assertTrue(e.advanceOut[1]);
+
+        assertTrue(parse(parser, "54(1)/FO/G5.3-H;B-1", e));
+        assertTrue(e.endsWithPutOut);
+        assertTrue(parse(parser, "C/E2.B-1", e));
+        assertEquals(RetrosheetEvent.INTERFERENCE, e.type);
+
+        assertFalse(parse(parser, "XYZ", e));
+        assertFalse(parse(parser, "S8/", e));
+        assertFalse(parse(parser, "S8.1-", e));
+    }
+
+    static boolean parse(RetrosheetEventParser parser, String ev, RetrosheetEvent e) throws IOException
+    {
+        byte[] b = ev.getBytes("US-ASCII");
+        return parser.parse(b, 0, b.length, e);
+    }
+}
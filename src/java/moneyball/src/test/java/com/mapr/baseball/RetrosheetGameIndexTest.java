@@ -0,0 +1,68 @@
+package com.mapr.baseball;
+
+import java.io.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+
+/**
+ * Builds, saves and reloads the game offset index of a sample file.
+ */
+public class RetrosheetGameIndexTest
+    extends TestCase
+{
+    public RetrosheetGameIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetGameIndexTest.class );
+    }
+
+    public void testBuildWriteRead() throws IOException
+    {
+        FileSystem fs = FileSystem.getLocal(new Configuration());
+        Path dir = new Path(System.getProperty("java.io.tmpdir"), "retrosheet-index-test");
+        fs.delete(dir, true);
+        Path file = new Path(dir, "2010BOS.EVA");
+        fs.copyFromLocalFile(new Path(getClass().getClassLoader().getResource("sample/2010BOS.EVA").getPath()), file);
+
+        try {
+            FileStatus status = fs.getFileStatus(file);
+            assertNull(RetrosheetGameIndex.read(fs, status));
+
+            RetrosheetGameIndex index = RetrosheetGameIndex.build(fs, status);
+            assertEquals(4, index.getGameCount());
+            assertEquals(0, index.getOffset(0));
+            byte[] id = new byte[3];
+            FSDataInputStream in = fs.open(file);
+            for (int i = 0; i < index.getGameCount(); i++) {
+                in.readFully(index.getOffset(i), id);
+                assertEquals("id,", new String(id, "US-ASCII"));
+            }
+            in.close();
+
+            index.write(fs, file);
+            RetrosheetGameIndex saved = RetrosheetGameIndex.read(fs, status);
+            assertNotNull(saved);
+            assertEquals(status.getLen(), saved.getFileLength());
+            for (int i = 0; i < index.getGameCount(); i++) {
+                assertEquals(index.getOffset(i), saved.getOffset(i));
+            }
+
+            /* An index for a file of a different length is stale */
+            FSDataOutputStream out = fs.create(file, true);
+            out.write("id,BOS201004040\n".getBytes("US-ASCII"));
+            out.close();
+            assertNull(RetrosheetGameIndex.read(fs, fs.getFileStatus(file)));
+        } finally {
+            fs.delete(dir, true);
+        }
+    }
+}
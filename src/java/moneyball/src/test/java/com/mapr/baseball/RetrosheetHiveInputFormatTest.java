@@ -0,0 +1,102 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapred.*;
+import org.apache.hadoop.hive.serde2.ColumnProjectionUtils;
+import org.apache.pig.data.Tuple;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Reads a generated season the way Hive would, through the mapred API.
+ */
+public class RetrosheetHiveInputFormatTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir;
+
+    public RetrosheetHiveInputFormatTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetHiveInputFormatTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("hive");
+        fs = corpus.fs;
+        dir = corpus.dir;
+        corpus.writeSeason(3, 2011, 3);
+    }
+
+    protected void tearDown() throws IOException
+    {
+        corpus.delete();
+    }
+
+    /* Every row of every split, after sending the splits through write() and readFields() */
+    private List<List<Object>> read(JobConf job) throws IOException
+    {
+        RetrosheetHiveInputFormat format = new RetrosheetHiveInputFormat();
+        List<List<Object>> rows = new ArrayList<List<Object>>();
+        for (InputSplit split : format.getSplits(job, 1)) {
+            DataOutputBuffer out = new DataOutputBuffer();
+            split.write(out);
+            DataInputBuffer in = new DataInputBuffer();
+            in.reset(out.getData(), out.getLength());
+            RetrosheetHiveSplit copy = new RetrosheetHiveSplit();
+            copy.readFields(in);
+            assertEquals(split.toString(), copy.toString());
+
+            RecordReader<LongWritable, RetrosheetHiveInputFormat.Row> reader = format.getRecordReader(copy, job, Reporter.NULL);
+            LongWritable key = reader.createKey();
+            RetrosheetHiveInputFormat.Row value = reader.createValue();
+            while (reader.next(key, value)) {
+                rows.add(new ArrayList<Object>(value.getTuple().getAll()));
+            }
+            reader.close();
+        }
+        return rows;
+    }
+
+    public void testColumnPruning() throws IOException
+    {
+        JobConf job = new JobConf();
+        FileInputFormat.setInputPaths(job, dir);
+        List<List<Object>> all = read(job);
+        assertTrue(all.size() > 1000);
+        assertEquals(RetrosheetLoader.FLAT_FIELDS, all.get(0).size());
+
+        /* Game index splits give the same rows */
+        job.setBoolean(RetrosheetGameIndex.CREATE, true);
+        job.setLong("mapred.max.split.size", 4096);
+        assertEquals(all, read(job));
+
+        int batter = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_CURRENT_BATTER;
+        ArrayList<Integer> ids = new ArrayList<Integer>();
+        ids.add(batter);
+        ids.add(RetrosheetLoader.GAME_ID);
+        ColumnProjectionUtils.setReadColumnIDs(job, ids);
+        List<List<Object>> pruned = read(job);
+        assertEquals(all.size(), pruned.size());
+        for (int i = 0; i < all.size(); i++) {
+            List<Object> row = pruned.get(i);
+            assertEquals(all.get(i).get(batter), row.get(batter));
+            assertEquals(all.get(i).get(RetrosheetLoader.GAME_ID), row.get(RetrosheetLoader.GAME_ID));
+            assertNull(row.get(RetrosheetLoader.GAME_SITE));
+            assertNull(row.get(RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_PITCHER));
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.pig.LoadPushDown;
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.data.BagFactory;
+import org.apache.pig.data.DataBag;
+import org.apache.pig.data.DataByteArray;
+import org.apache.pig.data.DataType;
+import org.apache.pig.data.InterSedesFactory;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+import org.apache.pig.impl.util.UDFContext;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Reads a generated season through the loader, as a map task would.
+ */
+public class RetrosheetLoaderTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir;
+    private List<Path> files;
+    private RetrosheetCorpusGenerator generator;
+
+    public RetrosheetLoaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetLoaderTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("loader");
+        fs = corpus.fs;
+        dir = corpus.dir;
+        generator = new RetrosheetCorpusGenerator(7, 0);
+        files = generator.writeSeason(fs, dir, 2011, 4);
+    }
+
+    protected void tearDown() throws IOException
+    {
+        UDFContext.getUDFContext().addJobConf(null);
+        corpus.delete();
+    }
+
+    /* All the records of the loader over every file, with only the given fields if there are any */
+    private List<Tuple> load(String options, int... required) throws IOException, InterruptedException
+    {
+        List<Tuple> records = new ArrayList<Tuple>();
+        for (Path file : files) {
+            TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+            RetrosheetRecordReader reader = new RetrosheetRecordReader();
+            reader.initialize(new FileSplit(file, 0, fs.getFileStatus(file).getLen(), new String[0]), context);
+            RetrosheetLoader loader = new RetrosheetLoader(options);
+            if (required.length > 0) {
+                List<LoadPushDown.RequiredField> fields = new ArrayList<LoadPushDown.RequiredField>();
+                for (int field : required) {
+                    fields.add(new LoadPushDown.RequiredField(null, field, null, DataType.UNKNOWN));
+                }
+                loader.setUDFContextSignature("test:" + options + ":" + Arrays.toString(required));
+                loader.pushProjection(new LoadPushDown.RequiredFieldList(fields));
+            }
+            loader.prepareToRead(reader, null);
+            Tuple t;
+            while ((t = loader.getNext()) != null) {
+                records.add(t);
+            }
+            reader.close();
+        }
+        return records;
+    }
+
+    /* Totals of the partial counts for each key */
+    private Map<String, Long> sum(List<Tuple> partials) throws IOException
+    {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Tuple t : partials) {
+            String key = String.valueOf(t.get(0));
+            for (int i = 1; i < t.size() - 1; i++) {
+                key += "/" + t.get(i);
+            }
+            Long n = counts.get(key);
+            counts.put(key, (n == null ? 0 : n) + (Long)t.get(t.size() - 1));
+        }
+        return counts;
+    }
+
+    public void testCountMatchesFlat() throws Exception
+    {
+        String[] names = new String[RetrosheetLoader.FLAT_FIELDS];
+        ResourceSchema.ResourceFieldSchema[] fields = new RetrosheetLoader("-flat").getSchema(null, null).getFields();
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+        }
+        int batter = Arrays.asList(names).indexOf("batter");
+        int pitcher = Arrays.asList(names).indexOf("pitcher");
+        int result = Arrays.asList(names).indexOf("play_result");
+
+        Map<String, Long> expected = new HashMap<String, Long>();
+        Map<String, Long> plays = new HashMap<String, Long>();
+        for (Tuple t : load("-flat")) {
+            if ("Home run".equals(t.get(result))) {
+                String key = t.get(batter) + "/" + t.get(pitcher);
+                Long n = expected.get(key);
+                expected.put(key, (n == null ? 0 : n) + 1);
+            }
+            Long n = plays.get(t.get(batter));
+            plays.put((String)t.get(batter), (n == null ? 0 : n) + 1);
+        }
+        assertTrue(expected.size() > 10);
+
+        String options = "-count batter,pitcher -where play_result=\"Home run\"";
+        List<Tuple> partials = load(options);
+        assertEquals(expected, sum(partials));
+        ResourceSchema.ResourceFieldSchema[] schema = new RetrosheetLoader(options).getSchema(null, null).getFields();
+        assertEquals(3, schema.length);
+        assertEquals("batter", schema[0].getName());
+        assertEquals("plays", schema[2].getName());
+
+        /* A small table is flushed many times, with the same totals */
+        partials = load("-count batter");
+        assertEquals(plays, sum(partials));
+        Configuration conf = new Configuration();
+        conf.setInt(RetrosheetLoader.COUNT_ENTRIES, 5);
+        UDFContext.getUDFContext().addJobConf(conf);
+        List<Tuple> small = load("-count batter");
+        assertTrue(small.size() > partials.size());
+        assertEquals(plays, sum(small));
+    }
+
+    public void testNames() throws Exception
+    {
+        Path rosters = new Path(dir, "rosters");
+        RetrosheetPlayerDimension.Builder builder = new RetrosheetPlayerDimension.Builder();
+        for (Path roster : generator.writeRosters(fs, rosters, 2011)) {
+            builder.add(fs, roster);
+        }
+        Path names = new Path(dir, "players.dim");
+        builder.build().write(fs, names);
+        RetrosheetPlayerDimension dimension = RetrosheetPlayerDimension.read(fs, names);
+        assertEquals(30 * 25, dimension.size());
+        assertEquals(-1, dimension.find("nosuch001"));
+
+        List<Tuple> plain = load("-flat");
+        List<Tuple> named = load("-flat -names " + names);
+        assertEquals(plain.size(), named.size());
+        int batter = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_CURRENT_BATTER;
+        int pitcher = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_PITCHER;
+        for (int i = 0; i < named.size(); i++) {
+            Tuple t = named.get(i);
+            assertEquals(RetrosheetLoader.FLAT_FIELDS + 2, t.size());
+            assertEquals(plain.get(i).get(batter), t.get(batter));
+            assertNotNull(t.get(RetrosheetLoader.FLAT_BATTER_NAME));
+            assertEquals(dimension.name((String)t.get(batter)), t.get(RetrosheetLoader.FLAT_BATTER_NAME));
+            assertEquals(dimension.name((String)t.get(pitcher)), t.get(RetrosheetLoader.FLAT_PITCHER_NAME));
+        }
+        ResourceSchema.ResourceFieldSchema[] schema = new RetrosheetLoader("-flat -names " + names).getSchema(null, null).getFields();
+        assertEquals("batter_name", schema[RetrosheetLoader.FLAT_BATTER_NAME].getName());
+
+        /* Game records have the names in their plays */
+        Tuple game = load("-names " + names).get(0);
+        Tuple play = ((DataBag)game.get(RetrosheetLoader.GAME_EVENTS)).iterator().next();
+        assertEquals(dimension.name((String)play.get(RetrosheetLoader.PLAY_CURRENT_BATTER)), play.get(RetrosheetLoader.PLAY_BATTER_NAME));
+    }
+
+    public void testNamesFromMixedDirectory() throws Exception
+    {
+        /* Rosters beside the season's event files, as Retrosheet ships them */
+        List<Path> rosters = generator.writeRosters(fs, dir, 2011);
+        RetrosheetPlayerDimension.Builder builder = new RetrosheetPlayerDimension.Builder();
+        assertEquals(rosters.size(), builder.addRosters(fs, dir));
+        RetrosheetPlayerDimension dimension = builder.build();
+        assertEquals(30 * 25, dimension.size());
+        for (String id : new String[] { "id", "info", "start", "sub", "play", "data" }) {
+            assertEquals(id, -1, dimension.find(id));
+        }
+        try {
+            builder.add(fs, files.get(0));
+            fail("Read " + files.get(0) + " as a roster");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("isn't a roster file"));
+        }
+    }
+
+    public void testPitches() throws Exception
+    {
+        List<Tuple> plays = load("-flat -pitches");
+        int pitches = RetrosheetLoader.FLAT_FIELDS;
+        assertEquals("pitches", new RetrosheetLoader("-flat -pitches").getSchema(null, null).getFields()[pitches].getName());
+        assertTrue(plays.size() > 100);
+        for (Tuple t : plays) {
+            byte[] packed = ((DataByteArray)t.get(pitches)).get();
+            /* Every generated plate appearance ends with the ball in play */
+            assertTrue(packed.length > 0);
+            assertEquals(RetrosheetPitches.TYPE_IN_PLAY, RetrosheetPitches.type(packed[packed.length - 1]));
+        }
+    }
+
+    public void testLazyTuples() throws Exception
+    {
+        TupleFactory factory = TupleFactory.getInstance();
+        List<Tuple> rows = load("-flat -pitches");
+        Tuple row = rows.get(rows.size() / 2);
+        Tuple copy = factory.newTuple(row.getAll());
+        assertEquals(RetrosheetLoader.FLAT_FIELDS + 1, copy.size());
+        assertEquals(copy, row);
+        assertEquals(row, copy);
+        assertNotNull(row.get(RetrosheetLoader.GAME_ID));
+        assertNotNull(row.get(RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_RESULT));
+
+        /* Written the way Pig writes its own tuples, and read back as one */
+        Tuple read = roundTrip(row);
+        assertEquals(copy, read);
+        Tuple game = load("").get(0);
+        Tuple readGame = roundTrip(game);
+        assertEquals(game.size(), readGame.size());
+        assertEquals(game.get(RetrosheetLoader.GAME_ID), readGame.get(RetrosheetLoader.GAME_ID));
+        assertEquals(((DataBag)game.get(RetrosheetLoader.GAME_EVENTS)).size(), ((DataBag)readGame.get(RetrosheetLoader.GAME_EVENTS)).size());
+
+        /* Setting a field leaves the others as they were */
+        row.set(RetrosheetLoader.GAME_ID, "changed");
+        assertEquals("changed", row.get(RetrosheetLoader.GAME_ID));
+        assertEquals(copy.get(RetrosheetLoader.FLAT_FIELDS), row.get(RetrosheetLoader.FLAT_FIELDS));
+
+        /* A projection is the same fields, in the order asked for */
+        int result = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_RESULT;
+        List<Tuple> projected = load("-flat", result, RetrosheetLoader.GAME_ID);
+        List<Tuple> all = load("-flat");
+        assertEquals(all.size(), projected.size());
+        for (int i = 0; i < all.size(); i++) {
+            assertEquals(2, projected.get(i).size());
+            assertEquals(all.get(i).get(result), projected.get(i).get(0));
+            assertEquals(all.get(i).get(RetrosheetLoader.GAME_ID), projected.get(i).get(1));
+        }
+    }
+
+    public void testEventBag() throws Exception
+    {
+        TupleFactory factory = TupleFactory.getInstance();
+        Tuple game = load("-pitches").get(0);
+        DataBag bag = (DataBag)game.get(RetrosheetLoader.GAME_EVENTS);
+        assertTrue(bag instanceof RetrosheetEventBag);
+        List<Tuple> plays = new ArrayList<Tuple>();
+        long copiesSize = 0;
+        for (Tuple t : bag) {
+            Tuple copy = factory.newTuple(t.getAll());
+            plays.add(copy);
+            copiesSize += copy.getMemorySize();
+        }
+        assertTrue(plays.size() > 50);
+        assertEquals(plays.size(), bag.size());
+        /* Columns of bytes and shorts against a tuple of objects per play */
+        assertTrue(bag.getMemorySize() + " vs " + copiesSize, bag.getMemorySize() * 3 < copiesSize);
+
+        /* Spilled plays come back the same, and other tuples come after them */
+        assertEquals(plays.size(), bag.spill());
+        Tuple other = factory.newTuple(1);
+        other.set(0, "other");
+        bag.add(other);
+        plays.add(other);
+        assertEquals(plays.size(), bag.size());
+        Iterator<Tuple> it = bag.iterator();
+        for (Tuple t : plays) {
+            assertEquals(t, it.next());
+        }
+        assertFalse(it.hasNext());
+
+        /* Written as a plain bag */
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bag.write(new DataOutputStream(bytes));
+        DataBag read = (DataBag)InterSedesFactory.getInterSedesInstance().readDatum(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(plays.size(), read.size());
+        it = read.iterator();
+        for (Tuple t : plays) {
+            assertEquals(t, it.next());
+        }
+        bag.clear();
+        assertEquals(0, bag.size());
+    }
+
+    public void testEventBagSpillsAndSorts() throws Exception
+    {
+        Tuple game = load("-pitches").get(0);
+        DataBag bag = (DataBag)game.get(RetrosheetLoader.GAME_EVENTS);
+        List<Tuple> plays = new ArrayList<Tuple>();
+        for (Tuple t : bag) {
+            plays.add(t);
+        }
+        List<Tuple> copies = new ArrayList<Tuple>();
+        for (Tuple t : plays) {
+            copies.add(TupleFactory.getInstance().newTuple(t.getAll()));
+        }
+
+        /* Two spills, then plays still in memory */
+        bag.clear();
+        int half = plays.size() / 2, threeQuarters = plays.size() * 3 / 4;
+        for (int i = 0; i < plays.size(); i++) {
+            bag.add(plays.get(i));
+            if (i + 1 == half || i + 1 == threeQuarters) {
+                assertEquals(i + 1 == half ? half : threeQuarters - half, bag.spill());
+            }
+        }
+        bag.add(plays.get(0));
+        copies.add(copies.get(0));
+        assertEquals(copies.size(), bag.size());
+        Iterator<Tuple> it = bag.iterator();
+        for (Tuple t : copies) {
+            assertTrue(it.hasNext());
+            assertEquals(t, it.next());
+        }
+        assertFalse(it.hasNext());
+
+        /* The same plays in another order, as a plain bag after a shuffle, are equal */
+        List<Tuple> reversed = new ArrayList<Tuple>(copies);
+        Collections.reverse(reversed);
+        DataBag plain = BagFactory.getInstance().newDefaultBag(reversed);
+        assertEquals(0, bag.compareTo(plain));
+        assertEquals(0, plain.compareTo(bag));
+        assertTrue(bag.equals(plain));
+        reversed.remove(0);
+        assertTrue(bag.compareTo(BagFactory.getInstance().newDefaultBag(reversed)) > 0);
+
+        /* Spills are in the temporary directory until the bag is cleared */
+        int spills = spillFiles();
+        assertTrue(spills >= 2);
+        bag.clear();
+        assertEquals(spills - 2, spillFiles());
+    }
+
+    private static int spillFiles()
+    {
+        int count = 0;
+        for (String name : new File(System.getProperty("java.io.tmpdir")).list()) {
+            if (name.startsWith("retrosheet-events")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Tuple roundTrip(Tuple t) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        t.write(new DataOutputStream(bytes));
+        Tuple read = TupleFactory.getInstance().newTuple();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return read;
+    }
+
+    public void testBadOptions()
+    {
+        String[] bad = { "-count nosuchfield", "-where play_result=Out", "-count batter -where \"play_result", "-bogus", "-count batter -names players.dim", "-count batter -pitches" };
+        for (String options : bad) {
+            try {
+                new RetrosheetLoader(options);
+                fail(options);
+            } catch (IllegalArgumentException e) {
+            }
+        }
+    }
+}
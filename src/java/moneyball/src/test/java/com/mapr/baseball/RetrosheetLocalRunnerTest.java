@@ -0,0 +1,146 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.pig.ResourceSchema;
+import org.apache.pig.data.Tuple;
+import org.apache.pig.data.TupleFactory;
+
+/**
+ * Converts the sample event files to CSV and JSON, and checks quoting and nulls.
+ */
+public class RetrosheetLocalRunnerTest
+    extends TestCase
+{
+    private File dir;
+
+    public RetrosheetLocalRunnerTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetLocalRunnerTest.class );
+    }
+
+    protected void setUp()
+    {
+        dir = new File(System.getProperty("java.io.tmpdir"), "local-runner-test-" + System.nanoTime());
+        assertTrue(dir.mkdirs());
+    }
+
+    protected void tearDown()
+    {
+        for (File f : dir.listFiles()) {
+            f.delete();
+        }
+        dir.delete();
+    }
+
+    private List<File> samples()
+    {
+        List<File> files = new ArrayList<File>();
+        for (String name : RetrosheetEventParserTest.SAMPLE_FILES) {
+            files.add(new File(getClass().getClassLoader().getResource(name).getPath()));
+        }
+        return files;
+    }
+
+    private static List<String> lines(File f) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        List<String> lines = new ArrayList<String>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            lines.add(line);
+        }
+        in.close();
+        return lines;
+    }
+
+    /* Split a CSV line, undoing the quoting */
+    private static List<String> fields(String line)
+    {
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted && c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                field.append('"');
+                i++;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private String[] names()
+    {
+        ResourceSchema.ResourceFieldSchema[] fields = new RetrosheetLoader("-flat").getSchema(null, null).getFields();
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+        }
+        return names;
+    }
+
+    public void testQuotingAndNulls() throws Exception
+    {
+        Tuple t = TupleFactory.getInstance().newTuple(Arrays.<Object>asList("BOS201004040", "a,b", null, "say \"hi\"\n", 7));
+        String[] names = names();
+
+        StringBuilder csv = new StringBuilder();
+        new RetrosheetLocalRunner(RetrosheetLocalRunner.CSV, 1).format(t, 0, 5, csv);
+        assertEquals("BOS201004040,\"a,b\",,\"say \"\"hi\"\"\n\",7", csv.toString());
+
+        StringBuilder json = new StringBuilder();
+        new RetrosheetLocalRunner(RetrosheetLocalRunner.JSON, 1).format(t, 0, 5, json);
+        assertEquals("{\"" + names[0] + "\":\"BOS201004040\",\"" + names[1] + "\":\"a,b\",\"" + names[2] + "\":null,\""
+            + names[3] + "\":\"say \\\"hi\\\"\\u000a\",\"" + names[4] + "\":7", json.toString());
+    }
+
+    public void testSampleCorpus() throws Exception
+    {
+        List<File> files = samples();
+        long csvRows = new RetrosheetLocalRunner(RetrosheetLocalRunner.CSV, 2).run(files, dir);
+        long jsonRows = new RetrosheetLocalRunner(RetrosheetLocalRunner.JSON, 2).run(files, dir);
+        assertEquals(csvRows, jsonRows);
+        assertTrue(csvRows > 100);
+
+        /* The columns of summarize_loader.pig, $0 .. $78, without the partition keys */
+        String[] names = names();
+        long rows = 0;
+        for (File in : files) {
+            List<String> csv = lines(new File(dir, in.getName() + ".csv"));
+            List<String> header = fields(csv.get(0));
+            assertEquals(RetrosheetLoader.FLAT_PARTITION_OFFSET, header.size());
+            assertEquals(Arrays.asList(names).subList(0, RetrosheetLoader.FLAT_PARTITION_OFFSET), header);
+            for (String line : csv.subList(1, csv.size())) {
+                assertEquals(line, RetrosheetLoader.FLAT_PARTITION_OFFSET, fields(line).size());
+            }
+            List<String> json = lines(new File(dir, in.getName() + ".json"));
+            assertEquals(csv.size() - 1, json.size());
+            for (String line : json) {
+                assertTrue(line, line.startsWith("{\"" + names[0] + "\":\""));
+                assertTrue(line, line.endsWith("}"));
+                assertFalse(line, line.contains("\"" + names[RetrosheetLoader.FLAT_PARTITION_OFFSET] + "\":"));
+            }
+            rows += json.size();
+        }
+        assertEquals(csvRows, rows);
+    }
+}
@@ -0,0 +1,131 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.fs.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Plans and commits incremental runs over generated seasons.
+ */
+public class RetrosheetManifestTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir, input, output;
+
+    public RetrosheetManifestTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetManifestTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("manifest");
+        fs = corpus.fs;
+        dir = corpus.dir;
+        input = new Path(dir, "input");
+        output = new Path(dir, "output");
+        corpus.writeSeason(5, input, 2010, 1);
+        corpus.writeSeason(5, input, 2011, 1);
+    }
+
+    protected void tearDown() throws IOException
+    {
+        corpus.delete();
+    }
+
+    private Set<Integer> seasons(Integer... years)
+    {
+        return new TreeSet<Integer>(Arrays.asList(years));
+    }
+
+    /* What a Pig run of the season would leave behind */
+    private void stage(int season) throws IOException
+    {
+        Path staged = new Path(new Path(output, RetrosheetManifest.STAGING), Integer.toString(season));
+        fs.create(new Path(staged, "part-m-00000"), true).close();
+    }
+
+    public void testIncrementalRuns() throws IOException
+    {
+        assertEquals(seasons(2010, 2011), RetrosheetManifest.plan(fs, input, output));
+        stage(2010);
+        try {
+            RetrosheetManifest.commit(fs, output);
+            fail("2011 isn't staged");
+        } catch (FileNotFoundException e) {
+        }
+        assertFalse(fs.exists(new Path(output, "2010")));
+        stage(2011);
+        assertEquals(seasons(2010, 2011), RetrosheetManifest.commit(fs, output));
+        assertTrue(fs.exists(new Path(output, "2010/part-m-00000")));
+        assertTrue(fs.exists(new Path(output, "2011/part-m-00000")));
+        assertFalse(fs.exists(new Path(output, RetrosheetManifest.STAGING)));
+
+        /* Nothing new, and touching a file doesn't make it new */
+        assertEquals(seasons(), RetrosheetManifest.plan(fs, input, output));
+        File bos = new File(new Path(input, "2011BOS.EVA").toUri().getPath());
+        assertTrue(bos.setLastModified(bos.lastModified() - 60000));
+        assertEquals(seasons(), RetrosheetManifest.plan(fs, input, output));
+        assertEquals(seasons(), RetrosheetManifest.commit(fs, output));
+
+        /* Files the season script doesn't read */
+        fs.create(new Path(input, "2011ASG.EVE"), true).close();
+        fs.create(new Path(input, "2011BOS.EVA.gz"), true).close();
+        assertEquals(seasons(), RetrosheetManifest.plan(fs, input, output));
+        assertFalse(RetrosheetManifest.isSeasonFile("2011ASG.EVE"));
+        assertTrue(RetrosheetManifest.isSeasonFile("2011NYN.EVN"));
+
+        /* A revised file */
+        byte[] b = RetrosheetCorpusGeneratorTest.read(fs, new Path(input, "2011BOS.EVA"));
+        OutputStream out = fs.create(new Path(input, "2011BOS.EVA"), true);
+        out.write(b);
+        out.write("com,\"revised\"\r\n".getBytes("US-ASCII"));
+        out.close();
+        assertEquals(seasons(2011), RetrosheetManifest.plan(fs, input, output));
+        stage(2011);
+        assertEquals(seasons(2011), RetrosheetManifest.commit(fs, output));
+
+        /* A removed file, then a removed season */
+        fs.delete(new Path(input, "2010NYA.EVA"), false);
+        assertEquals(seasons(2010), RetrosheetManifest.plan(fs, input, output));
+        for (FileStatus file : fs.listStatus(input)) {
+            if (file.getPath().getName().startsWith("2010")) {
+                fs.delete(file.getPath(), false);
+            }
+        }
+        assertEquals(seasons(), RetrosheetManifest.plan(fs, input, output));
+        assertEquals(seasons(2010), RetrosheetManifest.commit(fs, output));
+        assertFalse(fs.exists(new Path(output, "2010")));
+        assertTrue(fs.exists(new Path(output, "2011")));
+        assertEquals(seasons(), RetrosheetManifest.plan(fs, input, output));
+
+        /* A full rebuild plans and swaps in every season */
+        assertEquals(seasons(2011), RetrosheetManifest.plan(fs, input, output, true));
+        stage(2011);
+        assertEquals(seasons(2011), RetrosheetManifest.commit(fs, output));
+        assertFalse(fs.exists(new Path(output, RetrosheetManifest.STAGING)));
+    }
+
+    public void testRefusesFlatSummary() throws IOException
+    {
+        fs.create(new Path(output, "part-m-00000"), true).close();
+        try {
+            RetrosheetManifest.plan(fs, input, output);
+            fail("Planned seasons next to a flat summary");
+        } catch (IOException e) {
+        }
+        assertFalse(fs.exists(new Path(output, RetrosheetManifest.PENDING)));
+    }
+}
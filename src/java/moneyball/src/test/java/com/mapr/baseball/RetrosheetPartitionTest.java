@@ -0,0 +1,117 @@
+package com.mapr.baseball;
+
+import java.io.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.*;
+
+/**
+ * Partition values from file names, and partition filters pushed down by Pig.
+ */
+public class RetrosheetPartitionTest
+    extends TestCase
+{
+    public RetrosheetPartitionTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetPartitionTest.class );
+    }
+
+    public void testParse()
+    {
+        RetrosheetPartition p = RetrosheetPartition.parse("2010BOS.EVA");
+        assertEquals(Integer.valueOf(2010), p.getYear());
+        assertEquals("BOS", p.getTeam());
+        assertEquals("AL", p.getLeague());
+        assertEquals("NL", RetrosheetPartition.parse(new Path("/projects/baseball/1998CHN.EVN")).getLeague());
+        assertNull(RetrosheetPartition.parse("2010WS.EVE").getLeague());
+        assertNull(RetrosheetPartition.parse("baseball"));
+        assertNull(RetrosheetPartition.parse("2010BOS.ROS"));
+        assertEquals("BOS", RetrosheetPartition.parse("2010BOS.EVA.gz").getTeam());
+    }
+
+    static Expression eq(String column, Object value)
+    {
+        return new BinaryExpression(new Column(column), new Const(value), OpType.OP_EQ);
+    }
+
+    public void testFilter() throws IOException
+    {
+        /* (year >= 2009 and team == 'BOS') or league == 'NL' */
+        Expression e = new BinaryExpression(
+            new BinaryExpression(
+                new BinaryExpression(new Column("year"), new Const(2009), OpType.OP_GE),
+                eq("team", "BOS"), OpType.OP_AND),
+            eq("league", "NL"), OpType.OP_OR);
+        RetrosheetPartitionFilter filter = RetrosheetPartitionFilter.deserialize(RetrosheetPartitionFilter.fromExpression(e).serialize());
+
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2008BOS.EVA")));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010NYA.EVA")));
+        assertTrue(filter.matches(RetrosheetPartition.parse("1950CHN.EVN")));
+        /* No league, so the comparison fails */
+        assertFalse(filter.matches(RetrosheetPartition.parse("2008WS.EVE")));
+
+        Configuration conf = new Configuration();
+        conf.set(RetrosheetPartitionFilter.FILTER, RetrosheetPartitionFilter.fromExpression(eq("year", 2010)).serialize());
+        RetrosheetPartitionFilter.Paths paths = new RetrosheetPartitionFilter.Paths();
+        paths.setConf(conf);
+        assertTrue(paths.accept(new Path("/projects/baseball")));
+        assertTrue(paths.accept(new Path("/projects/baseball/2010CHN.EVN")));
+        assertFalse(paths.accept(new Path("/projects/baseball/2011CHN.EVN")));
+    }
+
+    public void testMatchNotAndNull() throws IOException
+    {
+        /* team matches 'B.*' */
+        Expression match = new BinaryExpression(new Column("team"), new Const("B.*"), OpType.OP_MATCH);
+        RetrosheetPartitionFilter filter = RetrosheetPartitionFilter.deserialize(RetrosheetPartitionFilter.fromExpression(match).serialize());
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010BAL.EVA")));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010NYA.EVA")));
+        /* The whole value has to match */
+        filter = RetrosheetPartitionFilter.fromExpression(new BinaryExpression(new Column("team"), new Const("B"), OpType.OP_MATCH));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+
+        /* not (team matches 'B.*') */
+        filter = RetrosheetPartitionFilter.fromExpression(new UnaryExpression(match, OpType.OP_NOT));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010NYA.EVA")));
+
+        /* league is null */
+        Expression noLeague = new UnaryExpression(new Column("league"), OpType.OP_NULL);
+        filter = RetrosheetPartitionFilter.fromExpression(noLeague);
+        assertTrue(filter.matches(RetrosheetPartition.parse("2008WS.EVE")));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+
+        /* not (league == 'AL') is null, not true, for a file with no league */
+        filter = RetrosheetPartitionFilter.fromExpression(new UnaryExpression(eq("league", "AL"), OpType.OP_NOT));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2008WS.EVE")));
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010CHN.EVN")));
+
+        /* but (league is null) or league == 'AL' is true for it */
+        filter = RetrosheetPartitionFilter.fromExpression(new BinaryExpression(noLeague, eq("league", "AL"), OpType.OP_OR));
+        assertTrue(filter.matches(RetrosheetPartition.parse("2008WS.EVE")));
+        assertTrue(filter.matches(RetrosheetPartition.parse("2010BOS.EVA")));
+        assertFalse(filter.matches(RetrosheetPartition.parse("2010CHN.EVN")));
+    }
+
+    public void testRejectsOtherColumns()
+    {
+        try {
+            RetrosheetPartitionFilter.fromExpression(eq("game_id", "BOS201004040"));
+            fail("Expected IOException");
+        } catch (IOException e) {
+        }
+    }
+}
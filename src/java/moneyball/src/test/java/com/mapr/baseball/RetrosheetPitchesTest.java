@@ -0,0 +1,89 @@
+package com.mapr.baseball;
+
+import java.io.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.pig.data.*;
+
+/**
+ * Packs pitch sequences and reads them back with the pitch UDFs.
+ */
+public class RetrosheetPitchesTest
+    extends TestCase
+{
+    public RetrosheetPitchesTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetPitchesTest.class );
+    }
+
+    private static byte[] encode(String sequence) throws IOException
+    {
+        byte[] b = sequence.getBytes("US-ASCII");
+        return RetrosheetPitches.encode(b, 0, b.length);
+    }
+
+    private static Tuple args(byte[] packed, Object... more)
+    {
+        Tuple t = TupleFactory.getInstance().newTuple(1 + more.length);
+        try {
+            t.set(0, new DataByteArray(packed));
+            for (int i = 0; i < more.length; i++) {
+                t.set(i + 1, more[i]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return t;
+    }
+
+    public void testEncode() throws IOException
+    {
+        byte[] packed = encode("CB*B>X");
+        assertEquals(4, packed.length);
+        assertEquals(RetrosheetPitches.TYPE_CALLED_STRIKE, RetrosheetPitches.type(packed[0]));
+        assertTrue(RetrosheetPitches.hasModifier(packed[2], RetrosheetPitches.BLOCKED));
+        assertTrue(RetrosheetPitches.hasModifier(packed[3], RetrosheetPitches.RUNNER_GOING));
+        assertEquals(RetrosheetPitches.TYPE_IN_PLAY, RetrosheetPitches.type(packed[3]));
+        assertEquals("CB*B>X", RetrosheetPitches.decode(packed));
+
+        /* Pickoff throws mark the next pitch, and no-pitches aren't counted */
+        packed = encode("B1S+2NFFX");
+        assertEquals(6, packed.length);
+        assertTrue(RetrosheetPitches.hasModifier(packed[1], RetrosheetPitches.THROW_BEFORE));
+        assertEquals(5, RetrosheetPitches.pitchCount(packed));
+        /* Which throws, and how many, aren't kept */
+        assertEquals("B.S.NFFX", RetrosheetPitches.decode(packed));
+        assertEquals(0, encode("").length);
+    }
+
+    public void testCount() throws IOException
+    {
+        byte[] packed = encode("BCFFFBX");
+        assertEquals(0, RetrosheetPitches.countBefore(packed, 0));
+        assertEquals(10, RetrosheetPitches.countBefore(packed, 1));
+        assertEquals(12, RetrosheetPitches.countBefore(packed, 3));
+        /* Fouls with two strikes don't add a strike */
+        assertEquals(12, RetrosheetPitches.countBefore(packed, 5));
+        assertEquals(22, RetrosheetPitches.countBefore(packed, 6));
+        assertEquals(-1, RetrosheetPitches.countBefore(packed, 7));
+    }
+
+    public void testFunctions() throws IOException
+    {
+        byte[] packed = encode("NBCFX");
+        assertEquals(Integer.valueOf(4), new RetrosheetPitchCount().exec(args(packed)));
+        assertEquals("Ball", new RetrosheetFirstPitch().exec(args(packed)));
+        assertEquals("1-2", new RetrosheetCountAtPitch().exec(args(packed, 4)));
+        assertNull(new RetrosheetCountAtPitch().exec(args(packed, 5)));
+        assertNull(new RetrosheetFirstPitch().exec(args(new byte[0])));
+        assertNull(new RetrosheetPitchCount().exec(TupleFactory.getInstance().newTuple(1)));
+    }
+}
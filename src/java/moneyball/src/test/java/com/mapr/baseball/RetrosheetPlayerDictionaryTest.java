@@ -0,0 +1,50 @@
+package com.mapr.baseball;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Unit test for interning player ids.
+ */
+public class RetrosheetPlayerDictionaryTest
+    extends TestCase
+{
+    public RetrosheetPlayerDictionaryTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetPlayerDictionaryTest.class );
+    }
+
+    public void testInternAndLookup() throws Exception
+    {
+        RetrosheetPlayerDictionary dict = new RetrosheetPlayerDictionary();
+        byte[] line = "start,pedrd001,\"Dustin Pedroia\",1,2,4".getBytes("US-ASCII");
+
+        int code = dict.intern(line, 6, 8);
+        assertEquals(code, dict.intern("pedrd001".getBytes("US-ASCII"), 0, 8));
+        assertEquals(code, dict.lookup(line, 6, 8));
+        assertEquals("pedrd001", dict.id(code));
+        assertSame(dict.id(code), dict.id(code));
+        assertEquals(-1, dict.lookup("ortid001".getBytes("US-ASCII"), 0, 8));
+    }
+
+    public void testGrowth() throws Exception
+    {
+        RetrosheetPlayerDictionary dict = new RetrosheetPlayerDictionary();
+        for (int i = 0; i < 5000; i++) {
+            byte[] id = String.format("play%04d", i).getBytes("US-ASCII");
+            assertEquals(i, dict.intern(id, 0, id.length));
+        }
+        assertEquals(5000, dict.size());
+        for (int i = 0; i < 5000; i++) {
+            byte[] id = String.format("play%04d", i).getBytes("US-ASCII");
+            assertEquals(i, dict.lookup(id, 0, id.length));
+            assertEquals(new String(id, "US-ASCII"), dict.id(i));
+        }
+    }
+}
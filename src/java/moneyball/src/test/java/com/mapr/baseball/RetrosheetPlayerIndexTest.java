@@ -0,0 +1,186 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Looks up a player in a hand built index, and reads back just that player's games.
+ */
+public class RetrosheetPlayerIndexTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir;
+
+    public RetrosheetPlayerIndexTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetPlayerIndexTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("player-index");
+        fs = corpus.fs;
+        dir = corpus.dir;
+    }
+
+    protected void tearDown() throws IOException
+    {
+        corpus.delete();
+    }
+
+    public void testPlayers() throws IOException
+    {
+        byte[] game = ("id,BOS201004050\ninfo,visteam,NYA\nstart,jeted001,\"Derek Jeter\",0,1,6\r\n"
+            + "play,1,0,jeted001,01,CX,8/F\nsub,parkc002,\"Chan Ho Park\",0,0,1\nsubstitute,nobody01\n"
+            + "start,jeted001,\"Derek Jeter\",0,1,6\nstart").getBytes("US-ASCII");
+        Set<String> ids = new TreeSet<String>();
+        RetrosheetPlayerIndex.players(game, 0, game.length, ids);
+        assertEquals(new TreeSet<String>(Arrays.asList("jeted001", "parkc002")), ids);
+    }
+
+    public void testGamesWritable() throws IOException
+    {
+        RetrosheetPlayerIndex.Games games = new RetrosheetPlayerIndex.Games();
+        games.add("file:/a/2010BOS.EVA", 9000, 4000, 1000);
+        games.add("file:/a/2010BOS.EVA", 9000, 0, 2000);
+        RetrosheetPlayerIndex.Games more = new RetrosheetPlayerIndex.Games();
+        more.add("file:/a/2010NYA.EVA", 500, 100, 400);
+        games.addAll(more);
+        DataOutputBuffer out = new DataOutputBuffer();
+        games.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        RetrosheetPlayerIndex.Games read = new RetrosheetPlayerIndex.Games();
+        read.add("file:/stale", 1, 1, 1);
+        read.readFields(in);
+        assertEquals(3, read.getGameCount());
+        assertEquals(games.toString(), read.toString());
+        assertEquals(9000, read.getFileLength("file:/a/2010BOS.EVA"));
+        assertEquals(Long.valueOf(0), read.getGames("file:/a/2010BOS.EVA").firstKey());
+        assertNull(read.getGames("file:/stale"));
+    }
+
+    public void testIndexedSplits() throws Exception
+    {
+        Configuration conf = new Configuration();
+        Path events = new Path(dir, "events");
+        List<Path> files = corpus.writeSeason(5, events, 2011, 4);
+
+        /* Index every game the way the job does, into two parts */
+        SortedMap<String, RetrosheetPlayerIndex.Games> index = new TreeMap<String, RetrosheetPlayerIndex.Games>();
+        Map<String, Set<String>> expected = new HashMap<String, Set<String>>();
+        long total = 0;
+        for (Path file : files) {
+            long length = fs.getFileStatus(file).getLen();
+            total += length;
+            String name = fs.makeQualified(file).toString();
+            for (Map.Entry<Long, String> game : games(new FileSplit(file, 0, length, new String[0])).entrySet()) {
+                Set<String> ids = new HashSet<String>();
+                byte[] b = game.getValue().getBytes("US-ASCII");
+                RetrosheetPlayerIndex.players(b, 0, b.length, ids);
+                for (String id : ids) {
+                    if (!index.containsKey(id)) {
+                        index.put(id, new RetrosheetPlayerIndex.Games());
+                        expected.put(id, new HashSet<String>());
+                    }
+                    index.get(id).add(name, length, game.getKey(), b.length);
+                    expected.get(id).add(game.getValue());
+                }
+            }
+        }
+        Path indexDir = new Path(dir, "index");
+        MapFile.Writer[] parts = new MapFile.Writer[2];
+        for (int i = 0; i < parts.length; i++) {
+            parts[i] = new MapFile.Writer(conf, fs, new Path(indexDir, "part-r-0000" + i).toString(), Text.class, RetrosheetPlayerIndex.Games.class);
+        }
+        for (Map.Entry<String, RetrosheetPlayerIndex.Games> e : index.entrySet()) {
+            Text key = new Text(e.getKey());
+            parts[(key.hashCode() & Integer.MAX_VALUE) % parts.length].append(key, e.getValue());
+        }
+        for (MapFile.Writer part : parts) {
+            part.close();
+        }
+
+        /* The busiest player, and one who isn't there */
+        String player = null;
+        for (String id : index.keySet()) {
+            if (player == null || expected.get(id).size() > expected.get(player).size()) {
+                player = id;
+            }
+        }
+        assertEquals(0, RetrosheetPlayerIndex.lookup(conf, indexDir, "nobody01").getGameCount());
+        assertEquals(expected.get(player).size(), RetrosheetPlayerIndex.lookup(conf, indexDir, player).getGameCount());
+
+        Job job = new Job(conf);
+        job.getConfiguration().set(RetrosheetPlayerIndex.PLAYER, player);
+        job.getConfiguration().set(RetrosheetPlayerIndex.INDEX, indexDir.toString());
+        FileInputFormat.setInputPaths(job, events);
+        List<InputSplit> splits = new RetrosheetInputFormat().getSplits(job);
+        Set<String> read = new HashSet<String>();
+        long bytes = 0;
+        int games = 0;
+        for (InputSplit split : splits) {
+            RetrosheetGameSplit s = (RetrosheetGameSplit)split;
+            Collection<String> got = games(s).values();
+            assertEquals(s.getGames(), got.size());
+            read.addAll(got);
+            bytes += s.getLength();
+            games += s.getGames();
+        }
+        assertEquals(expected.get(player), read);
+        assertEquals(read.size(), games);
+        /* Back to back games of a file are read as one split */
+        assertTrue(splits.size() < games);
+        assertTrue(bytes < total / 2);
+
+        /* Nothing for a player outside the listed files */
+        FileInputFormat.setInputPaths(job, new Path(dir, "nothing"));
+        fs.mkdirs(new Path(dir, "nothing"));
+        assertEquals(0, new RetrosheetInputFormat().getSplits(job).size());
+
+        /* A file that changed since the index was built is refused */
+        FileInputFormat.setInputPaths(job, events);
+        Path changed = new Path(index.get(player).getFiles().iterator().next());
+        FSDataOutputStream out = fs.create(changed, true);
+        out.write("id,XXX201104010\n".getBytes("US-ASCII"));
+        out.close();
+        try {
+            new RetrosheetInputFormat().getSplits(job);
+            fail("Read a file changed since it was indexed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("build it again"));
+        }
+    }
+
+    /* Text of every game of the split, by offset */
+    private SortedMap<Long, String> games(FileSplit split) throws IOException, InterruptedException
+    {
+        TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+        RetrosheetRecordReader reader = new RetrosheetRecordReader();
+        reader.initialize(split, context);
+        SortedMap<Long, String> games = new TreeMap<Long, String>();
+        while (reader.nextKeyValue()) {
+            games.put(reader.getCurrentKey().get(), reader.getCurrentValue().toString());
+        }
+        reader.close();
+        return games;
+    }
+}
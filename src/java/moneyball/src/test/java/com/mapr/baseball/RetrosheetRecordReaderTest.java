@@ -0,0 +1,170 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.io.compress.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.util.ReflectionUtils;
+
+/**
+ * Reads the same games from plain and compressed copies of an event file.
+ */
+public class RetrosheetRecordReaderTest
+    extends TestCase
+{
+    private RetrosheetTestCorpus corpus;
+    private FileSystem fs;
+    private Path dir;
+
+    public RetrosheetRecordReaderTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetRecordReaderTest.class );
+    }
+
+    protected void setUp() throws IOException
+    {
+        corpus = new RetrosheetTestCorpus("reader");
+        fs = corpus.fs;
+        dir = corpus.dir;
+    }
+
+    protected void tearDown() throws IOException
+    {
+        corpus.delete();
+    }
+
+    /* Key and text of every game in the file */
+    private List<String> read(Path file) throws IOException, InterruptedException
+    {
+        Configuration conf = new Configuration();
+        /* A small buffer, so that it has to be refilled and grown */
+        conf.setInt(RetrosheetRecordReader.BUFFER_SIZE, 1024);
+        TaskAttemptContext context = new TaskAttemptContext(conf, new TaskAttemptID());
+        RetrosheetRecordReader reader = new RetrosheetRecordReader();
+        reader.initialize(new FileSplit(file, 0, fs.getFileStatus(file).getLen(), new String[0]), context);
+        List<String> games = new ArrayList<String>();
+        while (reader.nextKeyValue()) {
+            games.add(reader.getCurrentKey().get() + ":" + reader.getCurrentValue());
+        }
+        assertTrue(reader.getProgress() > 0.5f);
+        reader.close();
+        return games;
+    }
+
+    /* Key and text of every game the reader returns for the split [start, end) */
+    private List<String> read(Path file, long start, long end) throws IOException, InterruptedException
+    {
+        Configuration conf = new Configuration();
+        conf.setInt(RetrosheetRecordReader.BUFFER_SIZE, 1024);
+        TaskAttemptContext context = new TaskAttemptContext(conf, new TaskAttemptID());
+        RetrosheetRecordReader reader = new RetrosheetRecordReader();
+        reader.initialize(new FileSplit(file, start, end - start, new String[0]), context);
+        List<String> games = new ArrayList<String>();
+        while (reader.nextKeyValue()) {
+            games.add(reader.getCurrentKey().get() + ":" + reader.getCurrentValue());
+        }
+        reader.close();
+        return games;
+    }
+
+    /* Games of the file read as splits cut at the given offsets */
+    private List<String> readSplits(Path file, long length, long... cuts) throws IOException, InterruptedException
+    {
+        List<String> games = new ArrayList<String>();
+        long start = 0;
+        for (long cut : cuts) {
+            games.addAll(read(file, start, cut));
+            start = cut;
+        }
+        games.addAll(read(file, start, length));
+        return games;
+    }
+
+    public void testSplitBoundaries() throws Exception
+    {
+        Path file = corpus.writeSeason(7, 2011, 6).get(0);
+        long length = fs.getFileStatus(file).getLen();
+        List<String> whole = read(file);
+        assertTrue(whole.size() > 4);
+
+        /* Cut exactly on each id line, one byte either side, and on its newline */
+        List<Long> cuts = new ArrayList<Long>();
+        for (String game : whole) {
+            long offset = Long.parseLong(game.substring(0, game.indexOf(':')));
+            for (long d = -2; d <= 2; d++) {
+                if (offset + d > 0 && offset + d < length) {
+                    cuts.add(offset + d);
+                }
+            }
+        }
+        cuts.add(1L);
+        cuts.add(length - 1);
+        for (long cut : cuts) {
+            assertEquals("cut at " + cut, whole, readSplits(file, length, cut));
+        }
+
+        /* Many splits at once, some of them inside a single game */
+        Random random = new Random(7);
+        for (int layout = 0; layout < 50; layout++) {
+            TreeSet<Long> points = new TreeSet<Long>();
+            int n = 1 + random.nextInt(12);
+            for (int i = 0; i < n; i++) {
+                points.add(random.nextBoolean() ? 1 + (long)(random.nextDouble() * (length - 2)) : cuts.get(random.nextInt(cuts.size())));
+            }
+            long[] layoutCuts = new long[points.size()];
+            int i = 0;
+            for (long p : points) {
+                layoutCuts[i++] = p;
+            }
+            assertEquals("cuts at " + points, whole, readSplits(file, length, layoutCuts));
+        }
+    }
+
+    private Path compress(Path file, CompressionCodec codec) throws IOException
+    {
+        Path out = new Path(file.getParent(), file.getName() + codec.getDefaultExtension());
+        InputStream in = fs.open(file);
+        OutputStream os = codec.createOutputStream(fs.create(out));
+        IOUtils.copyBytes(in, os, 4096, true);
+        return out;
+    }
+
+    public void testCompressed() throws Exception
+    {
+        Path file = corpus.writeSeason(3, 2011, 3).get(0);
+        List<String> plain = read(file);
+        assertTrue(plain.size() > 1);
+
+        Configuration conf = new Configuration();
+        Path gz = compress(file, ReflectionUtils.newInstance(GzipCodec.class, conf));
+        Path bz2 = compress(file, ReflectionUtils.newInstance(BZip2Codec.class, conf));
+        assertTrue(fs.getFileStatus(gz).getLen() < fs.getFileStatus(file).getLen());
+        assertEquals(plain, read(gz));
+        assertEquals(plain, read(bz2));
+
+        /* Compressed files are never split, so they aren't indexed either */
+        RetrosheetInputFormat format = new RetrosheetInputFormat();
+        Job job = new Job(conf);
+        job.getConfiguration().setBoolean(RetrosheetGameIndex.CREATE, true);
+        FileInputFormat.setInputPaths(job, gz);
+        List<InputSplit> splits = format.getSplits(job);
+        assertEquals(1, splits.size());
+        assertEquals(0, ((FileSplit)splits.get(0)).getStart());
+        assertFalse(fs.exists(RetrosheetGameIndex.indexPath(gz)));
+    }
+}
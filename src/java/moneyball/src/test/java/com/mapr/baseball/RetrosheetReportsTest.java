@@ -0,0 +1,208 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+import org.apache.hadoop.io.*;
+import org.apache.hadoop.mapreduce.*;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.pig.data.Tuple;
+
+/**
+ * Checks the report keys sort the same on bytes as in memory, and that the
+ * reports count what the loader returns.
+ */
+public class RetrosheetReportsTest
+    extends TestCase
+{
+    public RetrosheetReportsTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetReportsTest.class );
+    }
+
+    private static byte[] bytes(Writable w) throws IOException
+    {
+        DataOutputBuffer out = new DataOutputBuffer();
+        w.write(out);
+        return Arrays.copyOf(out.getData(), out.getLength());
+    }
+
+    public void testRawComparator() throws IOException
+    {
+        RetrosheetReportKey[] keys = {
+            new RetrosheetReportKey("pedrd001", "", RetrosheetReportKey.NO_DETAIL),
+            new RetrosheetReportKey("pedrd001", "", 0),
+            new RetrosheetReportKey("pedrd001", "", 7),
+            new RetrosheetReportKey("pedrd001", "", RetrosheetReportKey.fielding(RetrosheetReportKey.RIGHT_CENTER, RetrosheetReportKey.DEEP, RetrosheetReportKey.WALK)),
+            new RetrosheetReportKey("pedrd001", "beckj002", RetrosheetReportKey.NO_DETAIL),
+            new RetrosheetReportKey("pedrd001", "lestj001", RetrosheetReportKey.NO_DETAIL),
+            new RetrosheetReportKey("pedrd0010", "", RetrosheetReportKey.NO_DETAIL),
+            new RetrosheetReportKey("ortid001", "beckj002", 3),
+            new RetrosheetReportKey("", "", RetrosheetReportKey.NO_DETAIL),
+        };
+        WritableComparator raw = WritableComparator.get(RetrosheetReportKey.class);
+        assertTrue(raw instanceof RetrosheetReportKey.Comparator);
+        for (RetrosheetReportKey a : keys) {
+            byte[] ab = bytes(a);
+            RetrosheetReportKey read = new RetrosheetReportKey();
+            read.readFields(new DataInputStream(new ByteArrayInputStream(ab)));
+            assertEquals(a, read);
+            for (RetrosheetReportKey b : keys) {
+                byte[] bb = bytes(b);
+                assertEquals(a + " vs " + b, Integer.signum(a.compareTo(b)), Integer.signum(raw.compare(ab, 0, ab.length, bb, 0, bb.length)));
+            }
+        }
+        assertEquals("pedrd001,beckj002", keys[4].toString());
+        assertEquals("pedrd001,unknown,short,single", keys[2].toString());
+        assertEquals("pedrd001,right center,deep,walk", keys[3].toString());
+    }
+
+    public void testCounts() throws IOException
+    {
+        RetrosheetReportCounts a = new RetrosheetReportCounts(3);
+        a.set(0, 1);
+        a.set(2, 1L << 40);
+        RetrosheetReportCounts read = new RetrosheetReportCounts();
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes(a))));
+        assertEquals("1,0,1099511627776", read.toString());
+        read.add(a);
+        assertEquals(2, read.get(0));
+        read.clear(3);
+        assertEquals("0,0,0", read.toString());
+    }
+
+    public void testSkewPartitioner()
+    {
+        Configuration conf = new Configuration();
+        conf.set(RetrosheetSkewPartitioner.HOT_PLAYERS, "hotp001, busy001");
+        RetrosheetSkewPartitioner partitioner = new RetrosheetSkewPartitioner();
+        partitioner.setConf(conf);
+        Set<Integer> normal = new HashSet<Integer>();
+        Set<Integer> hot = new HashSet<Integer>();
+        for (int i = 0; i < 100; i++) {
+            String pitcher = "pitc" + (1000 + i);
+            normal.add(partitioner.getPartition(new RetrosheetReportKey("cold001", pitcher, RetrosheetReportKey.NO_DETAIL), null, 8));
+            hot.add(partitioner.getPartition(new RetrosheetReportKey("hotp001", pitcher, RetrosheetReportKey.NO_DETAIL), null, 8));
+        }
+        /* A player's keys stay together, unless the player is hot */
+        assertEquals(1, normal.size());
+        assertTrue(hot.size() > 4);
+    }
+
+    /* position,placement,result of the fielding report, or null if the play isn't counted */
+    private static String fielding(String play) throws IOException
+    {
+        RetrosheetEvent event = new RetrosheetEvent();
+        byte[] b = play.getBytes("US-ASCII");
+        assertTrue(play, new RetrosheetEventParser().parse(b, 0, b.length, event));
+        int result = RetrosheetReports.result(event.type);
+        if (result < 0) {
+            return null;
+        }
+        int detail = RetrosheetReportKey.fielding(RetrosheetReports.position(event), RetrosheetReports.placement(event), result);
+        return RetrosheetReportKey.fieldingString(detail);
+    }
+
+    public void testFielding() throws IOException
+    {
+        assertEquals("shortstop,,out", fielding("64(1)3/GDP/G6.3-H;2-3"));
+        assertEquals("left center,,double", fielding("D78/L"));
+        assertEquals("left field,deep,single", fielding("S7/L7D"));
+        assertEquals("right center,short,single", fielding("S/L89S"));
+        assertEquals("right field,,home run", fielding("HR9/F9"));
+        assertEquals("unknown,,home run", fielding("HR/F"));
+        assertEquals("center field,,double", fielding("DGR8"));
+        assertEquals("unknown,,out", fielding("K"));
+        assertEquals("shortstop,,out", fielding("E6/G6"));
+        assertEquals("unknown,,walk", fielding("IW"));
+        assertNull(fielding("SB2"));
+        assertNull(fielding("DI.1-2"));
+        assertNull(fielding("HP"));
+    }
+
+    public void testReportsMatchLoader() throws Exception
+    {
+        RetrosheetTestCorpus corpus = new RetrosheetTestCorpus("reports");
+        FileSystem fs = corpus.fs;
+        try {
+            List<Path> files = corpus.writeSeason(11, 2011, 4);
+            final Map<String, Long> homeRuns = new HashMap<String, Long>();
+            final Map<String, Long> matchups = new HashMap<String, Long>();
+            RetrosheetReports.ReportVisitor hr = new RetrosheetReports.ReportVisitor(RetrosheetReports.Report.HOME_RUNS) {
+                protected void emit(RetrosheetReportKey key, RetrosheetReportCounts counts) {
+                    add(homeRuns, key.toString(), counts.get(0));
+                }
+            };
+            RetrosheetReports.ReportVisitor pa = new RetrosheetReports.ReportVisitor(RetrosheetReports.Report.MATCHUPS) {
+                protected void emit(RetrosheetReportKey key, RetrosheetReportCounts counts) {
+                    add(matchups, key.toString(), counts.get(2));
+                }
+            };
+            GameStateEngine engine = new GameStateEngine();
+            Map<String, Long> expected = new HashMap<String, Long>();
+            Map<String, Long> expectedPairs = new HashMap<String, Long>();
+            int batter = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_CURRENT_BATTER;
+            int pitcher = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_PITCHER;
+            int result = RetrosheetLoader.FLAT_PLAY_OFFSET + RetrosheetLoader.PLAY_RESULT;
+            for (Path file : files) {
+                for (Text game : games(fs, file)) {
+                    engine.run(game, hr);
+                    engine.run(game, pa);
+                }
+                TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+                RetrosheetRecordReader reader = new RetrosheetRecordReader();
+                reader.initialize(new FileSplit(file, 0, fs.getFileStatus(file).getLen(), new String[0]), context);
+                RetrosheetLoader loader = new RetrosheetLoader("-flat");
+                loader.prepareToRead(reader, null);
+                Tuple t;
+                while ((t = loader.getNext()) != null) {
+                    if ("Home run".equals(t.get(result))) {
+                        add(expected, (String)t.get(batter), 1);
+                        add(expectedPairs, t.get(batter) + "," + t.get(pitcher), 1);
+                    }
+                }
+                reader.close();
+            }
+            assertTrue(expected.size() > 10);
+            assertEquals(expected, homeRuns);
+            /* Pairs that never homered are there with 0 */
+            for (Map.Entry<String, Long> e : matchups.entrySet()) {
+                Long n = expectedPairs.get(e.getKey());
+                assertEquals(e.getKey(), n == null ? 0 : n.longValue(), e.getValue().longValue());
+            }
+            assertTrue(matchups.keySet().containsAll(expectedPairs.keySet()));
+        } finally {
+            corpus.delete();
+        }
+    }
+
+    private static void add(Map<String, Long> counts, String key, long n)
+    {
+        Long c = counts.get(key);
+        counts.put(key, (c == null ? 0 : c) + n);
+    }
+
+    private static List<Text> games(FileSystem fs, Path file) throws IOException, InterruptedException
+    {
+        TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+        RetrosheetRecordReader reader = new RetrosheetRecordReader();
+        reader.initialize(new FileSplit(file, 0, fs.getFileStatus(file).getLen(), new String[0]), context);
+        List<Text> games = new ArrayList<Text>();
+        while (reader.nextKeyValue()) {
+            games.add(new Text(reader.getCurrentValue()));
+        }
+        reader.close();
+        return games;
+    }
+}
@@ -0,0 +1,39 @@
+package com.mapr.baseball;
+
+import java.io.*;
+import java.util.*;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.*;
+
+/**
+ * A scratch directory on the local file system for generated seasons, made
+ * by a test's setUp() and deleted by its tearDown().
+ */
+class RetrosheetTestCorpus
+{
+    final FileSystem fs;
+    final Path dir;
+
+    RetrosheetTestCorpus( String name ) throws IOException
+    {
+        fs = FileSystem.getLocal(new Configuration());
+        dir = new Path(System.getProperty("java.io.tmpdir"), name + "-test-" + System.nanoTime());
+    }
+
+    /* A season with no malformed lines, in the directory */
+    List<Path> writeSeason(long seed, int year, int homeGames) throws IOException
+    {
+        return writeSeason(seed, dir, year, homeGames);
+    }
+
+    List<Path> writeSeason(long seed, Path to, int year, int homeGames) throws IOException
+    {
+        return new RetrosheetCorpusGenerator(seed, 0).writeSeason(fs, to, year, homeGames);
+    }
+
+    void delete() throws IOException
+    {
+        fs.delete(dir, true);
+    }
+}
@@ -0,0 +1,74 @@
+package com.mapr.baseball;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.apache.hadoop.io.Text;
+
+/**
+ * Unit test for the in-place line and field tokenizer.
+ */
+public class RetrosheetTokenizerTest
+    extends TestCase
+{
+    public RetrosheetTokenizerTest( String testName )
+    {
+        super( testName );
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite( RetrosheetTokenizerTest.class );
+    }
+
+    public void testLineTypesAndFields()
+    {
+        RetrosheetTokenizer tok = new RetrosheetTokenizer();
+        tok.reset(new Text("id,BOS201004040\r\ninfo,visteam,NYA\r\n\r\nplay,1,0,jeted001,12,CBFBX,63/G\nbogus,1\n"));
+
+        assertTrue(tok.nextLine());
+        assertEquals(RetrosheetTokenizer.LINE_ID, tok.lineType());
+        assertEquals("BOS201004040", tok.fieldString(1));
+        assertEquals("BOS", tok.fieldString(1, 0, 3));
+        assertEquals(2010, tok.parseInt(1, 3, 7));
+
+        assertTrue(tok.nextLine());
+        assertEquals(RetrosheetTokenizer.LINE_INFO, tok.lineType());
+        assertEquals(RetrosheetTokenizer.INFO_VISTEAM, tok.infoKey());
+        assertEquals("NYA", tok.fieldString(2));
+
+        /* Blank lines are skipped */
+        assertTrue(tok.nextLine());
+        assertEquals(RetrosheetTokenizer.LINE_PLAY, tok.lineType());
+        assertEquals(7, tok.fieldCount());
+        assertEquals(12, tok.parseInt(4));
+        assertTrue(tok.fieldEquals(3, "jeted001".getBytes()));
+        assertEquals("63/G", tok.fieldString(6));
+
+        assertTrue(tok.nextLine());
+        assertEquals(RetrosheetTokenizer.LINE_UNKNOWN, tok.lineType());
+        assertFalse(tok.nextLine());
+    }
+
+    public void testEmptyAndMissingFields()
+    {
+        RetrosheetTokenizer tok = new RetrosheetTokenizer();
+        tok.reset(new Text("info,save,\n"));
+        assertTrue(tok.nextLine());
+        assertEquals(RetrosheetTokenizer.INFO_SAVE, tok.infoKey());
+        assertFalse(tok.hasField(2));
+        assertFalse(tok.hasField(5));
+    }
+
+    public void testParseInt()
+    {
+        byte[] b = "-12x".getBytes();
+        assertEquals(-12, RetrosheetTokenizer.parseInt(b, 0, 3));
+        try {
+            RetrosheetTokenizer.parseInt(b, 0, 4);
+            fail("Expected NumberFormatException");
+        } catch (NumberFormatException e) {
+        }
+    }
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+# Brings /projects/baseball_summary/ up to date with the event files, parsing
+# only the seasons with new, changed or removed files since the last run.
+# The summary has one directory per season; see RetrosheetManifest.
+# With -all every season is parsed again.
+#	summarize_incremental.sh [-all] [input] [output]
+ALL=
+if [ "$1" = "-all" ]; then
+	ALL=-all
+	shift
+fi
+INPUT=${1:-/projects/baseball}
+OUTPUT=${2:-/projects/baseball_summary}
+JAR=${JAR:-moneyball-1.0-SNAPSHOT.jar}
+SCRIPTS=`dirname $0`
+
+seasons=`hadoop jar $JAR com.mapr.baseball.RetrosheetManifest plan $ALL $INPUT $OUTPUT` || exit 1
+for season in $seasons; do
+	pig -param input=$INPUT -param output=$OUTPUT/_staging/$season -param season=$season $SCRIPTS/summarize_season.pig || exit 1
+done
+hadoop jar $JAR com.mapr.baseball.RetrosheetManifest commit $OUTPUT